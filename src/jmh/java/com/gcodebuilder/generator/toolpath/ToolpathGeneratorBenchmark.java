@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator.toolpath;
+
+import com.gcodebuilder.geometry.BenchmarkShapes;
+import com.gcodebuilder.model.Direction;
+import com.gcodebuilder.model.Side;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+@State(Scope.Benchmark)
+public class ToolpathGeneratorBenchmark {
+    @Param({"16", "64", "256"})
+    public int vertexCount;
+
+    @Param({"LINES", "ARCS"})
+    public BenchmarkShapes.Edges edges;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private ToolpathGenerator generator;
+
+    @Setup
+    public void setup() {
+        generator = new ToolpathGenerator();
+        generator.setToolRadius(0.125);
+        generator.setStepOver(0.4);
+        generator.setForkJoinPool(parallel ? ForkJoinPool.commonPool() : null);
+        generator.addPath(BenchmarkShapes.star(vertexCount, edges));
+    }
+
+    @Benchmark
+    public List<Toolpath> computeProfileToolpaths() {
+        return generator.computeProfileToolpaths(Side.OUTSIDE, Direction.CLOCKWISE);
+    }
+
+    @Benchmark
+    public List<Toolpath> computePocketToolpaths() {
+        return generator.computePocketToolpaths(Direction.CLOCKWISE);
+    }
+}
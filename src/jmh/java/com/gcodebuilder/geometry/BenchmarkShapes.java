@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.geometry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates closed paths of increasing complexity for benchmarks.
+ */
+public class BenchmarkShapes {
+    public enum Edges {
+        /**
+         * Star with straight edges alternating between an inner and outer radius.
+         */
+        LINES,
+
+        /**
+         * Regular polygon with a semicircle bulging out from each edge.
+         */
+        ARCS
+    }
+
+    public static final double OUTER_RADIUS = 5;
+    public static final double INNER_RADIUS = 3;
+
+    private static Point pointAt(double radius, double angle) {
+        return new Point(radius * Math.cos(angle), radius * Math.sin(angle));
+    }
+
+    /**
+     * Creates a closed path centered on the origin that fits within {@link #OUTER_RADIUS}.
+     *
+     * @param vertexCount number of vertices on the path, not counting arc center points
+     * @param edges type of edges between vertices
+     * @return closed path
+     */
+    public static Path star(int vertexCount, Edges edges) {
+        List<Point> points = new ArrayList<>();
+        double step = 2 * Math.PI / vertexCount;
+        for (int i = 0; i < vertexCount; ++i) {
+            double angle = i * step;
+            if (edges == Edges.LINES) {
+                points.add(pointAt((i % 2 == 0) ? OUTER_RADIUS : INNER_RADIUS, angle));
+            } else {
+                // vertices are visited counter-clockwise, so a clockwise arc bulges out of the polygon
+                double chordRadius = OUTER_RADIUS * Math.sin(step / 2);
+                double vertexRadius = OUTER_RADIUS - chordRadius;
+                Point center = pointAt(vertexRadius * Math.cos(step / 2), angle + step / 2);
+                points.add(pointAt(vertexRadius, angle));
+                points.add(new Point(center.asPoint2D(), Point.Type.CW_CENTER));
+            }
+        }
+        return new Path(points, true);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.geometry;
+
+import javafx.geometry.Point2D;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+@State(Scope.Benchmark)
+public class PathSegmentBenchmark {
+    @Param({"64", "1024"})
+    public int segmentCount;
+
+    private final List<LineSegment> lines = new ArrayList<>();
+    private final List<ArcSegment> arcs = new ArrayList<>();
+    private List<PathSegment> starSegments;
+    private PreparedPath preparedStar;
+    private final List<Point2D> points = new ArrayList<>();
+
+    private static Point2D randomPoint(Random random) {
+        return new Point2D(random.nextDouble() * 10 - 5, random.nextDouble() * 10 - 5);
+    }
+
+    private static ArcSegment randomArc(Random random) {
+        Point2D center = randomPoint(random);
+        double radius = 0.5 + random.nextDouble() * 2;
+        double fromAngle = random.nextDouble() * 2 * Math.PI;
+        double toAngle = fromAngle + 0.1 + random.nextDouble() * Math.PI;
+        Point2D from = center.add(radius * Math.cos(fromAngle), radius * Math.sin(fromAngle));
+        Point2D to = center.add(radius * Math.cos(toAngle), radius * Math.sin(toAngle));
+        return ArcSegment.of(from, center, to, random.nextBoolean());
+    }
+
+    @Setup
+    public void setup() {
+        // fixed seed so every run intersects the same segments
+        Random random = new Random(42);
+        lines.clear();
+        arcs.clear();
+        points.clear();
+        for (int i = 0; i < segmentCount; ++i) {
+            lines.add(LineSegment.of(randomPoint(random), randomPoint(random)));
+            arcs.add(randomArc(random));
+            points.add(randomPoint(random));
+        }
+        starSegments = BenchmarkShapes.star(segmentCount, BenchmarkShapes.Edges.LINES).getSegments();
+        preparedStar = new PreparedPath(starSegments);
+    }
+
+    @Benchmark
+    public void lineLineIntersect(Blackhole blackhole) {
+        for (int i = 0; i < segmentCount; ++i) {
+            blackhole.consume(lines.get(i).intersect(lines.get((i + 1) % segmentCount)));
+        }
+    }
+
+    @Benchmark
+    public void lineArcIntersect(Blackhole blackhole) {
+        for (int i = 0; i < segmentCount; ++i) {
+            blackhole.consume(lines.get(i).intersect(arcs.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void arcArcIntersect(Blackhole blackhole) {
+        for (int i = 0; i < segmentCount; ++i) {
+            blackhole.consume(arcs.get(i).intersect(arcs.get((i + 1) % segmentCount)));
+        }
+    }
+
+    @Benchmark
+    public void isPointInsidePath(Blackhole blackhole) {
+        for (Point2D point : points) {
+            blackhole.consume(PathSegment.isPointInsidePath(starSegments, point));
+        }
+    }
+
+    @Benchmark
+    public void isPointInsidePreparedPath(Blackhole blackhole) {
+        for (Point2D point : points) {
+            blackhole.consume(preparedStar.isPointInside(point));
+        }
+    }
+}
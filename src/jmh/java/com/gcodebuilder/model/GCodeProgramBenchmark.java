@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@State(Scope.Benchmark)
+public class GCodeProgramBenchmark {
+    @Param({"1000", "100000"})
+    public int lineCount;
+
+    private GCodeProgram program;
+    private CompactGCodeProgram compactProgram;
+    private byte[] text;
+    private Path textFile;
+
+    /**
+     * Counts the bytes parsed, which JMH reports as a rate next to the benchmark score.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ParsedBytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    private static class LineCounter implements GCodeVisitor {
+        private long lineCount;
+
+        @Override
+        public void endLine(long lineNumber) {
+            ++lineCount;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        GCodeBuilder builder = new GCodeBuilder();
+        builder.unitMode(UnitMode.INCH).endLine();
+        for (int i = 0; i < lineCount; ++i) {
+            double angle = i * 0.01;
+            if (i % 2 == 0) {
+                builder.motionMode(MotionMode.LINEAR)
+                        .feedRate(30)
+                        .XYZ(5 * Math.cos(angle), 5 * Math.sin(angle), -0.001 * i)
+                        .endLine();
+            } else {
+                builder.motionMode(MotionMode.CW_ARC)
+                        .feedRate(30)
+                        .XY(5 * Math.cos(angle), 5 * Math.sin(angle))
+                        .IJ(-5 * Math.cos(angle), -5 * Math.sin(angle))
+                        .endLine();
+            }
+        }
+        program = builder.build();
+        compactProgram = CompactGCodeProgram.of(program);
+
+        StringWriter writer = new StringWriter();
+        PrintWriter out = new PrintWriter(writer);
+        program.print(out);
+        out.flush();
+        text = writer.toString().getBytes(StandardCharsets.US_ASCII);
+        textFile = Files.createTempFile("benchmark", ".nc");
+        Files.write(textFile, text);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(textFile);
+    }
+
+    @Benchmark
+    public void printToWriter() {
+        PrintWriter out = new PrintWriter(Writer.nullWriter());
+        program.print(out);
+        out.flush();
+    }
+
+    @Benchmark
+    public void printCompactToWriter() {
+        PrintWriter out = new PrintWriter(Writer.nullWriter());
+        compactProgram.print(out);
+        out.flush();
+    }
+
+    @Benchmark
+    public void printToStream() {
+        PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        program.print(out);
+        out.flush();
+    }
+
+    @Benchmark
+    public long parseStream(ParsedBytes parsedBytes) throws IOException {
+        LineCounter counter = new LineCounter();
+        new GCodeParser(counter).parse(new ByteArrayInputStream(text));
+        parsedBytes.bytes += text.length;
+        return counter.lineCount;
+    }
+
+    @Benchmark
+    public long parseMappedFile(ParsedBytes parsedBytes) throws IOException {
+        LineCounter counter = new LineCounter();
+        new GCodeParser(counter).parse(textFile);
+        parsedBytes.bytes += text.length;
+        return counter.lineCount;
+    }
+
+    @Benchmark
+    public GCodeProgram loadStream(ParsedBytes parsedBytes) throws IOException {
+        GCodeProgram loaded = GCodeProgram.load(new ByteArrayInputStream(text));
+        parsedBytes.bytes += text.length;
+        return loaded;
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.app;
+
+import com.gcodebuilder.generator.DrawingGCodeGenerator;
+import com.gcodebuilder.geometry.Drawing;
+import com.gcodebuilder.geometry.DrawingFile;
+import com.gcodebuilder.model.GCodeAnalyzer;
+import com.gcodebuilder.model.GCodeBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command line entry point that generates GCode for saved drawings without starting the JavaFX toolkit. Every
+ * drawing found under the input paths is generated on a worker pool and written to a .nc file, either next to the
+ * drawing or under an output directory that mirrors the input directory tree.
+ */
+public class BatchMain {
+    static {
+        // keep standard output for the batch report unless logging was configured explicitly
+        if (System.getProperty("log4j.configurationFile") == null) {
+            System.setProperty("log4j.configurationFile", "log4j2-batch.xml");
+        }
+    }
+
+    private static final Logger log = LogManager.getLogger(BatchMain.class);
+
+    private static final String GCODE_EXTENSION = ".nc";
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "usage: BatchMain [options] <drawing file or directory>...",
+            "  -o, --output <dir>        write GCode files under dir instead of next to each drawing",
+            "  -j, --threads <count>     number of drawings generated at once (default: number of processors)",
+            "  -e, --extension <ext>     extension of drawing files found in directories, may be repeated",
+            "                            (default: json and " + DrawingFile.EXTENSION + ")",
+            "  -s, --summary             read back each GCode file and report cut length and estimated time",
+            "  -h, --help                print this message");
+
+    private static class Job {
+        private final Path drawingFile;
+        private final Path gCodeFile;
+        private String summary;
+
+        private Job(Path drawingFile, Path gCodeFile) {
+            this.drawingFile = drawingFile;
+            this.gCodeFile = gCodeFile;
+        }
+    }
+
+    private final List<Path> inputs = new ArrayList<>();
+    private Path outputDirectory;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private final List<String> extensions = new ArrayList<>();
+    private boolean summary = false;
+
+    private final PrintStream out;
+
+    BatchMain(PrintStream out) {
+        this.out = out;
+    }
+
+    private static String requireValue(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    /**
+     * Parses command line arguments.
+     *
+     * @param args command line arguments
+     * @return false if only usage should be printed
+     */
+    boolean parseArgs(String[] args) {
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "-h":
+                case "--help":
+                    return false;
+                case "-o":
+                case "--output":
+                    outputDirectory = Paths.get(requireValue(args, ++i));
+                    break;
+                case "-j":
+                case "--threads":
+                    threads = Integer.parseInt(requireValue(args, ++i));
+                    if (threads < 1) {
+                        throw new IllegalArgumentException("thread count must be positive");
+                    }
+                    break;
+                case "-e":
+                case "--extension":
+                    extensions.add(requireValue(args, ++i).replaceFirst("^\\.", ""));
+                    break;
+                case "-s":
+                case "--summary":
+                    summary = true;
+                    break;
+                default:
+                    if (args[i].startsWith("-")) {
+                        throw new IllegalArgumentException("unknown option: " + args[i]);
+                    }
+                    inputs.add(Paths.get(args[i]));
+                    break;
+            }
+        }
+        if (extensions.isEmpty()) {
+            extensions.add("json");
+            extensions.add(DrawingFile.EXTENSION);
+        }
+        return !inputs.isEmpty();
+    }
+
+    private boolean isDrawingFile(Path file) {
+        String fileName = file.getFileName().toString();
+        return extensions.stream().anyMatch(extension -> fileName.endsWith("." + extension));
+    }
+
+    private Path getGCodeFile(Path root, Path drawingFile) {
+        String fileName = drawingFile.getFileName().toString();
+        int extensionIndex = fileName.lastIndexOf('.');
+        String gCodeFileName = ((extensionIndex > 0) ? fileName.substring(0, extensionIndex) : fileName)
+                + GCODE_EXTENSION;
+        if (outputDirectory == null) {
+            return drawingFile.resolveSibling(gCodeFileName);
+        }
+        Path relativeDirectory = root.relativize(drawingFile).getParent();
+        Path directory = (relativeDirectory != null) ? outputDirectory.resolve(relativeDirectory) : outputDirectory;
+        return directory.resolve(gCodeFileName);
+    }
+
+    private List<Job> findJobs() throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                List<Path> drawingFiles;
+                try (Stream<Path> files = Files.walk(input)) {
+                    drawingFiles = files
+                            .filter(Files::isRegularFile)
+                            .filter(this::isDrawingFile)
+                            .sorted()
+                            .collect(Collectors.toList());
+                }
+                for (Path drawingFile : drawingFiles) {
+                    jobs.add(new Job(drawingFile, getGCodeFile(input, drawingFile)));
+                }
+            } else if (Files.isRegularFile(input)) {
+                Path root = (input.getParent() != null) ? input.getParent() : Paths.get("");
+                jobs.add(new Job(input, getGCodeFile(root, input)));
+            } else {
+                throw new IOException("drawing file or directory not found: " + input);
+            }
+        }
+
+        // a drawing saved in both formats would otherwise be generated twice into the same file at once
+        Map<Path, Path> drawingFilesByGCodeFile = new HashMap<>();
+        for (Job job : jobs) {
+            Path otherDrawingFile = drawingFilesByGCodeFile.putIfAbsent(job.gCodeFile, job.drawingFile);
+            if (otherDrawingFile != null) {
+                throw new IOException(String.format("%s and %s would both be written to %s",
+                        otherDrawingFile, job.drawingFile, job.gCodeFile));
+            }
+        }
+        return jobs;
+    }
+
+    private long generate(Job job) throws IOException {
+        long startTime = System.nanoTime();
+        Drawing drawing = Drawing.loadFromFile(job.drawingFile);
+
+        // drawings are already generated in parallel, so shapes of each drawing are generated sequentially
+        DrawingGCodeGenerator generator = new DrawingGCodeGenerator(drawing, false);
+        generator.setForkJoinPool(null);
+
+        Path directory = job.gCodeFile.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        try (OutputStream out = Files.newOutputStream(job.gCodeFile)) {
+            GCodeBuilder builder = new GCodeBuilder(out);
+            generator.generateGCode(builder);
+            builder.flush();
+        } catch (IOException | RuntimeException ex) {
+            // do not leave a partial program behind
+            Files.deleteIfExists(job.gCodeFile);
+            throw ex;
+        }
+        if (summary) {
+            // check the program as written, rather than the program the generator meant to write
+            job.summary = new GCodeAnalyzer(drawing.getLengthUnit()).analyze(job.gCodeFile).getSummary();
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Generates GCode for all drawings and prints the time taken for each drawing.
+     *
+     * @return number of drawings that failed
+     * @throws IOException if the input paths cannot be searched
+     * @throws InterruptedException if interrupted while waiting for drawings to be generated
+     */
+    int run() throws IOException, InterruptedException {
+        long startTime = System.nanoTime();
+        List<Job> jobs = findJobs();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        int failures = 0;
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (Job job : jobs) {
+                results.add(executor.submit(() -> generate(job)));
+            }
+            // report in the order drawings were found, so output is the same from run to run
+            for (int i = 0; i < jobs.size(); ++i) {
+                Job job = jobs.get(i);
+                try {
+                    long elapsed = results.get(i).get();
+                    out.printf("OK      %s -> %s (%.1f ms)%s%n", job.drawingFile, job.gCodeFile, toMillis(elapsed),
+                            (job.summary != null) ? ": " + job.summary : "");
+                } catch (ExecutionException ex) {
+                    ++failures;
+                    log.error("Failed to generate GCode for {}", job.drawingFile, ex.getCause());
+                    out.printf("FAILED  %s: %s%n", job.drawingFile, ex.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        out.printf("Generated %d of %d drawings in %.1f ms with %d threads%n",
+                jobs.size() - failures, jobs.size(), toMillis(System.nanoTime() - startTime), threads);
+        return failures;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BatchMain batch = new BatchMain(System.out);
+        try {
+            if (!batch.parseArgs(args)) {
+                System.out.println(USAGE);
+                return;
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (batch.run() > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -35,10 +35,10 @@ import com.gcodebuilder.changelog.ChangeLog;
 import com.gcodebuilder.changelog.SelectionChange;
 import com.gcodebuilder.changelog.ShapeListChange;
 import com.gcodebuilder.changelog.Snapshot;
-import com.gcodebuilder.generator.DrawingGCodeGenerator;
 import com.gcodebuilder.generator.DrawingGCodeDrawable;
 import com.gcodebuilder.generator.GCodeDisplayMode;
 import com.gcodebuilder.geometry.Drawing;
+import com.gcodebuilder.geometry.DrawingFile;
 import com.gcodebuilder.geometry.Group;
 import com.gcodebuilder.geometry.Shape;
 import com.gcodebuilder.model.GCodeProgram;
@@ -55,6 +55,7 @@ import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.RadioMenuItem;
 import javafx.scene.control.ScrollBar;
 import javafx.scene.control.Spinner;
@@ -75,6 +76,7 @@ import org.apache.logging.log4j.Logger;
 import java.awt.image.BufferedImage;
 import javax.imageio.ImageIO;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -117,6 +119,9 @@ public class DrawingWindowController {
     @FXML
     private Label statusLabel;
 
+    @FXML
+    private ProgressBar gCodeProgressBar;
+
     @FXML
     private ScrollBar hScrollBar;
 
@@ -132,6 +137,9 @@ public class DrawingWindowController {
     @FXML
     private TextArea gcodeEditor;
 
+    @FXML
+    private MenuItem cancelGCodeItem;
+
     @FXML
     private MenuItem saveGCodeItem;
 
@@ -196,7 +204,8 @@ public class DrawingWindowController {
     private static final String DEFAULT_IMAGE_FILENAME = "drawing.png";
 
     private static final FileChooser.ExtensionFilter[] DRAWING_FILE_EXTENSIONS = {
-            new FileChooser.ExtensionFilter("JSON", "*.json")
+            new FileChooser.ExtensionFilter("JSON", "*.json"),
+            new FileChooser.ExtensionFilter("Binary Drawing", "*." + DrawingFile.EXTENSION)
     };
     private static final FileChooser.ExtensionFilter[] GCODE_FILE_EXTENSIONS = {
             new FileChooser.ExtensionFilter("GCode", "*.nc")
@@ -213,6 +222,7 @@ public class DrawingWindowController {
     private RecipeEditorController recipeEditorController;
 
     private GCodeProgram gCodeProgram;
+    private GCodeGenerationTask gCodeGenerationTask;
 
     @FXML
     public void initialize() throws IOException {
@@ -285,10 +295,14 @@ public class DrawingWindowController {
 
         canvas.getDrawables().add(drawing);
         canvas.getDrawables().add(drawingGCodeDrawable);
+        canvas.getLiveDrawables().add(drawing.getLiveLayer());
+        canvas.getLiveDrawables().add(drawingGCodeDrawable.getLiveLayer());
         drawingGCodeDrawable.setDrawing(drawing);
 
+        // drawings are read from a stream rather than mapped with Drawing.loadFromFile, since a mapped file cannot
+        // be overwritten on some platforms until the mapping is garbage collected, and saving overwrites the file
         drawingFileOperations = new FileOperations<>(
-                rootPane, Drawing::load, Drawing::save,
+                rootPane, Drawing::load, this::saveDrawingToFile,
                 "Drawing", DEFAULT_DRAWING_FILENAME,
                 DRAWING_FILE_EXTENSIONS);
 
@@ -498,6 +512,7 @@ public class DrawingWindowController {
 
     public void undoChange() {
         changeLog.undoChange();
+        drawing.invalidateShapeIndex();
         drawing.setDirty(true);
         updateChangeLogMenuItems();
         checkForChanges();
@@ -505,6 +520,7 @@ public class DrawingWindowController {
 
     public void redoChange() {
         changeLog.redoChange();
+        drawing.invalidateShapeIndex();
         drawing.setDirty(true);
         updateChangeLogMenuItems();
         checkForChanges();
@@ -559,7 +575,7 @@ public class DrawingWindowController {
             mouseStartPoint = mousePoint;
             currentShape = null;
             currentHandle = null;
-            for (Shape<?> shape : drawing.getShapes()) {
+            for (Shape<?> shape : drawing.getShapesNear(point, mousePoint, handleRadius)) {
                 currentHandle = shape.getHandle(point, mousePoint, handleRadius);
                 if (currentHandle != null) {
                     currentShape = shape;
@@ -615,7 +631,12 @@ public class DrawingWindowController {
 
     private void refreshDrawingWhenDirty() {
         if (drawing.isDirty()) {
-            canvas.refresh();
+            if (drawing.hasLiveShapes()) {
+                // only the live shapes change while they are being edited
+                canvas.refreshLiveLayer();
+            } else {
+                canvas.refresh();
+            }
             shapesTableController.syncShapes(drawing);
         }
     }
@@ -653,6 +674,11 @@ public class DrawingWindowController {
                 if (drawing.setSelectedShapes(currentShape)) {
                     checkSelectedShapes();
                 }
+
+                // draw the shape being edited on the live layer, so dragging does not redraw the whole drawing
+                if (currentShape != null && drawing.setLiveShapes(List.of(currentShape))) {
+                    canvas.invalidateBackground();
+                }
             }
         }
         refreshStatusText(toolEvent);
@@ -682,6 +708,11 @@ public class DrawingWindowController {
                 changeSupplier = null;
             }
 
+            drawing.clearLiveShapes();
+            if (!currentTool.isSelectionTool() && currentShape != null) {
+                drawing.updateShapeIndex(currentShape);
+            }
+
             if (currentTool.isSelectionTool()) {
                 checkSelectedShapes();
             }
@@ -746,6 +777,7 @@ public class DrawingWindowController {
 
     public void setDrawing(Drawing newDrawing) {
         canvas.getDrawables().remove(drawing);
+        canvas.getLiveDrawables().remove(drawing.getLiveLayer());
         drawing = null;
 
         recipeEditorController.clearCurrentRecipe();
@@ -763,10 +795,12 @@ public class DrawingWindowController {
 
         drawing = newDrawing;
         canvas.getDrawables().add(newDrawing);
+        canvas.getLiveDrawables().add(0, newDrawing.getLiveLayer());
         drawingGCodeDrawable.setDrawing(newDrawing);
 
         shapesTableController.syncShapes(newDrawing);
 
+        cancelGCodeGeneration();
         setGCodeProgram(null);
 
         canvas.refresh();
@@ -836,6 +870,18 @@ public class DrawingWindowController {
         imageFileOperations.saveAs(snapshot);
     }
 
+    private void saveDrawingToFile(Drawing drawing, File drawingFile, FileChooser.ExtensionFilter ext)
+            throws IOException {
+        try (FileOutputStream out = new FileOutputStream(drawingFile)) {
+            // choose the format from the file name, so saving again keeps the format the file was opened in
+            if (drawingFile.getName().endsWith("." + DrawingFile.EXTENSION)) {
+                drawing.saveBinary(out);
+            } else {
+                drawing.save(out);
+            }
+        }
+    }
+
     public void saveImageToFile(Image image, File imageFile, FileChooser.ExtensionFilter ext) throws IOException {
         BufferedImage bufferedImage = SwingFXUtils.fromFXImage(image, null);
         ImageIO.write(bufferedImage, ext.getDescription(), imageFile);
@@ -870,12 +916,70 @@ public class DrawingWindowController {
         updateGCodeMenuItems();
     }
 
+    private void startGCodeGeneration(boolean selectedShapesOnly) {
+        cancelGCodeGeneration();
+
+        // generate from a copy so the drawing can still be edited while the task runs; only saving the drawing is
+        // done here, the copy is read on the background thread
+        Drawing.SavedCopy drawingCopy;
+        try {
+            drawingCopy = drawing.saveCopy();
+        } catch (IOException ex) {
+            log.error("Failed to copy drawing for GCode generation", ex);
+            setStatusText("GCode generation failed: " + ex.getMessage());
+            return;
+        }
+
+        GCodeGenerationTask task = new GCodeGenerationTask(drawingCopy, selectedShapesOnly);
+        task.messageProperty().addListener((obs, oldMessage, newMessage) -> setStatusText(newMessage));
+        task.setOnSucceeded(event -> {
+            finishGCodeGeneration(task);
+            setGCodeProgram(task.getValue().getProgram());
+            setStatusText("GCode generated: " + task.getValue().getSummary());
+        });
+        task.setOnFailed(event -> {
+            finishGCodeGeneration(task);
+            log.error("GCode generation failed", task.getException());
+            setStatusText("GCode generation failed: " + task.getException().getMessage());
+        });
+        task.setOnCancelled(event -> {
+            finishGCodeGeneration(task);
+            setStatusText("GCode generation cancelled");
+        });
+
+        gCodeGenerationTask = task;
+        gCodeProgressBar.progressProperty().bind(task.progressProperty());
+        gCodeProgressBar.setVisible(true);
+        gCodeProgressBar.setManaged(true);
+        cancelGCodeItem.setDisable(false);
+
+        Thread thread = new Thread(task, "gcode-generation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void finishGCodeGeneration(GCodeGenerationTask task) {
+        if (gCodeGenerationTask == task) {
+            gCodeGenerationTask = null;
+            gCodeProgressBar.progressProperty().unbind();
+            gCodeProgressBar.setVisible(false);
+            gCodeProgressBar.setManaged(false);
+            cancelGCodeItem.setDisable(true);
+        }
+    }
+
     public void generateGCode() {
-        setGCodeProgram(new DrawingGCodeGenerator(drawing, false).generateGCode());
+        startGCodeGeneration(false);
     }
 
     public void generateGCodeForSelectedShapes() {
-        setGCodeProgram(new DrawingGCodeGenerator(drawing, true).generateGCode());
+        startGCodeGeneration(true);
+    }
+
+    public void cancelGCodeGeneration() {
+        if (gCodeGenerationTask != null) {
+            gCodeGenerationTask.cancel();
+        }
     }
 
     public void saveGCode() {
@@ -159,18 +159,22 @@ public class FileOperations<T> {
         return null;
     }
 
+    private void saveToFile(T document, File saveFile) throws IOException {
+        if (saveFunction != null) {
+            try (FileOutputStream out = new FileOutputStream(saveFile)) {
+                saveFunction.save(document, out);
+            }
+        } else if (fileSaveFunction != null) {
+            fileSaveFunction.save(document, saveFile, chooser.getSelectedExtensionFilter());
+        }
+    }
+
     public void saveAs(T document) {
         chooser.setTitle(String.format("Save %s", documentType));
         File saveFile = chooser.showSaveDialog(root.getScene().getWindow());
         if (saveFile != null) {
             try {
-                if (saveFunction != null) {
-                    try (FileOutputStream out = new FileOutputStream(saveFile)) {
-                        saveFunction.save(document, out);
-                    }
-                } else if (fileSaveFunction != null) {
-                    fileSaveFunction.save(document, saveFile, chooser.getSelectedExtensionFilter());
-                }
+                saveToFile(document, saveFile);
                 currentFile = saveFile;
             } catch (IOException ex) {
                 showError("Save Failed", String.format("Failed to save file: %s", saveFile), ex);
@@ -181,8 +185,8 @@ public class FileOperations<T> {
 
     public void save(T document) {
         if (currentFile != null) {
-            try (FileOutputStream out = new FileOutputStream(currentFile)) {
-                saveFunction.save(document, out);
+            try {
+                saveToFile(document, currentFile);
             } catch (IOException ex) {
                 showError("Save Failed", String.format("Failed to save file: %s", currentFile), ex);
             }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.app;
+
+import com.gcodebuilder.generator.DrawingGCodeGenerator;
+import com.gcodebuilder.generator.GCodeGenerator;
+import com.gcodebuilder.generator.GCodeProgressMonitor;
+import com.gcodebuilder.geometry.Drawing;
+import com.gcodebuilder.geometry.Shape;
+import com.gcodebuilder.model.GCodeAnalyzer;
+import com.gcodebuilder.model.GCodeBuilder;
+import com.gcodebuilder.model.GCodeProgram;
+import javafx.concurrent.Task;
+import lombok.Data;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Generates GCode for a copy of a drawing in the background, reporting progress per shape and per depth pass, and
+ * analyzes the generated program. Cancelling the task stops the generator at the next shape or depth pass.
+ */
+public class GCodeGenerationTask extends Task<GCodeGenerationTask.Result> {
+    private final Drawing.SavedCopy drawingCopy;
+    private final boolean selectedShapesOnly;
+
+    @Data
+    public static class Result {
+        private final GCodeProgram program;
+        private final String summary;
+    }
+
+    /**
+     * Creates a task that generates GCode for a drawing.
+     *
+     * @param drawingCopy drawing saved when generation was started, which is read on the background thread
+     * @param selectedShapesOnly true to generate GCode only for the selected shapes
+     */
+    public GCodeGenerationTask(Drawing.SavedCopy drawingCopy, boolean selectedShapesOnly) {
+        this.drawingCopy = drawingCopy;
+        this.selectedShapesOnly = selectedShapesOnly;
+    }
+
+    @Override
+    protected Result call() throws IOException {
+        updateMessage("Generating GCode...");
+        Drawing drawing = drawingCopy.read();
+        GCodeGenerator generator = new DrawingGCodeGenerator(drawing, selectedShapesOnly);
+        GCodeBuilder builder = new GCodeBuilder();
+        generator.generateGCode(builder, new GCodeProgressMonitor() {
+            // shapes may be generated in parallel, so progress is tracked for every shape that has started
+            private final Map<Shape<?>, Integer> shapeIndexes = new IdentityHashMap<>();
+            private double[] shapeProgress = new double[0];
+
+            private void updateTotalProgress() {
+                updateProgress(Arrays.stream(shapeProgress).sum(), shapeProgress.length);
+            }
+
+            @Override
+            public synchronized void shapeStarted(int shapeIndex, int shapeCount, Shape<?> shape) {
+                if (shapeProgress.length != shapeCount) {
+                    shapeProgress = new double[shapeCount];
+                }
+                shapeIndexes.put(shape, shapeIndex);
+                updateTotalProgress();
+                updateMessage(String.format("Generating GCode for shape %d of %d: %s",
+                        shapeIndex + 1, shapeCount, shape.getClass().getSimpleName()));
+            }
+
+            @Override
+            public synchronized void shapeProgress(Shape<?> shape, double fractionComplete) {
+                Integer shapeIndex = shapeIndexes.get(shape);
+                if (shapeIndex != null) {
+                    shapeProgress[shapeIndex] = Math.min(fractionComplete, 1);
+                    updateTotalProgress();
+                }
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return GCodeGenerationTask.this.isCancelled();
+            }
+        });
+        GCodeProgram program = builder.build();
+        updateProgress(1, 1);
+        updateMessage(String.format("Analyzing %d lines of GCode...", program.getLines().size()));
+        GCodeAnalyzer analyzer = new GCodeAnalyzer(drawing.getLengthUnit()).analyze(program);
+        return new Result(program, analyzer.getSummary());
+    }
+}
@@ -16,6 +16,8 @@
 
 package com.gcodebuilder.app.recipe;
 
+import com.gcodebuilder.model.DrillCycleMode;
+import com.gcodebuilder.model.DrillOrder;
 import com.gcodebuilder.model.LengthUnit;
 import com.gcodebuilder.recipe.GCodeCenterDrillRecipe;
 import com.gcodebuilder.recipe.GCodeRecipeType;
@@ -45,6 +47,12 @@ public class CenterDrillRecipeEditorController extends AbstractRecipeTypeControl
     @FXML
     private TextField plungeRateCtl;
 
+    @FXML
+    private ChoiceBox<DrillCycleMode> drillCycleModeCtl;
+
+    @FXML
+    private ChoiceBox<DrillOrder> drillOrderCtl;
+
     public CenterDrillRecipeEditorController() {
         super(GCodeRecipeType.CENTER_DRILL, GCodeCenterDrillRecipe.class);
     }
@@ -65,6 +73,10 @@ public class CenterDrillRecipeEditorController extends AbstractRecipeTypeControl
                 GCodeCenterDrillRecipe::getStepDown, GCodeCenterDrillRecipe::setStepDown);
         configureTextField(plungeRateCtl, integerFormatter(),
                 GCodeCenterDrillRecipe::getPlungeRate, GCodeCenterDrillRecipe::setPlungeRate);
+        configuredChoiceBox(drillCycleModeCtl, GCodeCenterDrillRecipe::getDrillCycleMode,
+                GCodeCenterDrillRecipe::setDrillCycleMode, DrillCycleMode.values());
+        configuredChoiceBox(drillOrderCtl, GCodeCenterDrillRecipe::getDrillOrder,
+                GCodeCenterDrillRecipe::setDrillOrder, DrillOrder.values());
     }
 
 }
@@ -17,6 +17,8 @@
 package com.gcodebuilder.app.recipe;
 
 import com.gcodebuilder.model.Direction;
+import com.gcodebuilder.model.DrillCycleMode;
+import com.gcodebuilder.model.DrillOrder;
 import com.gcodebuilder.model.HoleAlignment;
 import com.gcodebuilder.model.HoleSpacingMode;
 import com.gcodebuilder.model.LengthUnit;
@@ -63,6 +65,12 @@ public class DrillAlongPathRecipeEditorController extends AbstractRecipeTypeCont
     @FXML
     private TextField holeOffsetCtl;
 
+    @FXML
+    private ChoiceBox<DrillCycleMode> drillCycleModeCtl;
+
+    @FXML
+    private ChoiceBox<DrillOrder> drillOrderCtl;
+
     public DrillAlongPathRecipeEditorController() {
         super(GCodeRecipeType.DRILL_ALONG_PATH, GCodeDrillAlongPathRecipe.class);
     }
@@ -93,6 +101,10 @@ public class DrillAlongPathRecipeEditorController extends AbstractRecipeTypeCont
                 GCodeDrillAlongPathRecipe::setHoleAlignment, HoleAlignment.values());
         configureTextField(holeOffsetCtl, doubleFormatter(),
                 GCodeDrillAlongPathRecipe::getHoleOffset, GCodeDrillAlongPathRecipe::setHoleOffset);
+        configuredChoiceBox(drillCycleModeCtl, GCodeDrillAlongPathRecipe::getDrillCycleMode,
+                GCodeDrillAlongPathRecipe::setDrillCycleMode, DrillCycleMode.values());
+        configuredChoiceBox(drillOrderCtl, GCodeDrillAlongPathRecipe::getDrillOrder,
+                GCodeDrillAlongPathRecipe::setDrillOrder, DrillOrder.values());
     }
 
 }
@@ -16,6 +16,7 @@
 
 package com.gcodebuilder.app.recipe;
 
+import com.gcodebuilder.model.DepthPassMode;
 import com.gcodebuilder.model.Direction;
 import com.gcodebuilder.model.LengthUnit;
 import com.gcodebuilder.recipe.GCodeFollowPathRecipe;
@@ -53,6 +54,12 @@ public class FollowPathRecipeEditorController extends AbstractRecipeTypeControll
     @FXML
     private ChoiceBox<Direction> directionCtl;
 
+    @FXML
+    private ChoiceBox<DepthPassMode> depthPassModeCtl;
+
+    @FXML
+    private TextField chordToleranceCtl;
+
     public FollowPathRecipeEditorController() {
         super(GCodeRecipeType.FOLLOW_PATH, GCodeFollowPathRecipe.class);
     }
@@ -77,6 +84,10 @@ public class FollowPathRecipeEditorController extends AbstractRecipeTypeControll
                 GCodeFollowPathRecipe::getPlungeRate, GCodeFollowPathRecipe::setPlungeRate);
         configuredChoiceBox(directionCtl, GCodeFollowPathRecipe::getDirection,
                 GCodeFollowPathRecipe::setDirection, Direction.values());
+        configuredChoiceBox(depthPassModeCtl, GCodeFollowPathRecipe::getDepthPassMode,
+                GCodeFollowPathRecipe::setDepthPassMode, DepthPassMode.values());
+        configureTextField(chordToleranceCtl, doubleFormatter(),
+                GCodeFollowPathRecipe::getChordTolerance, GCodeFollowPathRecipe::setChordTolerance);
     }
 
 }
@@ -16,6 +16,7 @@
 
 package com.gcodebuilder.app.recipe;
 
+import com.gcodebuilder.model.DepthPassMode;
 import com.gcodebuilder.model.Direction;
 import com.gcodebuilder.model.LengthUnit;
 import com.gcodebuilder.recipe.GCodePocketRecipe;
@@ -55,6 +56,12 @@ public class PocketRecipeEditorController extends AbstractRecipeTypeController<G
     @FXML
     private ChoiceBox<Direction> directionCtl;
 
+    @FXML
+    private ChoiceBox<DepthPassMode> depthPassModeCtl;
+
+    @FXML
+    private TextField chordToleranceCtl;
+
     public PocketRecipeEditorController() {
         super(GCodeRecipeType.POCKET, GCodePocketRecipe.class);
     }
@@ -81,6 +88,10 @@ public class PocketRecipeEditorController extends AbstractRecipeTypeController<G
                 GCodePocketRecipe::getPlungeRate, GCodePocketRecipe::setPlungeRate);
         configuredChoiceBox(directionCtl, GCodePocketRecipe::getDirection,
                 GCodePocketRecipe::setDirection, Direction.values());
+        configuredChoiceBox(depthPassModeCtl, GCodePocketRecipe::getDepthPassMode,
+                GCodePocketRecipe::setDepthPassMode, DepthPassMode.values());
+        configureTextField(chordToleranceCtl, doubleFormatter(),
+                GCodePocketRecipe::getChordTolerance, GCodePocketRecipe::setChordTolerance);
     }
 
 }
@@ -16,6 +16,7 @@
 
 package com.gcodebuilder.app.recipe;
 
+import com.gcodebuilder.model.DepthPassMode;
 import com.gcodebuilder.model.Direction;
 import com.gcodebuilder.model.LengthUnit;
 import com.gcodebuilder.model.Side;
@@ -56,6 +57,12 @@ public class ProfileRecipeEditorController extends AbstractRecipeTypeController<
     @FXML
     private ChoiceBox<Direction> directionCtl;
 
+    @FXML
+    private ChoiceBox<DepthPassMode> depthPassModeCtl;
+
+    @FXML
+    private TextField chordToleranceCtl;
+
     public ProfileRecipeEditorController() {
         super(GCodeRecipeType.PROFILE, GCodeProfileRecipe.class);
     }
@@ -82,6 +89,10 @@ public class ProfileRecipeEditorController extends AbstractRecipeTypeController<
                 GCodeProfileRecipe::setSide, Side.values());
         configuredChoiceBox(directionCtl, GCodeProfileRecipe::getDirection,
                 GCodeProfileRecipe::setDirection, Direction.values());
+        configuredChoiceBox(depthPassModeCtl, GCodeProfileRecipe::getDepthPassMode,
+                GCodeProfileRecipe::setDepthPassMode, DepthPassMode.values());
+        configureTextField(chordToleranceCtl, doubleFormatter(),
+                GCodeProfileRecipe::getChordTolerance, GCodeProfileRecipe::setChordTolerance);
     }
 
 }
@@ -18,6 +18,7 @@ package com.gcodebuilder.canvas;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.gcodebuilder.app.GridSettings;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.canvas.GraphicsContext;
 
 public interface Drawable {
@@ -27,4 +28,15 @@ public interface Drawable {
     default boolean isVisible() {
         return true;
     }
+
+    /**
+     * Returns the area this drawable draws in, in grid coordinates, which limits the area repainted when the
+     * drawable is on the live layer of a {@link GCodeCanvas}.
+     *
+     * @return drawn area, or null if unknown
+     */
+    @JsonIgnore
+    default Rectangle2D getBounds() {
+        return null;
+    }
 }
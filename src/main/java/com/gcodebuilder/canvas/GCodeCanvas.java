@@ -20,24 +20,38 @@ import com.gcodebuilder.app.GridSettings;
 import javafx.beans.property.ReadOnlyProperty;
 import javafx.beans.property.adapter.ReadOnlyJavaBeanObjectProperty;
 import javafx.beans.property.adapter.ReadOnlyJavaBeanObjectPropertyBuilder;
+import javafx.geometry.BoundingBox;
 import javafx.geometry.Bounds;
 import javafx.geometry.Point2D;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
 import javafx.scene.transform.Affine;
 import javafx.scene.transform.NonInvertibleTransformException;
+import javafx.scene.transform.Transform;
 import javafx.stage.Screen;
+import javafx.stage.Window;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Canvas that draws a grid and a list of drawables in grid coordinates. Rendering is split into layers: the grid is
+ * cached as an image until the view changes, and while any live drawable is visible the grid and static drawables
+ * are cached together as a background image. {@link #refreshLiveLayer()} then only restores the background in the
+ * area covered by the live drawables and redraws them, so editing one shape does not redraw the whole drawing.
+ */
 public class GCodeCanvas extends Canvas {
     private static final Logger log = LogManager.getLogger(GCodeCanvas.class);
 
@@ -71,6 +85,19 @@ public class GCodeCanvas extends Canvas {
     @Getter
     private final List<Drawable> drawables = new ArrayList<>();
 
+    @Getter
+    private final List<Drawable> liveDrawables = new ArrayList<>();
+
+    // cached layer images and the view they were drawn for
+    private WritableImage gridLayer;
+    private List<Object> gridLayerView;
+    private WritableImage backgroundLayer;
+    private List<Object> backgroundLayerView;
+    private List<Object> lastView;
+
+    // screen area covered by live drawables in the last frame, or null if they covered the whole canvas
+    private Rectangle2D liveArea;
+
     public GCodeCanvas() {
         this(0,0);
     }
@@ -145,12 +172,42 @@ public class GCodeCanvas extends Canvas {
         return originAreaProperty;
     }
 
-    public void refresh() {
-        double pixelsPerUnit = getPixelsPerUnit();
-        canvasWidth = getWidth();
-        canvasHeight = getHeight();
-        updateOriginArea(getPixelsPerUnit(), canvasWidth, canvasHeight);
+    private double getOutputScale() {
+        Window window = (getScene() != null) ? getScene().getWindow() : null;
+        return (window != null) ? window.getOutputScaleX() : 1;
+    }
+
+    // everything the grid and background layers depend on, other than the drawables
+    private List<Object> getView(double pixelsPerUnit) {
+        return Arrays.asList(canvasWidth, canvasHeight, getOutputScale(), pixelsPerUnit, originX, originY,
+                settings.getMajorGridSpacing(), settings.getMinorGridDivision(), settings.getMinPixelsPerGridLine(),
+                settings.getMajorGridPaint(), settings.getMajorGridLineWidth(),
+                settings.getMinorGridPaint(), settings.getMinorGridLineWidth(),
+                settings.getXAxisPaint(), settings.getYAxisPaint(), settings.getAxisLineWidth());
+    }
+
+    private WritableImage snapshotLayer(WritableImage layer) {
+        double scale = getOutputScale();
+        int width = (int)Math.ceil(canvasWidth * scale);
+        int height = (int)Math.ceil(canvasHeight * scale);
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        if (layer != null && (layer.getWidth() != width || layer.getHeight() != height)) {
+            layer = null;
+        }
+        SnapshotParameters params = new SnapshotParameters();
+        params.setFill(Color.TRANSPARENT);
+        params.setTransform(Transform.scale(scale, scale));
+        return snapshot(params, layer);
+    }
 
+    private void drawLayer(GraphicsContext ctx, Image layer, double x, double y, double width, double height) {
+        double scale = getOutputScale();
+        ctx.drawImage(layer, x * scale, y * scale, width * scale, height * scale, x, y, width, height);
+    }
+
+    private void drawGrid(GraphicsContext ctx, double pixelsPerUnit) {
         double gridSpacing = settings.getMinorGridSpacing();
         double pixelsPerGridLine = pixelsPerUnit * gridSpacing;
         int xGridMinIndex = -(int)(originX / pixelsPerGridLine);
@@ -158,14 +215,6 @@ public class GCodeCanvas extends Canvas {
         int yGridMinIndex = -(int)((canvasHeight - originY) / pixelsPerGridLine);
         int yGridMaxIndex = (int)(originY / pixelsPerGridLine);
 
-        // clear screen
-        GraphicsContext ctx = getGraphicsContext2D();
-        ctx.setTransform(IDENTITY_TRANSFORM);
-        ctx.clearRect(0, 0, canvasWidth, canvasHeight);
-
-        // set grid transform
-        gridToScreen.setToTransform(pixelsPerUnit, 0, originX, 0, -pixelsPerUnit, originY);
-        screenToGrid.setToTransform(1/pixelsPerUnit, 0, -originX/pixelsPerUnit, 0, -1/pixelsPerUnit, originY/pixelsPerUnit);
         ctx.setTransform(gridToScreen);
         Bounds visibleBounds = getBoundsInLocal();
         try {
@@ -194,7 +243,9 @@ public class GCodeCanvas extends Canvas {
         ctx.strokeLine(visibleBounds.getMinX(), 0, visibleBounds.getMaxX(), 0);
         ctx.setStroke(settings.getYAxisPaint());
         ctx.strokeLine(0, visibleBounds.getMinY(), 0, visibleBounds.getMaxY());
+    }
 
+    private void drawAll(GraphicsContext ctx, List<Drawable> drawables, double pixelsPerUnit) {
         for (Drawable drawable : drawables) {
             if (drawable != null && drawable.isVisible()) {
                 drawable.draw(ctx, pixelsPerUnit, settings);
@@ -202,6 +253,149 @@ public class GCodeCanvas extends Canvas {
         }
     }
 
+    private boolean hasVisibleLiveDrawables() {
+        return liveDrawables.stream().anyMatch(drawable -> drawable != null && drawable.isVisible());
+    }
+
+    // screen area covered by the live drawables, rounded out to whole pixels and padded for handles and line widths
+    private Rectangle2D computeLiveArea() {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (Drawable drawable : liveDrawables) {
+            if (drawable == null || !drawable.isVisible()) {
+                continue;
+            }
+            Rectangle2D bounds = drawable.getBounds();
+            if (bounds == null) {
+                return null;
+            }
+            Bounds screenBounds = gridToScreen.transform(new BoundingBox(
+                    bounds.getMinX(), bounds.getMinY(), bounds.getWidth(), bounds.getHeight()));
+            minX = Math.min(minX, screenBounds.getMinX());
+            minY = Math.min(minY, screenBounds.getMinY());
+            maxX = Math.max(maxX, screenBounds.getMaxX());
+            maxY = Math.max(maxY, screenBounds.getMaxY());
+        }
+        if (minX > maxX || minY > maxY) {
+            return Rectangle2D.EMPTY;
+        }
+        double padding = settings.getShapePointRadius() + settings.getShapeLineWidth()
+                + settings.getBoundingBoxCenterOffset() + settings.getBoundingBoxLineWidth() + 2;
+        minX = Math.max(0, Math.floor(minX - padding));
+        minY = Math.max(0, Math.floor(minY - padding));
+        maxX = Math.min(canvasWidth, Math.ceil(maxX + padding));
+        maxY = Math.min(canvasHeight, Math.ceil(maxY + padding));
+        if (minX >= maxX || minY >= maxY) {
+            return Rectangle2D.EMPTY;
+        }
+        return new Rectangle2D(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Redraws every layer of the canvas.
+     */
+    public void refresh() {
+        double pixelsPerUnit = getPixelsPerUnit();
+        canvasWidth = getWidth();
+        canvasHeight = getHeight();
+        updateOriginArea(getPixelsPerUnit(), canvasWidth, canvasHeight);
+
+        // clear screen
+        GraphicsContext ctx = getGraphicsContext2D();
+        ctx.setTransform(IDENTITY_TRANSFORM);
+        ctx.clearRect(0, 0, canvasWidth, canvasHeight);
+
+        // set grid transform
+        gridToScreen.setToTransform(pixelsPerUnit, 0, originX, 0, -pixelsPerUnit, originY);
+        screenToGrid.setToTransform(1/pixelsPerUnit, 0, -originX/pixelsPerUnit, 0, -1/pixelsPerUnit, originY/pixelsPerUnit);
+
+        // Draw grid from the cached layer if the view has not changed. A new grid layer is only cached once the same
+        // view is drawn twice, so scrolling and zooming do not pay for a snapshot on every frame.
+        List<Object> view = getView(pixelsPerUnit);
+        if (gridLayer != null && view.equals(gridLayerView)) {
+            drawLayer(ctx, gridLayer, 0, 0, canvasWidth, canvasHeight);
+        } else {
+            drawGrid(ctx, pixelsPerUnit);
+            if (view.equals(lastView)) {
+                gridLayer = snapshotLayer(gridLayer);
+                gridLayerView = (gridLayer != null) ? view : null;
+            }
+        }
+        lastView = view;
+
+        ctx.setTransform(gridToScreen);
+        drawAll(ctx, drawables, pixelsPerUnit);
+
+        if (hasVisibleLiveDrawables()) {
+            backgroundLayer = snapshotLayer(backgroundLayer);
+            backgroundLayerView = (backgroundLayer != null) ? view : null;
+            ctx.setTransform(gridToScreen);
+            drawAll(ctx, liveDrawables, pixelsPerUnit);
+            liveArea = computeLiveArea();
+        } else {
+            backgroundLayerView = null;
+            liveArea = null;
+        }
+    }
+
+    /**
+     * Discards the cached background layer, which must be done whenever a static drawable changes while live
+     * drawables are visible.
+     */
+    public void invalidateBackground() {
+        backgroundLayerView = null;
+    }
+
+    /**
+     * Redraws only the live drawables over the cached background layer. The background is restored in the area
+     * covered by the live drawables in the previous and current frames, which are taken from the bounds the live
+     * drawables report. Falls back to {@link #refresh()} if the background layer is not valid for the current view.
+     */
+    public void refreshLiveLayer() {
+        double pixelsPerUnit = getPixelsPerUnit();
+        if (backgroundLayer == null || getWidth() != canvasWidth || getHeight() != canvasHeight
+                || !getView(pixelsPerUnit).equals(backgroundLayerView)) {
+            refresh();
+            return;
+        }
+
+        Rectangle2D newLiveArea = computeLiveArea();
+        Rectangle2D dirtyArea;
+        if (liveArea == null || newLiveArea == null) {
+            dirtyArea = new Rectangle2D(0, 0, canvasWidth, canvasHeight);
+        } else if (liveArea.getWidth() <= 0 || liveArea.getHeight() <= 0) {
+            dirtyArea = newLiveArea;
+        } else if (newLiveArea.getWidth() <= 0 || newLiveArea.getHeight() <= 0) {
+            dirtyArea = liveArea;
+        } else {
+            double minX = Math.min(liveArea.getMinX(), newLiveArea.getMinX());
+            double minY = Math.min(liveArea.getMinY(), newLiveArea.getMinY());
+            double maxX = Math.max(liveArea.getMaxX(), newLiveArea.getMaxX());
+            double maxY = Math.max(liveArea.getMaxY(), newLiveArea.getMaxY());
+            dirtyArea = new Rectangle2D(minX, minY, maxX - minX, maxY - minY);
+        }
+        liveArea = newLiveArea;
+
+        if (dirtyArea.getWidth() <= 0 || dirtyArea.getHeight() <= 0) {
+            return;
+        }
+
+        GraphicsContext ctx = getGraphicsContext2D();
+        ctx.save();
+        ctx.setTransform(IDENTITY_TRANSFORM);
+        ctx.beginPath();
+        ctx.rect(dirtyArea.getMinX(), dirtyArea.getMinY(), dirtyArea.getWidth(), dirtyArea.getHeight());
+        ctx.clip();
+        ctx.clearRect(dirtyArea.getMinX(), dirtyArea.getMinY(), dirtyArea.getWidth(), dirtyArea.getHeight());
+        drawLayer(ctx, backgroundLayer,
+                dirtyArea.getMinX(), dirtyArea.getMinY(), dirtyArea.getWidth(), dirtyArea.getHeight());
+        ctx.setTransform(gridToScreen);
+        drawAll(ctx, liveDrawables, pixelsPerUnit);
+        ctx.restore();
+    }
+
     public Point2D snapToGrid(double x, double y) {
         double gridSpacing = settings.getMajorGridSpacing() / settings.getMinorGridDivision();
         return new Point2D(Math.rint(x / gridSpacing)*gridSpacing,
@@ -17,13 +17,16 @@
 package com.gcodebuilder.generator;
 
 import com.gcodebuilder.app.GridSettings;
+import com.gcodebuilder.canvas.Drawable;
 import com.gcodebuilder.geometry.Drawing;
 import com.gcodebuilder.geometry.Shape;
 import com.gcodebuilder.recipe.GCodeRecipe;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.text.Font;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 @Data
 @EqualsAndHashCode(callSuper = true)
@@ -35,15 +38,14 @@ public class DrawingGCodeDrawable extends GCodeDrawable {
         return super.isVisible() && drawing != null;
     }
 
-    @Override
-    public void draw(GraphicsContext ctx, double pixelsPerUnit, GridSettings settings) {
-        if (!isVisible()) {
-            return;
-        }
-
+    private void drawShapes(GraphicsContext ctx, double pixelsPerUnit, GridSettings settings, boolean live) {
         ctx.setFont(Font.font(10.0));
 
         for (Shape<?> shape : drawing.getShapes()) {
+            if (drawing.isLiveShape(shape) != live) {
+                continue;
+            }
+
             // get shape recipe
             int recipeId = shape.getRecipeId();
             GCodeRecipe recipe;
@@ -58,4 +60,77 @@ public class DrawingGCodeDrawable extends GCodeDrawable {
             drawable.draw(ctx, pixelsPerUnit, settings);
         }
     }
+
+    @Override
+    public void draw(GraphicsContext ctx, double pixelsPerUnit, GridSettings settings) {
+        if (!isVisible()) {
+            return;
+        }
+
+        drawShapes(ctx, pixelsPerUnit, settings, false);
+    }
+
+    // toolpath labels are drawn in screen pixels around the middle of each toolpath segment
+    private static final double LABEL_PADDING = 40;
+
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final Drawable liveLayer = new Drawable() {
+        // scale the live layer was last drawn at, used to pad the bounds for labels
+        private double pixelsPerUnit = 0;
+
+        @Override
+        public void draw(GraphicsContext ctx, double pixelsPerUnit, GridSettings settings) {
+            this.pixelsPerUnit = pixelsPerUnit;
+            drawShapes(ctx, pixelsPerUnit, settings, true);
+        }
+
+        @Override
+        public boolean isVisible() {
+            return DrawingGCodeDrawable.this.isVisible() && drawing.hasLiveShapes();
+        }
+
+        @Override
+        public Rectangle2D getBounds() {
+            if (pixelsPerUnit <= 0) {
+                return null;
+            }
+            double labelPadding = LABEL_PADDING / pixelsPerUnit;
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (Shape<?> shape : drawing.getShapes()) {
+                if (!drawing.isLiveShape(shape) || shape.getRecipeId() <= 0) {
+                    continue;
+                }
+                Rectangle2D shapeBounds = shape.getBoundingBox();
+                if (shapeBounds == null) {
+                    continue;
+                }
+                // toolpaths and every stage of their computation stay within the tool radius of the shape
+                GCodeRecipe recipe = drawing.getRecipe(shape.getRecipeId()).getRecipeForUnit(drawing.getLengthUnit());
+                double padding = recipe.getToolWidth() / 2 + labelPadding;
+                minX = Math.min(minX, shapeBounds.getMinX() - padding);
+                minY = Math.min(minY, shapeBounds.getMinY() - padding);
+                maxX = Math.max(maxX, shapeBounds.getMaxX() + padding);
+                maxY = Math.max(maxY, shapeBounds.getMaxY() + padding);
+            }
+            if (minX > maxX || minY > maxY) {
+                return Rectangle2D.EMPTY;
+            }
+            return new Rectangle2D(minX, minY, maxX - minX, maxY - minY);
+        }
+    };
+
+    /**
+     * Returns a drawable that draws the toolpaths of the live shapes of the drawing. Its bounds cover the live shapes
+     * padded by the tool radius of their recipes and by room for the toolpath labels, so only that area of the canvas
+     * is repainted while the shapes are edited.
+     *
+     * @return live layer drawable
+     */
+    public Drawable getLiveLayer() {
+        return liveLayer;
+    }
 }
@@ -20,27 +20,43 @@ import com.gcodebuilder.geometry.Drawing;
 import com.gcodebuilder.geometry.Shape;
 import com.gcodebuilder.model.ArcDistanceMode;
 import com.gcodebuilder.model.DistanceMode;
+import com.gcodebuilder.model.DrillOrder;
 import com.gcodebuilder.model.FeedRateMode;
 import com.gcodebuilder.model.GCodeBuilder;
+import com.gcodebuilder.recipe.GCodeDrillingRecipe;
 import com.gcodebuilder.recipe.GCodeRecipe;
 import lombok.Data;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 @Data
 public class DrawingGCodeGenerator implements GCodeGenerator {
     private static final Logger log = LogManager.getLogger(DrawingGCodeGenerator.class);
 
+    // optimizers keep no state between searches, so one can be shared by all generators
+    private static final DrillOrderOptimizer DEFAULT_DRILL_ORDER_OPTIMIZER = new DrillOrderOptimizer();
+
     private final Drawing drawing;
     private final boolean selectedShapesOnly;
 
-    @Override
-    public void generateGCode(GCodeBuilder builder) {
-        builder .unitMode(drawing.getLengthUnit().getMode())
-                .distanceMode(DistanceMode.ABSOLUTE)
-                .arcDistanceMode(ArcDistanceMode.INCREMENTAL)
-                .feedRateMode(FeedRateMode.UNITS_PER_MIN);
+    // shapes are generated in parallel on this pool, or sequentially if null
+    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+
+    // orders the drill points of all shapes drilled with the same recipe, which are drilled together where the first
+    // of those shapes is in the drawing, for every drilling recipe if set, and otherwise only for drilling recipes with
+    // an OPTIMIZED drill order
+    private DrillOrderOptimizer drillOrderOptimizer;
 
+    private List<Shape<?>> getShapesToGenerate() {
+        List<Shape<?>> shapes = new ArrayList<>();
         for (Shape<?> shape : drawing.getShapes()) {
             if (selectedShapesOnly && !shape.isSelected()) {
                 log.info(String.format("Not generating GCode for unselected shape:%s",
@@ -48,24 +64,139 @@ public class DrawingGCodeGenerator implements GCodeGenerator {
                 continue;
             }
 
-            int recipeId = shape.getRecipeId();
-            if (recipeId <= 0) {
-                continue;
+            if (shape.getRecipeId() > 0) {
+                shapes.add(shape);
             }
+        }
+        return shapes;
+    }
 
-            GCodeRecipe recipe = drawing.getRecipe(recipeId).getRecipeForUnit(drawing.getLengthUnit());
-            GCodeGenerator generator = recipe.getGCodeGenerator(shape);
-            builder.emptyLine();
-            builder.resetMotionMode();
-            if (generator != null) {
-                builder.comment(String.format("shape:%s recipe:%s",
-                        shape.getClass().getSimpleName(), recipe.getName()));
-                generator.generateGCode(builder);
+    private DrillOrderOptimizer findDrillOrderOptimizer(Shape<?> shape) {
+        GCodeRecipe recipe = drawing.getRecipe(shape.getRecipeId());
+        if (!(recipe instanceof GCodeDrillingRecipe)) {
+            return null;
+        } else if (drillOrderOptimizer != null) {
+            return drillOrderOptimizer;
+        } else if (((GCodeDrillingRecipe)recipe).getDrillOrder() == DrillOrder.OPTIMIZED) {
+            return DEFAULT_DRILL_ORDER_OPTIMIZER;
+        } else {
+            return null;
+        }
+    }
+
+    private boolean isDrillingGroupShape(Shape<?> shape) {
+        return findDrillOrderOptimizer(shape) != null;
+    }
+
+    // groups shapes generated together, which are the shapes drilled with the same recipe when drill points are
+    // ordered, and otherwise each shape on its own
+    private List<List<Shape<?>>> groupShapes(List<Shape<?>> shapes) {
+        List<List<Shape<?>>> groups = new ArrayList<>();
+        Map<Integer, List<Shape<?>>> drillingGroups = new HashMap<>();
+        for (Shape<?> shape : shapes) {
+            if (isDrillingGroupShape(shape)) {
+                List<Shape<?>> group = drillingGroups.get(shape.getRecipeId());
+                if (group == null) {
+                    group = new ArrayList<>();
+                    drillingGroups.put(shape.getRecipeId(), group);
+                    groups.add(group);
+                }
+                group.add(shape);
+            } else {
+                groups.add(Collections.singletonList(shape));
+            }
+        }
+        return groups;
+    }
+
+    private void generateShapeGCode(GCodeBuilder builder, int groupIndex, List<List<Shape<?>>> groups,
+                                    GCodeProgressMonitor monitor) {
+        List<Shape<?>> group = groups.get(groupIndex);
+        Shape<?> shape = group.get(0);
+        GCodeRecipe recipe = drawing.getRecipe(shape.getRecipeId()).getRecipeForUnit(drawing.getLengthUnit());
+        ShapeGenerationEvent event = ShapeGenerationEvent.beginShape();
+        generateShapeGCode(builder, group, recipe, monitor);
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.shapeIndex = groupIndex;
+                event.shapeCount = groups.size();
+                event.shapeType = shape.getClass().getSimpleName();
+                event.recipe = recipe.getName();
+                event.recipeType = recipe.getType().name();
+                event.commit();
+            }
+        }
+    }
+
+    private void generateShapeGCode(GCodeBuilder builder, List<Shape<?>> group, GCodeRecipe recipe,
+                                    GCodeProgressMonitor monitor) {
+        Shape<?> shape = group.get(0);
+        GCodeGenerator generator = isDrillingGroupShape(shape)
+                ? new GCodeDrillingRecipeGenerator((GCodeDrillingRecipe)recipe, group, findDrillOrderOptimizer(shape))
+                : recipe.getGCodeGenerator(shape);
+        builder.emptyLine();
+        builder.resetMotionMode();
+        if (generator != null) {
+            if (group.size() > 1) {
+                builder.comment(String.format("shapes:%d recipe:%s", group.size(), recipe.getName()));
             } else {
-                log.warn("Recipe:{} returned null generator for shape:{}", recipe, shape);
-                builder.comment(String.format("shape:%s recipe:%s - no generator available",
+                builder.comment(String.format("shape:%s recipe:%s",
                         shape.getClass().getSimpleName(), recipe.getName()));
             }
+            generator.generateGCode(builder, monitor);
+        } else {
+            log.warn("Recipe:{} returned null generator for shape:{}", recipe, shape);
+            builder.comment(String.format("shape:%s recipe:%s - no generator available",
+                    shape.getClass().getSimpleName(), recipe.getName()));
+        }
+    }
+
+    @Override
+    public void generateGCode(GCodeBuilder builder, GCodeProgressMonitor monitor) {
+        builder .unitMode(drawing.getLengthUnit().getMode())
+                .distanceMode(DistanceMode.ABSOLUTE)
+                .arcDistanceMode(ArcDistanceMode.INCREMENTAL)
+                .feedRateMode(FeedRateMode.UNITS_PER_MIN);
+
+        List<List<Shape<?>>> groups = groupShapes(getShapesToGenerate());
+
+        if (forkJoinPool == null || groups.size() < 2) {
+            for (int i = 0; i < groups.size(); ++i) {
+                monitor.checkCancelled();
+                monitor.shapeStarted(i, groups.size(), groups.get(i).get(0));
+                generateShapeGCode(builder, i, groups, monitor);
+            }
+            builder.endProgram();
+            return;
+        }
+
+        // Every shape starts by resetting the motion mode, so each shape can be generated into a builder forked
+        // from the same modal state and joined in drawing order to produce the same lines as sequential generation.
+        // Joining after a shape that left other modes set, such as incremental distances, adds a line of modal words
+        // returning to the forked state instead of generating the shape again.
+        builder.resetMotionMode();
+        List<ForkJoinTask<GCodeBuilder>> tasks = new ArrayList<>();
+        for (int i = 0; i < groups.size(); ++i) {
+            int groupIndex = i;
+            Shape<?> shape = groups.get(i).get(0);
+            GCodeBuilder shapeBuilder = builder.fork();
+            tasks.add(forkJoinPool.submit(() -> {
+                monitor.checkCancelled();
+                monitor.shapeStarted(groupIndex, groups.size(), shape);
+                generateShapeGCode(shapeBuilder, groupIndex, groups, monitor);
+                return shapeBuilder;
+            }));
+        }
+
+        try {
+            for (int i = 0; i < groups.size(); ++i) {
+                builder.resetMotionMode().join(tasks.get(i).join());
+            }
+        } finally {
+            // stop shapes that have not started yet if joining failed or was cancelled
+            tasks.forEach(task -> task.cancel(false));
         }
+        builder.endProgram();
     }
 }
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator;
+
+import com.gcodebuilder.geometry.KdTree;
+import com.google.common.base.Preconditions;
+import javafx.geometry.Point2D;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Orders points to shorten the rapid moves between them, such as the drill points of all shapes drilled with the
+ * same recipe. The path starts at the first point and ends at any point. It is built by always moving to the
+ * nearest remaining point, then improved with 2-opt moves, which reverse part of the path, and Or-opt moves, which
+ * move up to three consecutive points elsewhere in the path, until neither finds an improvement or the pass limit is
+ * reached. The same points always give the same order, and the path found is never longer than the original order.
+ */
+public class DrillOrderOptimizer {
+    private static final int MAX_OR_OPT_LENGTH = 3;
+
+    // ignore improvements too small to matter, so rounding errors cannot make the search cycle
+    private static final double MIN_IMPROVEMENT = 1e-9;
+
+    @Data
+    public static class Result<T> {
+        private final List<T> points;
+        private final double originalDistance;
+        private final double optimizedDistance;
+
+        public double getDistanceSaved() {
+            return originalDistance - optimizedDistance;
+        }
+    }
+
+    /**
+     * Maximum number of passes of 2-opt and Or-opt moves over the whole path. Paths of a few hundred points usually
+     * stop improving after a handful of passes.
+     */
+    @Getter @Setter
+    private int maxPasses = 50;
+
+    /**
+     * Time limit for improving the path, which only stops the search early for very large sets of points. The order
+     * found depends on timing only when this limit is reached.
+     */
+    @Getter @Setter
+    private long timeBudgetMillis = 10_000;
+
+    // coordinates of the points being ordered, so each search has its own state and optimizers can be shared
+    private static class Search {
+        private final double[] xs;
+        private final double[] ys;
+
+        private Search(double[] xs, double[] ys) {
+            this.xs = xs;
+            this.ys = ys;
+        }
+
+        private double distance(int from, int to) {
+            double dx = xs[from] - xs[to];
+            double dy = ys[from] - ys[to];
+            return Math.sqrt(dx * dx + dy * dy);
+        }
+
+        private double pathDistance(int[] path) {
+            double total = 0;
+            for (int i = 1; i < path.length; ++i) {
+                total += distance(path[i - 1], path[i]);
+            }
+            return total;
+        }
+
+        private int[] nearestNeighbourPath() {
+            List<Integer> indexes = IntStream.range(0, xs.length).boxed().collect(Collectors.toList());
+            KdTree<Integer> remaining = new KdTree<>(indexes, index -> new Point2D(xs[index], ys[index]));
+            int[] path = new int[xs.length];
+            Integer current = indexes.get(0);
+            remaining.remove(current);
+            path[0] = current;
+            for (int i = 1; i < path.length; ++i) {
+                Iterator<Integer> nearest = remaining.nearest(new Point2D(xs[current], ys[current]));
+                current = nearest.next();
+                remaining.remove(current);
+                path[i] = current;
+            }
+            return path;
+        }
+
+        private static void reverse(int[] path, int from, int to) {
+            while (from < to) {
+                int tmp = path[from];
+                path[from++] = path[to];
+                path[to--] = tmp;
+            }
+        }
+
+        // reverses path[i..j] when that is shorter; the path end is free, so there may be no edge after j
+        private boolean twoOptPass(int[] path, long deadline) {
+            boolean improved = false;
+            int n = path.length;
+            for (int i = 1; i < n - 1; ++i) {
+                if (System.nanoTime() > deadline) {
+                    break;
+                }
+                int before = path[i - 1];
+                for (int j = i + 1; j < n; ++j) {
+                    double removed = distance(before, path[i]);
+                    double added = distance(before, path[j]);
+                    if (j + 1 < n) {
+                        removed += distance(path[j], path[j + 1]);
+                        added += distance(path[i], path[j + 1]);
+                    }
+                    if (removed - added > MIN_IMPROVEMENT) {
+                        reverse(path, i, j);
+                        improved = true;
+                    }
+                }
+            }
+            return improved;
+        }
+
+        // moves path[i..i+length-1], possibly reversed, to between two other consecutive points when that is shorter
+        private boolean orOptPass(int[] path, long deadline) {
+            boolean improved = false;
+            int n = path.length;
+            for (int length = 1; length <= MAX_OR_OPT_LENGTH; ++length) {
+                for (int i = 1; i + length <= n; ++i) {
+                    if (System.nanoTime() > deadline) {
+                        return improved;
+                    }
+                    int first = path[i];
+                    int last = path[i + length - 1];
+                    int before = path[i - 1];
+                    boolean atEnd = i + length == n;
+                    double removeGain = distance(before, first);
+                    if (!atEnd) {
+                        int after = path[i + length];
+                        removeGain += distance(last, after) - distance(before, after);
+                    }
+
+                    int bestPosition = -1;
+                    boolean bestReversed = false;
+                    double bestGain = MIN_IMPROVEMENT;
+                    // insert between path[k] and path[k + 1], or after the last point when k + 1 == n
+                    for (int k = 0; k < n; ++k) {
+                        if (k >= i - 1 && k < i + length) {
+                            continue;
+                        }
+                        int prev = path[k];
+                        boolean insertAtEnd = k + 1 == n;
+                        double oldEdge = insertAtEnd ? 0 : distance(prev, path[k + 1]);
+                        double forward = distance(prev, first) - oldEdge
+                                + (insertAtEnd ? 0 : distance(last, path[k + 1]));
+                        double reversed = distance(prev, last) - oldEdge
+                                + (insertAtEnd ? 0 : distance(first, path[k + 1]));
+                        if (removeGain - forward > bestGain) {
+                            bestGain = removeGain - forward;
+                            bestPosition = k;
+                            bestReversed = false;
+                        }
+                        if (removeGain - reversed > bestGain) {
+                            bestGain = removeGain - reversed;
+                            bestPosition = k;
+                            bestReversed = true;
+                        }
+                    }
+
+                    if (bestPosition >= 0) {
+                        moveSegment(path, i, length, bestPosition, bestReversed);
+                        improved = true;
+                    }
+                }
+            }
+            return improved;
+        }
+
+        private static void moveSegment(int[] path, int i, int length, int k, boolean reversed) {
+            int[] segment = new int[length];
+            System.arraycopy(path, i, segment, 0, length);
+            if (reversed) {
+                reverse(segment, 0, length - 1);
+            }
+            if (k < i) {
+                // shift path[k+1..i-1] right to make room after path[k]
+                System.arraycopy(path, k + 1, path, k + 1 + length, i - k - 1);
+                System.arraycopy(segment, 0, path, k + 1, length);
+            } else {
+                // shift path[i+length..k] left to make room after path[k]
+                System.arraycopy(path, i + length, path, i, k - i - length + 1);
+                System.arraycopy(segment, 0, path, k - length + 1, length);
+            }
+        }
+    }
+
+    /**
+     * Orders points to shorten the path visiting all of them.
+     *
+     * @param points points in their original order
+     * @param pointFunction location of each point
+     * @param <T> type of point
+     * @return points in optimized order with the original and optimized path lengths
+     */
+    public <T> Result<T> optimize(List<T> points, Function<? super T, Point2D> pointFunction) {
+        Preconditions.checkArgument(maxPasses >= 0, "maxPasses must not be negative");
+        Preconditions.checkArgument(timeBudgetMillis >= 0, "timeBudgetMillis must not be negative");
+        long deadline = System.nanoTime() + timeBudgetMillis * 1_000_000L;
+        double[] xs = new double[points.size()];
+        double[] ys = new double[points.size()];
+        for (int i = 0; i < points.size(); ++i) {
+            Point2D point = pointFunction.apply(points.get(i));
+            xs[i] = point.getX();
+            ys[i] = point.getY();
+        }
+
+        Search search = new Search(xs, ys);
+        int[] path = IntStream.range(0, points.size()).toArray();
+        double originalDistance = search.pathDistance(path);
+        if (points.size() > 2) {
+            int[] nearestPath = search.nearestNeighbourPath();
+            if (search.pathDistance(nearestPath) < originalDistance) {
+                path = nearestPath;
+            }
+            boolean improved = true;
+            for (int pass = 0; improved && pass < maxPasses && System.nanoTime() <= deadline; ++pass) {
+                improved = search.twoOptPass(path, deadline);
+                improved |= search.orOptPass(path, deadline);
+            }
+        }
+
+        List<T> orderedPoints = new ArrayList<>(points.size());
+        for (int index : path) {
+            orderedPoints.add(points.get(index));
+        }
+        return new Result<>(orderedPoints, originalDistance, search.pathDistance(path));
+    }
+}
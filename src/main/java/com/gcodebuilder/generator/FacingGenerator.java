@@ -37,7 +37,7 @@ public class FacingGenerator implements GCodeGenerator {
     private int plungeRate = 30;
 
     @Override
-    public void generateGCode(GCodeBuilder builder) {
+    public void generateGCode(GCodeBuilder builder, GCodeProgressMonitor monitor) {
         builder.unitMode(unit.getMode())
                 .distanceMode(DistanceMode.ABSOLUTE)
                 .feedRateMode(FeedRateMode.UNITS_PER_MIN)
@@ -55,6 +55,7 @@ public class FacingGenerator implements GCodeGenerator {
         double minZ = stockSurface - depth;
 
         while (currentZ > minZ) {
+            monitor.checkCancelled();
             currentZ = Math.max(minZ, currentZ - stepDown);
 
             builder.motionMode(MotionMode.RAPID_LINEAR)
@@ -82,6 +83,8 @@ public class FacingGenerator implements GCodeGenerator {
 
                 stepAdjustment += toolWidth*stepOver/100.0;
             }
+
+            monitor.shapeProgress(null, (stockSurface - currentZ) / depth);
         }
 
         builder.motionMode(MotionMode.RAPID_LINEAR)
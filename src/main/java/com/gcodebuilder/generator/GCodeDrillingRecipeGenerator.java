@@ -20,35 +20,85 @@ import com.gcodebuilder.geometry.Point;
 import com.gcodebuilder.geometry.Shape;
 import com.gcodebuilder.model.ArcDistanceMode;
 import com.gcodebuilder.model.DistanceMode;
+import com.gcodebuilder.model.DrillCycleMode;
 import com.gcodebuilder.model.FeedRateMode;
 import com.gcodebuilder.model.GCodeBuilder;
 import com.gcodebuilder.model.MotionMode;
 import com.gcodebuilder.recipe.GCodeDrillingRecipe;
+import com.google.common.base.Preconditions;
 import lombok.Data;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 @Data
 public class GCodeDrillingRecipeGenerator implements GCodeGenerator {
     private static final Logger log = LogManager.getLogger(GCodeDrillingRecipeGenerator.class);
 
     private final GCodeDrillingRecipe recipe;
-    private final Shape<?> shape;
+    private final List<Shape<?>> shapes;
+
+    // drill points are visited in the order returned by the recipe if null
+    private final DrillOrderOptimizer drillOrderOptimizer;
 
     public GCodeDrillingRecipeGenerator(GCodeDrillingRecipe recipe, Shape<?> shape) {
+        this(recipe, Collections.singletonList(shape), null);
+    }
+
+    /**
+     * Creates a generator that drills the points of several shapes drilled with the same recipe in one pass.
+     *
+     * @param recipe drilling recipe shared by all shapes
+     * @param shapes shapes to drill; progress is reported for the first shape
+     * @param drillOrderOptimizer orders the drill points of all shapes, or null to drill them in shape order
+     */
+    public GCodeDrillingRecipeGenerator(GCodeDrillingRecipe recipe, List<Shape<?>> shapes,
+                                        DrillOrderOptimizer drillOrderOptimizer) {
+        Preconditions.checkArgument(!shapes.isEmpty(), "shapes must not be empty");
         this.recipe = recipe;
-        this.shape = shape;
+        this.shapes = shapes;
+        this.drillOrderOptimizer = drillOrderOptimizer;
+    }
+
+    private List<Point> getDrillPoints(GCodeBuilder builder) {
+        List<Point> drillPoints = new ArrayList<>();
+        for (Shape<?> shape : shapes) {
+            drillPoints.addAll(recipe.getDrillPoints(shape));
+        }
+        if (drillOrderOptimizer == null || drillPoints.size() < 3) {
+            return drillPoints;
+        }
+
+        DrillOrderOptimizer.Result<Point> result = drillOrderOptimizer.optimize(drillPoints, Point::asPoint2D);
+        log.info("Ordered {} drill points: rapid distance {} -> {}", drillPoints.size(),
+                result.getOriginalDistance(), result.getOptimizedDistance());
+        builder.comment(String.format("drill points:%d rapid distance:%.4f saved:%.4f", drillPoints.size(),
+                result.getOptimizedDistance(), result.getDistanceSaved()));
+        return result.getPoints();
     }
 
     @Override
-    public void generateGCode(GCodeBuilder builder) {
-        log.info("Generating GCode for:{}", shape);
+    public void generateGCode(GCodeBuilder builder, GCodeProgressMonitor monitor) {
+        Shape<?> shape = shapes.get(0);
+        log.info("Generating GCode for:{}", shapes);
 
         builder .distanceMode(DistanceMode.ABSOLUTE)
                 .arcDistanceMode(ArcDistanceMode.INCREMENTAL)
                 .feedRateMode(FeedRateMode.UNITS_PER_MIN);
 
-        for (Point drillPoint : recipe.getDrillPoints(shape)) {
+        List<Point> drillPoints = getDrillPoints(builder);
+        if (recipe.getDrillCycleMode() == DrillCycleMode.CANNED_CYCLE) {
+            generateCannedCycles(builder, monitor, shape, drillPoints);
+            return;
+        }
+
+        for (int i = 0; i < drillPoints.size(); ++i) {
+            monitor.checkCancelled();
+            Point drillPoint = drillPoints.get(i);
+
             // move to drill point
             builder.motionMode(MotionMode.RAPID_LINEAR)
                     .Z(recipe.getSafetyHeight()).endLine()
@@ -72,6 +122,37 @@ public class GCodeDrillingRecipeGenerator implements GCodeGenerator {
                 // update current depth
                 currentZ = cutToZ;
             }
+
+            monitor.shapeProgress(shape, (double)(i + 1) / drillPoints.size());
         }
     }
+
+    private void generateCannedCycles(GCodeBuilder builder, GCodeProgressMonitor monitor,
+                                      Shape<?> shape, List<Point> drillPoints) {
+        // retract to the R plane between holes, peck only if one pass can't reach the bottom
+        double stepDown = recipe.getStepDown();
+        boolean peck = stepDown > 0 && stepDown < recipe.getDepth();
+        MotionMode cycle = peck ? MotionMode.PECK_DRILL_CYCLE : MotionMode.DRILL_CYCLE;
+        double bottomZ = recipe.getStockSurface() - recipe.getDepth();
+
+        builder.motionMode(MotionMode.RAPID_LINEAR)
+                .Z(recipe.getSafetyHeight()).endLine();
+
+        for (int i = 0; i < drillPoints.size(); ++i) {
+            monitor.checkCancelled();
+            Point drillPoint = drillPoints.get(i);
+
+            builder.motionMode(cycle).feedRate(recipe.getPlungeRate())
+                    .XY(drillPoint.getX(), drillPoint.getY())
+                    .Z(bottomZ).R(recipe.getSafetyHeight());
+            if (peck) {
+                builder.Q(stepDown);
+            }
+            builder.endLine();
+
+            monitor.shapeProgress(shape, (double)(i + 1) / drillPoints.size());
+        }
+
+        builder.motionMode(MotionMode.CANCEL_CYCLE).endLine();
+    }
 }
@@ -19,12 +19,24 @@ package com.gcodebuilder.generator;
 import com.gcodebuilder.model.GCodeBuilder;
 import com.gcodebuilder.model.GCodeProgram;
 
+import java.io.Writer;
+
 public interface GCodeGenerator {
-    void generateGCode(GCodeBuilder builder);
+    void generateGCode(GCodeBuilder builder, GCodeProgressMonitor monitor);
+
+    default void generateGCode(GCodeBuilder builder) {
+        generateGCode(builder, GCodeProgressMonitor.NONE);
+    }
 
     default GCodeProgram generateGCode() {
         GCodeBuilder builder = new GCodeBuilder();
         generateGCode(builder);
         return builder.build();
     }
+
+    default void generateGCode(Writer out) {
+        GCodeBuilder builder = new GCodeBuilder(out);
+        generateGCode(builder);
+        builder.endProgram().flush();
+    }
 }
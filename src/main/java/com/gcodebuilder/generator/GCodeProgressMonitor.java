@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator;
+
+import com.gcodebuilder.geometry.Shape;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Receives progress updates from a {@link GCodeGenerator} and lets the caller cancel generation. Generators report
+ * progress between shapes and depth passes, which is also where they check for cancellation. Shapes may be
+ * generated in parallel, so implementations must be safe to call from several threads at once.
+ */
+public interface GCodeProgressMonitor {
+    GCodeProgressMonitor NONE = new GCodeProgressMonitor() {};
+
+    /**
+     * Called before GCode is generated for a shape.
+     *
+     * @param shapeIndex index of the shape among the shapes being generated
+     * @param shapeCount number of shapes being generated
+     * @param shape shape being generated
+     */
+    default void shapeStarted(int shapeIndex, int shapeCount, Shape<?> shape) {
+    }
+
+    /**
+     * Called after each depth pass or drill point of a shape.
+     *
+     * @param shape shape being generated, or null if the generator is not generating a shape
+     * @param fractionComplete fraction of the shape generated so far, between 0 and 1
+     */
+    default void shapeProgress(Shape<?> shape, double fractionComplete) {
+    }
+
+    default boolean isCancelled() {
+        return false;
+    }
+
+    default void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("GCode generation cancelled");
+        }
+    }
+}
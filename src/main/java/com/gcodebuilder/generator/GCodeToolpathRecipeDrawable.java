@@ -37,9 +37,6 @@ public class GCodeToolpathRecipeDrawable extends GCodeDrawable {
         ctx.setLineWidth(settings.getShapeLineWidth() / pixelsPerUnit / 2);
         generator.setPointRadius(settings.getShapePointRadius() / pixelsPerUnit);
         generator.setToolRadius(recipe.getToolWidth() / 2);
-        generator.addAllPaths(shape.convertToPaths());
-
-        // compute (and draw) toolpaths
-        recipe.computeToolpaths(generator, ctx, displayMode);
+        recipe.drawToolpaths(generator, shape.convertToPaths(), ctx, displayMode);
     }
 }
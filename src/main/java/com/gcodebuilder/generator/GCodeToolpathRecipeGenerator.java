@@ -17,13 +17,17 @@
 package com.gcodebuilder.generator;
 
 import com.gcodebuilder.generator.toolpath.Toolpath;
+import com.gcodebuilder.generator.toolpath.ToolpathCompressor;
 import com.gcodebuilder.generator.toolpath.ToolpathGenerator;
 import com.gcodebuilder.geometry.Shape;
 import com.gcodebuilder.model.ArcDistanceMode;
 import com.gcodebuilder.model.DistanceMode;
 import com.gcodebuilder.model.FeedRateMode;
 import com.gcodebuilder.model.GCodeBuilder;
+import com.gcodebuilder.model.GCodeSubroutine;
+import com.gcodebuilder.model.GCodeVariable;
 import com.gcodebuilder.model.MotionMode;
+import com.gcodebuilder.model.SubroutineDialect;
 import com.gcodebuilder.recipe.GCodeToolpathRecipe;
 import javafx.geometry.Point2D;
 import lombok.Data;
@@ -31,6 +35,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 @Data
 public class GCodeToolpathRecipeGenerator implements GCodeGenerator {
@@ -44,64 +49,95 @@ public class GCodeToolpathRecipeGenerator implements GCodeGenerator {
         this.shape = shape;
     }
 
+    private void generateToolpathsGCode(GCodeBuilder builder, ToolpathCompressor compressor, List<Toolpath> toolpaths,
+                                        UnaryOperator<GCodeBuilder> cutDepth) {
+        Point2D currentPoint = null;
+        for (Toolpath toolpath : toolpaths) {
+            // move to start point (unless already at start point)
+            Point2D startPoint = toolpath.getFirstSegment().getFrom();
+            if (!ToolpathGenerator.isSamePoint(currentPoint, startPoint)) {
+                // move over starting point
+                builder.motionMode(MotionMode.RAPID_LINEAR)
+                        .Z(recipe.getSafetyHeight()).endLine()
+                        .XY(startPoint.getX(), startPoint.getY()).endLine();
+
+                // plunge down to cut depth
+                cutDepth.apply(builder.motionMode(MotionMode.LINEAR).feedRate(recipe.getPlungeRate()))
+                        .endLine();
+            }
+            currentPoint = startPoint;
+
+            // cut profile in XY plane
+            for (Toolpath.Segment segment : toolpath.getSegments()) {
+                if (!ToolpathGenerator.isSamePoint(currentPoint, segment.getFrom())) {
+                    throw new IllegalStateException("toolpath segments are not connected!");
+                }
+
+                compressor.add(segment.getSegment());
+
+                currentPoint = segment.getTo();
+            }
+            compressor.flush();
+
+            // move between connected toolpaths
+            if (toolpath.hasNext()) {
+                Point2D nextStartPoint = toolpath.getNext().getLastSegment().getTo();
+                builder.motionMode(MotionMode.LINEAR).feedRate(recipe.getFeedRate())
+                        .XY(nextStartPoint.getX(), nextStartPoint.getY()).endLine();
+                currentPoint = nextStartPoint;
+            }
+        }
+    }
+
     @Override
-    public void generateGCode(GCodeBuilder builder) {
+    public void generateGCode(GCodeBuilder builder, GCodeProgressMonitor monitor) {
         log.info("Generating GCode for:{}", shape);
 
-        ToolpathGenerator generator = new ToolpathGenerator();
-        generator.setToolRadius(recipe.getToolWidth() / 2);
-        generator.addAllPaths(shape.convertToPaths());
-        List<Toolpath> toolpaths = recipe.computeToolpaths(generator);
+        List<Toolpath> toolpaths = recipe.getToolpaths(shape);
+        monitor.checkCancelled();
 
         builder .distanceMode(DistanceMode.ABSOLUTE)
                 .arcDistanceMode(ArcDistanceMode.INCREMENTAL)
                 .feedRateMode(FeedRateMode.UNITS_PER_MIN);
 
+        ToolpathCompressor compressor = new ToolpathCompressor(builder, recipe.getFeedRate(),
+                recipe.getChordTolerance());
+
+        // write the toolpaths once with the cut depth as a parameter when depth passes call a subroutine
+        GCodeSubroutine subroutine = null;
+        SubroutineDialect dialect = recipe.getDepthPassMode().getSubroutineDialect();
+        if (dialect != null) {
+            subroutine = builder.beginSubroutine(dialect);
+            GCodeVariable cutDepth = subroutine.addParameter('Z');
+            generateToolpathsGCode(builder, compressor, toolpaths, b -> b.Z(cutDepth));
+            builder.endSubroutine();
+        }
+
         double currentZ = recipe.getStockSurface();
         double minZ = recipe.getStockSurface() - recipe.getDepth();
 
         while (currentZ > minZ) {
+            monitor.checkCancelled();
+
             // step down or bottom out
             double cutToZ = Math.max(minZ, currentZ - recipe.getStepDown());
 
-            Point2D currentPoint = null;
-            for (Toolpath toolpath : toolpaths) {
-                // move to start point (unless already at start point)
-                Point2D startPoint = toolpath.getFirstSegment().getFrom();
-                if (!ToolpathGenerator.isSamePoint(currentPoint, startPoint)) {
-                    // move over starting point
-                    builder.motionMode(MotionMode.RAPID_LINEAR)
-                            .Z(recipe.getSafetyHeight()).endLine()
-                            .XY(startPoint.getX(), startPoint.getY()).endLine();
-
-                    // plunge down to cut depth
-                    builder.motionMode(MotionMode.LINEAR).feedRate(recipe.getPlungeRate())
-                            .Z(cutToZ).endLine();
-                }
-                currentPoint = startPoint;
-
-                // cut profile in XY plane
-                for (Toolpath.Segment segment : toolpath.getSegments()) {
-                    if (!ToolpathGenerator.isSamePoint(currentPoint, segment.getFrom())) {
-                        throw new IllegalStateException("toolpath segments are not connected!");
-                    }
-
-                    segment.generateGCode(builder, recipe.getFeedRate());
-
-                    currentPoint = segment.getTo();
-                }
-
-                // move between connected toolpaths
-                if (toolpath.hasNext()) {
-                    Point2D nextStartPoint = toolpath.getNext().getLastSegment().getTo();
-                    builder.motionMode(MotionMode.LINEAR).feedRate(recipe.getFeedRate())
-                            .XY(nextStartPoint.getX(), nextStartPoint.getY()).endLine();
-                    currentPoint = nextStartPoint;
-                }
+            if (subroutine != null) {
+                builder.callSubroutine(subroutine, cutToZ);
+            } else {
+                generateToolpathsGCode(builder, compressor, toolpaths, b -> b.Z(cutToZ));
             }
 
             // update current depth
             currentZ = cutToZ;
+            monitor.shapeProgress(shape, (recipe.getStockSurface() - currentZ) / recipe.getDepth());
+        }
+
+        if (recipe.getChordTolerance() > 0) {
+            log.info("Fitted {} cut moves into {} moves", compressor.getInputMoveCount(),
+                    compressor.getOutputMoveCount());
+            builder.comment(String.format("cut moves:%d fitted moves:%d",
+                    compressor.getInputMoveCount(), compressor.getOutputMoveCount()));
         }
 
         builder .motionMode(MotionMode.RAPID_LINEAR)
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event covering the generation of GCode for one shape of a drawing.
+ */
+@Name("com.gcodebuilder.ShapeGeneration")
+@Label("Shape GCode Generation")
+@Category({"GCodeBuilder", "GCode Generation"})
+@Description("Generation of GCode for one shape of a drawing")
+@StackTrace(false)
+class ShapeGenerationEvent extends Event {
+    private static final EventType EVENT_TYPE = EventType.getEventType(ShapeGenerationEvent.class);
+
+    @Label("Shape Index")
+    int shapeIndex;
+
+    @Label("Shape Count")
+    int shapeCount;
+
+    @Label("Shape Type")
+    String shapeType;
+
+    @Label("Recipe")
+    String recipe;
+
+    @Label("Recipe Type")
+    String recipeType;
+
+    /**
+     * Starts timing a shape.
+     *
+     * @return started event, or null if no recording has this event enabled
+     */
+    static ShapeGenerationEvent beginShape() {
+        if (!EVENT_TYPE.isEnabled()) {
+            return null;
+        }
+        ShapeGenerationEvent event = new ShapeGenerationEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator.toolpath;
+
+import com.gcodebuilder.geometry.SpatialGrid;
+import javafx.geometry.Point2D;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the end points of a list of toolpath segments used to chain segments into toolpaths. Segments are found
+ * by connection identity, or by connection points closer than a tolerance using a spatial hash with cells the size of
+ * the tolerance. Lookups return the same segment as a linear scan of the list in order, so toolpaths do not change
+ * when they are chained with the index.
+ */
+class SegmentEndpointIndex {
+    private final List<Toolpath.Segment> segments;
+    private final double tolerance;
+    private final boolean[] removed;
+    private int firstRemaining = 0;
+
+    private final Map<Toolpath.Segment, Integer> positions = new IdentityHashMap<>();
+    private final Map<Toolpath.Connection, List<Integer>> fromConnections = new HashMap<>();
+    private final Map<Toolpath.Connection, List<Integer>> toConnections = new HashMap<>();
+    private final SpatialGrid<Toolpath.Segment> fromPoints;
+    private final SpatialGrid<Toolpath.Segment> toPoints;
+
+    SegmentEndpointIndex(List<Toolpath.Segment> segments, double tolerance) {
+        this.segments = segments;
+        this.tolerance = tolerance;
+        this.removed = new boolean[segments.size()];
+        this.fromPoints = new SpatialGrid<>(tolerance);
+        this.toPoints = new SpatialGrid<>(tolerance);
+        for (int position = 0; position < segments.size(); ++position) {
+            Toolpath.Segment segment = segments.get(position);
+            positions.put(segment, position);
+            indexEndpoint(fromConnections, fromPoints, segment, segment.getFromConnection(), position);
+            indexEndpoint(toConnections, toPoints, segment, segment.getToConnection(), position);
+        }
+    }
+
+    private static void indexEndpoint(Map<Toolpath.Connection, List<Integer>> connections,
+                                      SpatialGrid<Toolpath.Segment> points, Toolpath.Segment segment,
+                                      Toolpath.Connection connection, int position) {
+        // positions are added in increasing order, so each list stays sorted
+        connections.computeIfAbsent(connection, c -> new ArrayList<>()).add(position);
+        Point2D point = connection.getConnectionPoint();
+        if (point != null) {
+            points.insert(segment, point.getX(), point.getY(), point.getX(), point.getY());
+        }
+    }
+
+    private void remove(int position) {
+        removed[position] = true;
+        Toolpath.Segment segment = segments.get(position);
+        fromPoints.remove(segment);
+        toPoints.remove(segment);
+    }
+
+    private int findFirstRemaining(Map<Toolpath.Connection, List<Integer>> connections,
+                                   Toolpath.Connection connection) {
+        for (int position : connections.getOrDefault(connection, Collections.emptyList())) {
+            if (!removed[position]) {
+                return position;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private List<Toolpath.Segment> findNear(SpatialGrid<Toolpath.Segment> points, Point2D point) {
+        return points.query(point.getX() - tolerance, point.getY() - tolerance,
+                point.getX() + tolerance, point.getY() + tolerance);
+    }
+
+    private Toolpath.Segment removeOriented(int position, boolean fromMatched) {
+        remove(position);
+        Toolpath.Segment segment = segments.get(position);
+        return fromMatched ? segment : segment.flip();
+    }
+
+    /**
+     * Removes the first remaining segment.
+     *
+     * @return first remaining segment, or null if all segments have been removed
+     */
+    Toolpath.Segment pollFirst() {
+        while (firstRemaining < removed.length && removed[firstRemaining]) {
+            ++firstRemaining;
+        }
+        if (firstRemaining < removed.length) {
+            remove(firstRemaining);
+            return segments.get(firstRemaining);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the first remaining segment that starts or ends at a connection.
+     *
+     * @param connection connection to match
+     * @return segment starting at connection, flipped if it ended at connection, or null if none was found
+     */
+    Toolpath.Segment pollConnected(Toolpath.Connection connection) {
+        int fromPosition = findFirstRemaining(fromConnections, connection);
+        int toPosition = findFirstRemaining(toConnections, connection);
+        int position = Math.min(fromPosition, toPosition);
+        if (position == Integer.MAX_VALUE) {
+            return null;
+        }
+        return removeOriented(position, fromPosition == position);
+    }
+
+    /**
+     * Removes the first remaining segment that starts or ends at the same point as a connection.
+     *
+     * @param connection connection to match
+     * @return segment starting at the connection point, flipped if it ended at the connection point, or null if none
+     *         was found
+     */
+    Toolpath.Segment pollNear(Toolpath.Connection connection) {
+        Point2D point = connection.getConnectionPoint();
+        if (point == null) {
+            return null;
+        }
+        int position = Integer.MAX_VALUE;
+        boolean fromMatched = false;
+        for (Toolpath.Segment other : findNear(fromPoints, point)) {
+            int otherPosition = positions.get(other);
+            if (otherPosition < position && ToolpathGenerator.isSamePoint(point,
+                    other.getFromConnection().getConnectionPoint())) {
+                position = otherPosition;
+                fromMatched = true;
+            }
+        }
+        for (Toolpath.Segment other : findNear(toPoints, point)) {
+            int otherPosition = positions.get(other);
+            if (otherPosition < position && ToolpathGenerator.isSamePoint(point,
+                    other.getToConnection().getConnectionPoint())) {
+                position = otherPosition;
+                fromMatched = false;
+            }
+        }
+        if (position == Integer.MAX_VALUE) {
+            return null;
+        }
+        return removeOriented(position, fromMatched);
+    }
+
+    /**
+     * Finds the last remaining segment that ends at a connection or at the same point as the connection.
+     *
+     * @param connection connection to match
+     * @return position of the last matching segment, or -1 if none was found
+     */
+    int findLastEndingAt(Toolpath.Connection connection) {
+        int position = -1;
+        List<Integer> connected = toConnections.getOrDefault(connection, Collections.emptyList());
+        for (int i = connected.size() - 1; i >= 0; --i) {
+            if (!removed[connected.get(i)]) {
+                position = connected.get(i);
+                break;
+            }
+        }
+        Point2D point = connection.getConnectionPoint();
+        if (point != null) {
+            for (Toolpath.Segment other : findNear(toPoints, point)) {
+                int otherPosition = positions.get(other);
+                if (otherPosition > position && ToolpathGenerator.isSamePoint(
+                        other.getToConnection().getConnectionPoint(), point)) {
+                    position = otherPosition;
+                }
+            }
+        }
+        return position;
+    }
+}
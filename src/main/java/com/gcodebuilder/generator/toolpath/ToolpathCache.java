@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator.toolpath;
+
+import com.gcodebuilder.geometry.Path;
+import com.gcodebuilder.geometry.Point;
+import com.google.common.base.Preconditions;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of computed toolpaths with least recently used eviction. Toolpaths are looked up by the geometry of
+ * the paths they were computed from together with the recipe settings that affect the computation, so a shape that
+ * has not changed since its toolpaths were last computed gets the same toolpaths back without recomputing them.
+ * Cached toolpaths are shared by every caller and must not be modified.
+ * <p>
+ * The cache also keeps the few most recently used {@link ToolpathResult}s holding every stage of a computation,
+ * which are much larger than the toolpaths alone and are only needed to draw previews of the computation.
+ */
+public class ToolpathCache {
+    private static final Logger log = LogManager.getLogger(ToolpathCache.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    public static final int MAX_RESULTS = 16;
+
+    private static final ToolpathCache shared = new ToolpathCache(DEFAULT_MAX_ENTRIES);
+
+    private static class Key {
+        private final double[] geometry;
+        private final List<Object> settings;
+        private final int hashCode;
+
+        private Key(List<Path> paths, List<Object> settings) {
+            this.geometry = toGeometry(paths);
+            this.settings = Collections.unmodifiableList(new ArrayList<>(settings));
+            this.hashCode = 31 * Arrays.hashCode(geometry) + this.settings.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)obj;
+            return hashCode == other.hashCode
+                    && Arrays.equals(geometry, other.geometry)
+                    && settings.equals(other.settings);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private final int maxEntries;
+    private final Map<Key, List<Toolpath>> entries;
+    private final Map<Key, ToolpathResult> results;
+
+    private static <V> Map<Key, V> newLruMap(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public ToolpathCache(int maxEntries) {
+        Preconditions.checkArgument(maxEntries > 0, "maxEntries must be positive");
+        this.maxEntries = maxEntries;
+        this.entries = newLruMap(maxEntries);
+        this.results = newLruMap(Math.min(maxEntries, MAX_RESULTS));
+    }
+
+    /**
+     * Returns the cache shared by toolpath previews and GCode generation.
+     *
+     * @return shared toolpath cache
+     */
+    public static ToolpathCache getShared() {
+        return shared;
+    }
+
+    // flattens the points of every path into one array so the geometry can be compared without keeping the paths
+    private static double[] toGeometry(List<Path> paths) {
+        int length = 1;
+        for (Path path : paths) {
+            length += 2 + 3 * path.getPointCount();
+        }
+
+        double[] geometry = new double[length];
+        int index = 0;
+        geometry[index++] = paths.size();
+        for (Path path : paths) {
+            geometry[index++] = path.isClosed() ? 1 : 0;
+            geometry[index++] = path.getPointCount();
+            for (Point point : path.getPoints()) {
+                geometry[index++] = point.getX();
+                geometry[index++] = point.getY();
+                geometry[index++] = (point.getType() != null) ? point.getType().ordinal() + 1 : 0;
+            }
+        }
+        return geometry;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        results.clear();
+    }
+
+    private synchronized List<Toolpath> lookup(Key key) {
+        return entries.get(key);
+    }
+
+    private synchronized List<Toolpath> store(Key key, List<Toolpath> toolpaths) {
+        List<Toolpath> current = entries.putIfAbsent(key, toolpaths);
+        return (current != null) ? current : toolpaths;
+    }
+
+    private synchronized ToolpathResult lookupResult(Key key) {
+        return results.get(key);
+    }
+
+    private synchronized ToolpathResult storeResult(Key key, ToolpathResult result) {
+        ToolpathResult current = results.putIfAbsent(key, result);
+        if (current != null) {
+            return current;
+        }
+        entries.putIfAbsent(key, List.copyOf(result.getToolpaths()));
+        return result;
+    }
+
+    /**
+     * Returns the cached toolpaths for the given paths and settings, computing and caching them if they are not in
+     * the cache. Toolpaths are computed without holding the cache lock, so the same toolpaths may occasionally be
+     * computed by two threads at once, in which case the first result stored is returned to both.
+     *
+     * @param paths paths the toolpaths are computed from
+     * @param settings recipe settings that affect the computed toolpaths
+     * @param computeToolpaths computes the toolpaths when they are not cached
+     * @return unmodifiable list of toolpaths
+     */
+    public List<Toolpath> get(List<Path> paths, List<Object> settings, Supplier<List<Toolpath>> computeToolpaths) {
+        Key key = new Key(paths, settings);
+        List<Toolpath> toolpaths = lookup(key);
+        if (toolpaths == null) {
+            log.debug("Computing toolpaths for settings:{}", settings);
+            toolpaths = store(key, List.copyOf(computeToolpaths.get()));
+        }
+        return toolpaths;
+    }
+
+    /**
+     * Returns the cached result of the computation for the given paths and settings, computing and caching it if it
+     * is not in the cache. The toolpaths of a computed result are also cached, so they are returned by
+     * {@link #get(List, List, Supplier)} without computing them again.
+     *
+     * @param paths paths the toolpaths are computed from
+     * @param settings recipe settings that affect the computed toolpaths
+     * @param computeResult computes the toolpaths and every stage of the computation when they are not cached
+     * @return computed toolpaths and the results of each stage of the computation
+     */
+    public ToolpathResult getResult(List<Path> paths, List<Object> settings, Supplier<ToolpathResult> computeResult) {
+        Key key = new Key(paths, settings);
+        ToolpathResult result = lookupResult(key);
+        if (result == null) {
+            log.debug("Computing toolpath result for settings:{}", settings);
+            result = storeResult(key, computeResult.get());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator.toolpath;
+
+import com.gcodebuilder.geometry.ArcSegment;
+import com.gcodebuilder.geometry.LineSegment;
+import com.gcodebuilder.geometry.Math2D;
+import com.gcodebuilder.geometry.PathSegment;
+import com.gcodebuilder.model.GCodeBuilder;
+import com.google.common.base.Preconditions;
+import javafx.geometry.Point2D;
+import lombok.Getter;
+
+/**
+ * Replaces runs of short connected line segments with fewer lines and arcs before they are written to a
+ * {@link GCodeBuilder}. Every point of the original segments stays within the chord tolerance of the moves that
+ * replace them. Segments are fitted in a single pass as they are added, keeping at most {@link #MAX_RUN_POINTS}
+ * points in memory, so the compressor can sit between any toolpath and a streaming builder.
+ * <p>
+ * Arc segments and segments that don't continue the current run are written unchanged. Call {@link #flush()} before
+ * writing any other move to the builder.
+ */
+public class ToolpathCompressor {
+    // fitting is quadratic in the run length, so long runs are split
+    private static final int MAX_RUN_POINTS = 256;
+
+    // three points always lie on a circle, so arcs must replace at least this many segments
+    private static final int MIN_ARC_SEGMENTS = 3;
+
+    private final GCodeBuilder builder;
+    private final int feedRate;
+    private final double tolerance;
+
+    // points of the current run of line segments
+    private final double[] xs = new double[MAX_RUN_POINTS];
+    private final double[] ys = new double[MAX_RUN_POINTS];
+    private int runSize = 0;
+
+    // longest prefix of the current run that fits a line or arc, which ends at point fitEnd
+    private int fitEnd = 0;
+    private boolean fitArc;
+    private double fitCenterX;
+    private double fitCenterY;
+    private boolean fitClockwise;
+
+    // center of the last circle found by fitsArc
+    private double centerX;
+    private double centerY;
+    private boolean clockwise;
+
+    /**
+     * Number of segments added to the compressor.
+     */
+    @Getter
+    private int inputMoveCount = 0;
+
+    /**
+     * Number of moves written to the builder.
+     */
+    @Getter
+    private int outputMoveCount = 0;
+
+    /**
+     * Creates a compressor that writes cutting moves to builder.
+     *
+     * @param builder builder to write moves to
+     * @param feedRate feed rate of every move
+     * @param tolerance maximum distance between the original segments and the moves that replace them, or zero to
+     *                  write every segment unchanged
+     */
+    public ToolpathCompressor(GCodeBuilder builder, int feedRate, double tolerance) {
+        Preconditions.checkArgument(tolerance >= 0, "tolerance must not be negative");
+        this.builder = Preconditions.checkNotNull(builder);
+        this.feedRate = feedRate;
+        this.tolerance = tolerance;
+    }
+
+    public void add(PathSegment segment) {
+        ++inputMoveCount;
+        if (tolerance <= 0 || !(segment instanceof LineSegment)) {
+            flush();
+            write(segment);
+            return;
+        }
+
+        Point2D from = segment.getFrom();
+        if (runSize == 0 || !Math2D.samePoints(from, new Point2D(xs[runSize - 1], ys[runSize - 1]))) {
+            flush();
+            xs[0] = from.getX();
+            ys[0] = from.getY();
+            runSize = 1;
+            fitEnd = 0;
+        }
+        addPoint(segment.getTo().getX(), segment.getTo().getY());
+    }
+
+    /**
+     * Writes the moves for all segments added so far.
+     */
+    public void flush() {
+        if (runSize > 1) {
+            writeFit();
+            // only whole runs are flushed, so the fit always covers the last point
+            if (fitEnd < runSize - 1) {
+                restartRun();
+                flush();
+            }
+        }
+        runSize = 0;
+        fitEnd = 0;
+    }
+
+    private void addPoint(double x, double y) {
+        if (runSize == MAX_RUN_POINTS) {
+            writeFit();
+            restartRun();
+            if (runSize == MAX_RUN_POINTS) {
+                // unreachable since a fit always covers at least one segment
+                throw new IllegalStateException("run did not shrink");
+            }
+        }
+
+        xs[runSize] = x;
+        ys[runSize] = y;
+        ++runSize;
+
+        int end = runSize - 1;
+        if (fitsLine(end)) {
+            fitEnd = end;
+            fitArc = false;
+        } else if (end >= MIN_ARC_SEGMENTS && fitsArc(end)) {
+            fitEnd = end;
+            fitArc = true;
+            fitCenterX = centerX;
+            fitCenterY = centerY;
+            fitClockwise = clockwise;
+        } else if (end >= MIN_ARC_SEGMENTS) {
+            // neither fits, so write the fitted prefix and fit the rest again
+            writeFit();
+            restartRun();
+        }
+    }
+
+    // starts a new run at the end of the fitted prefix and adds the points after it again
+    private void restartRun() {
+        int start = fitEnd;
+        int count = runSize - start;
+        double[] restX = new double[count];
+        double[] restY = new double[count];
+        System.arraycopy(xs, start, restX, 0, count);
+        System.arraycopy(ys, start, restY, 0, count);
+
+        xs[0] = restX[0];
+        ys[0] = restY[0];
+        runSize = 1;
+        fitEnd = 0;
+        for (int i = 1; i < count; ++i) {
+            addPoint(restX[i], restY[i]);
+        }
+    }
+
+    private void writeFit() {
+        if (fitEnd == 0) {
+            // first segment of a run always fits a line
+            fitEnd = 1;
+            fitArc = false;
+        }
+        Point2D from = new Point2D(xs[0], ys[0]);
+        Point2D to = new Point2D(xs[fitEnd], ys[fitEnd]);
+        if (fitArc) {
+            write(ArcSegment.of(from, new Point2D(fitCenterX, fitCenterY), to, fitClockwise));
+        } else {
+            write(LineSegment.of(from, to));
+        }
+    }
+
+    private void write(PathSegment segment) {
+        Toolpath.generateGCode(builder, segment, feedRate);
+        ++outputMoveCount;
+    }
+
+    // checks that points 0..end lie within tolerance of the chord between them, in order
+    private boolean fitsLine(int end) {
+        double dx = xs[end] - xs[0];
+        double dy = ys[end] - ys[0];
+        double length = Math.hypot(dx, dy);
+        if (length <= tolerance) {
+            return end == 1;
+        }
+        double ux = dx / length;
+        double uy = dy / length;
+        double prevAlong = 0;
+        for (int i = 1; i < end; ++i) {
+            double px = xs[i] - xs[0];
+            double py = ys[i] - ys[0];
+            double across = Math.abs(px * uy - py * ux);
+            double along = px * ux + py * uy;
+            if (across > tolerance || along < prevAlong - tolerance || along > length + tolerance) {
+                return false;
+            }
+            prevAlong = Math.max(prevAlong, along);
+        }
+        return true;
+    }
+
+    // checks that segments 0..end lie within tolerance of the circle through the first, middle and last points and
+    // turn around it in one direction by less than a full turn
+    private boolean fitsArc(int end) {
+        int mid = end / 2;
+        double ax = xs[0];
+        double ay = ys[0];
+        double bx = xs[mid] - ax;
+        double by = ys[mid] - ay;
+        double cx = xs[end] - ax;
+        double cy = ys[end] - ay;
+        double d = 2 * Math2D.det(bx, by, cx, cy);
+        if (Math.abs(d) < Math2D.MIN_DISTANCE_DIFF * Math2D.MIN_DISTANCE_DIFF) {
+            return false;
+        }
+        double b2 = bx * bx + by * by;
+        double c2 = cx * cx + cy * cy;
+        double ox = (cy * b2 - by * c2) / d;
+        double oy = (bx * c2 - cx * b2) / d;
+        double radius = Math.hypot(ox, oy);
+        centerX = ax + ox;
+        centerY = ay + oy;
+        clockwise = d < 0;
+
+        double sweep = 0;
+        for (int i = 1; i <= end; ++i) {
+            double r0x = xs[i - 1] - centerX;
+            double r0y = ys[i - 1] - centerY;
+            double r1x = xs[i] - centerX;
+            double r1y = ys[i] - centerY;
+            if (Math.abs(Math.hypot(r1x, r1y) - radius) > tolerance) {
+                return false;
+            }
+
+            // the arc between two points bulges away from the segment joining them
+            double halfChord = Math.hypot(r1x - r0x, r1y - r0y) / 2;
+            if (halfChord > radius || radius - Math.sqrt(radius * radius - halfChord * halfChord) > tolerance) {
+                return false;
+            }
+
+            double step = Math.atan2(Math2D.det(r0x, r0y, r1x, r1y), r0x * r1x + r0y * r1y);
+            if ((clockwise && step > 0) || (!clockwise && step < 0)) {
+                return false;
+            }
+            sweep += Math.abs(step);
+        }
+        return sweep < 2 * Math.PI - Math2D.MIN_ANGLE_DIFF;
+    }
+}
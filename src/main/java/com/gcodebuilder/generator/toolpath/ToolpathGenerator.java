@@ -18,10 +18,13 @@ package com.gcodebuilder.generator.toolpath;
 
 import com.gcodebuilder.generator.GCodeDisplayMode;
 import com.gcodebuilder.geometry.ArcSegment;
+import com.gcodebuilder.geometry.KdTree;
 import com.gcodebuilder.geometry.Math2D;
 import com.gcodebuilder.geometry.Path;
 import com.gcodebuilder.geometry.LineSegment;
 import com.gcodebuilder.geometry.PathSegment;
+import com.gcodebuilder.geometry.PreparedPath;
+import com.gcodebuilder.geometry.SpatialGrid;
 import com.gcodebuilder.geometry.UnitVector;
 import com.gcodebuilder.model.Direction;
 import com.gcodebuilder.model.Side;
@@ -32,6 +35,7 @@ import javafx.scene.paint.Paint;
 import javafx.scene.shape.ArcType;
 import javafx.scene.text.TextAlignment;
 import javafx.scene.transform.Affine;
+import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.logging.log4j.LogManager;
@@ -40,9 +44,14 @@ import org.apache.logging.log4j.Logger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -67,6 +76,21 @@ public class ToolpathGenerator {
     @Getter @Setter
     private double stepOver = 0.4;
 
+    /**
+     * Pool used to compute the segments of each pocket layer in parallel, or null to compute them on the calling
+     * thread. The computed toolpaths do not depend on how the work is scheduled.
+     */
+    @Getter @Setter
+    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+
+    /**
+     * When true, each pocket layer is only intersected with the layer enclosing it instead of with every earlier
+     * layer. This is much faster for pockets with many layers and gives the same toolpaths unless layers that are
+     * not adjacent overlap.
+     */
+    @Getter @Setter
+    private boolean intersectPreviousLayerOnly = false;
+
     private static final double MIN_POINT_DISTANCE = 0.0001;
 
     private List<Path> paths = new ArrayList<>();
@@ -169,36 +193,121 @@ public class ToolpathGenerator {
                 .findFirst().isPresent();
     }
 
-    private void intersectToolpathSegments(Toolpath.Segment current, List<Toolpath.Segment> others) {
+    @Data
+    private static class Intersection {
+        private final Toolpath.Segment other;
+        private final Point2D point;
+        private final boolean currentFromSideValid;
+        private final boolean otherFromSideValid;
+    }
+
+    /**
+     * Finds the points where current crosses each of the other segments without splitting any segments, so it can
+     * safely run on several segments at once.
+     *
+     * @param current segment to intersect with others
+     * @param others segments to intersect with current
+     * @return intersections in the same order as others
+     */
+    private static List<Intersection> findIntersections(Toolpath.Segment current, List<Toolpath.Segment> others) {
+        List<Intersection> intersections = new ArrayList<>();
         for (Toolpath.Segment other : others) {
             List<PathSegment.IntersectionPoint> intersectionPoints = current.intersect(other);
             for (PathSegment.IntersectionPoint intersection : intersectionPoints) {
                 if (intersection.isOnSegments()) {
                     Point2D intersectionPoint = intersection.getPoint();
                     if (!isConnectionPoint(current, other, intersectionPoint)) {
-                        Toolpath.Connection connection = new Toolpath.Connection(intersectionPoint);
-
-                        boolean currentFromSideValid = isFromSideValid(other, intersectionPoint, current);
-                        current.split(intersectionPoint, currentFromSideValid, !currentFromSideValid, connection);
-
-                        boolean otherFromSideValid = isFromSideValid(current, intersectionPoint, other);
-                        other.split(intersectionPoint, otherFromSideValid, !otherFromSideValid, connection);
+                        intersections.add(new Intersection(other, intersectionPoint,
+                                isFromSideValid(other, intersectionPoint, current),
+                                isFromSideValid(current, intersectionPoint, other)));
                     }
                 }
             }
         }
+        return intersections;
+    }
+
+    private static void splitAtIntersections(Toolpath.Segment current, List<Intersection> intersections) {
+        for (Intersection intersection : intersections) {
+            Point2D intersectionPoint = intersection.getPoint();
+            Toolpath.Connection connection = new Toolpath.Connection(intersectionPoint);
+
+            boolean currentFromSideValid = intersection.isCurrentFromSideValid();
+            current.split(intersectionPoint, currentFromSideValid, !currentFromSideValid, connection);
+
+            boolean otherFromSideValid = intersection.isOtherFromSideValid();
+            intersection.getOther().split(intersectionPoint, otherFromSideValid, !otherFromSideValid, connection);
+        }
+    }
+
+    private static double computeIndexCellSize(List<Toolpath.Segment> segments) {
+        if (segments.isEmpty()) {
+            return MIN_POINT_DISTANCE;
+        }
+        double totalExtent = 0;
+        for (Toolpath.Segment segment : segments) {
+            PathSegment pathSegment = segment.getSegment();
+            totalExtent += Math.max(pathSegment.getMaxX() - pathSegment.getMinX(),
+                    pathSegment.getMaxY() - pathSegment.getMinY());
+        }
+        double cellSize = totalExtent / segments.size();
+        return (cellSize > MIN_POINT_DISTANCE) ? cellSize : MIN_POINT_DISTANCE;
+    }
+
+    private static SpatialGrid<Toolpath.Segment> createSegmentIndex(double cellSize) {
+        // pad bounding boxes so intersections found within tolerance at the edges are never missed
+        return new SpatialGrid<>(cellSize, Math2D.MIN_DISTANCE_DIFF);
+    }
+
+    private static void indexSegment(SpatialGrid<Toolpath.Segment> index, Toolpath.Segment segment) {
+        PathSegment pathSegment = segment.getSegment();
+        index.insert(segment, pathSegment.getMinX(), pathSegment.getMinY(),
+                pathSegment.getMaxX(), pathSegment.getMaxY());
+    }
+
+    private static List<Toolpath.Segment> findOverlappingSegments(SpatialGrid<Toolpath.Segment> index,
+                                                                  Toolpath.Segment segment) {
+        PathSegment pathSegment = segment.getSegment();
+        return index.query(pathSegment.getMinX(), pathSegment.getMinY(),
+                pathSegment.getMaxX(), pathSegment.getMaxY());
     }
 
     private void intersectAllToolpathSegments(List<Toolpath.Segment> allSegments) {
-        for (int i = 0; i < allSegments.size(); ++i) {
-            intersectToolpathSegments(allSegments.get(i), allSegments.subList(i + 1, allSegments.size()));
+        ToolpathStageEvent event = ToolpathStageEvent.begin("intersect", ToolpathStageEvent.NO_LAYER,
+                allSegments.size());
+        long intersectionTests = 0;
+        long splitPoints = 0;
+
+        // segments are removed from the index as they are visited, so each query only returns later segments
+        // with overlapping bounding boxes, in the same order as the list
+        SpatialGrid<Toolpath.Segment> index = createSegmentIndex(computeIndexCellSize(allSegments));
+        allSegments.forEach(segment -> indexSegment(index, segment));
+        for (Toolpath.Segment current : allSegments) {
+            index.remove(current);
+            List<Toolpath.Segment> others = findOverlappingSegments(index, current);
+            List<Intersection> intersections = findIntersections(current, others);
+            splitAtIntersections(current, intersections);
+            intersectionTests += others.size();
+            splitPoints += 2 * intersections.size();
+        }
+
+        if (event != null) {
+            event.intersectionTests = intersectionTests;
+            event.splitPoints = splitPoints;
+            event.end(allSegments.size(), 0);
         }
     }
 
     private static List<Toolpath.Segment> getAllValidSegments(List<Toolpath.Segment> segments) {
-        return segments.stream()
+        ToolpathStageEvent event = ToolpathStageEvent.begin("validSegments", ToolpathStageEvent.NO_LAYER,
+                segments.size());
+        List<Toolpath.Segment> validSegments = segments.stream()
                 .flatMap(segment -> segment.getValidSegments().stream())
                 .collect(Collectors.toList());
+        if (event != null) {
+            event.end(validSegments.size(), 0);
+        }
+        return validSegments;
     }
 
     public static boolean isSamePoint(Point2D p1, Point2D p2) {
@@ -228,65 +337,46 @@ public class ToolpathGenerator {
         return isConnected(last, first);
     }
 
+    /**
+     * Trims a chain of segments to the longest closed loop that starts as early as possible in the chain.
+     *
+     * @param toolpath chain of segments, which is trimmed in place
+     * @return true if a closed loop was found
+     */
     private static boolean closeToolpath(List<Toolpath.Segment> toolpath) {
+        if (isToolpathClosed(toolpath)) {
+            return true;
+        }
+        SegmentEndpointIndex index = new SegmentEndpointIndex(toolpath, MIN_POINT_DISTANCE);
         for (int firstIndex = 0; firstIndex < toolpath.size(); ++firstIndex) {
-            for (int lastIndex = toolpath.size() - 1; lastIndex >= firstIndex; --lastIndex) {
-                if (isConnected(toolpath.get(lastIndex), toolpath.get(firstIndex))) {
-                    if (lastIndex < toolpath.size() - 1) {
-                        toolpath.subList(lastIndex + 1, toolpath.size()).clear();
-                    }
-                    if (firstIndex > 0) {
-                        toolpath.subList(0, firstIndex).clear();
-                    }
-                    return true;
+            int lastIndex = index.findLastEndingAt(toolpath.get(firstIndex).getFromConnection());
+            if (lastIndex >= firstIndex) {
+                if (lastIndex < toolpath.size() - 1) {
+                    toolpath.subList(lastIndex + 1, toolpath.size()).clear();
+                }
+                if (firstIndex > 0) {
+                    toolpath.subList(0, firstIndex).clear();
                 }
+                return true;
             }
         }
         return false;
     }
 
-    private static List<Toolpath> partitionToolpaths(List<Toolpath.Segment> validSegments) {
+    private static List<Toolpath> partitionToolpaths(List<Toolpath.Segment> validSegments, int layer) {
+        ToolpathStageEvent event = ToolpathStageEvent.begin("partition", layer, validSegments.size());
+        int toolpathSegments = 0;
         List<Toolpath> result = new ArrayList<>();
         List<Toolpath.Segment> currentToolpath = new ArrayList<>();
-        LinkedList<Toolpath.Segment> remainingSegments = new LinkedList<>(validSegments);
+        SegmentEndpointIndex remainingSegments = new SegmentEndpointIndex(validSegments, MIN_POINT_DISTANCE);
         Toolpath.Segment current = remainingSegments.pollFirst();
         while (current != null) {
             currentToolpath.add(current);
 
-            Toolpath.Segment next = null;
-
-            ListIterator<Toolpath.Segment> segmentIterator = remainingSegments.listIterator();
-            while (segmentIterator.hasNext()) {
-                Toolpath.Segment other = segmentIterator.next();
-                if (current.getToConnection().equals(other.getFromConnection())) {
-                    next = other;
-                    segmentIterator.remove();
-                    break;
-                }
-                if (current.getToConnection().equals(other.getToConnection())) {
-                    next = other.flip();
-                    segmentIterator.remove();
-                    break;
-                }
-            }
-
+            // prefer a segment sharing the same connection, then fall back to one with a nearby connection point
+            Toolpath.Segment next = remainingSegments.pollConnected(current.getToConnection());
             if (next == null) {
-                segmentIterator = remainingSegments.listIterator();
-                while (segmentIterator.hasNext()) {
-                    Toolpath.Segment other = segmentIterator.next();
-                    if (isSamePoint(current.getToConnection().getConnectionPoint(),
-                            other.getFromConnection().getConnectionPoint())) {
-                        next = other;
-                        segmentIterator.remove();
-                        break;
-                    }
-                    if (isSamePoint(current.getToConnection().getConnectionPoint(),
-                            other.getToConnection().getConnectionPoint())) {
-                        next = other.flip();
-                        segmentIterator.remove();
-                        break;
-                    }
-                }
+                next = remainingSegments.pollNear(current.getToConnection());
             }
 
             if (next != null) {
@@ -296,20 +386,50 @@ public class ToolpathGenerator {
                 // next not found; finish current toolpath
                 if (closeToolpath(currentToolpath)) {
                     result.add(new Toolpath(currentToolpath));
+                    toolpathSegments += currentToolpath.size();
                 }
                 currentToolpath = new ArrayList<>();
                 current = remainingSegments.pollFirst();
             }
         }
+        if (event != null) {
+            event.end(toolpathSegments, result.size());
+        }
         return result;
     }
 
-    private boolean isInsideSegment(List<PathSegment> path, Toolpath.Segment segment) {
-        return PathSegment.isPointInsidePath(path, segment.getFrom()) && PathSegment.isPointInsidePath(path, segment.getTo());
-    }
+    private static final byte INSIDE = 1;
+    private static final byte OUTSIDE = 2;
 
-    private boolean isOutsideSegment(List<PathSegment> path, Toolpath.Segment segment) {
-        return !PathSegment.isPointInsidePath(path, segment.getFrom()) && !PathSegment.isPointInsidePath(path, segment.getTo());
+    // tests each end point once, where testing for inside and outside segments separately would test them twice
+    private static byte classifySegment(PreparedPath path, Toolpath.Segment segment) {
+        boolean fromInside = path.isPointInside(segment.getFrom());
+        if (fromInside != path.isPointInside(segment.getTo())) {
+            return 0;
+        }
+        return fromInside ? INSIDE : OUTSIDE;
+    }
+
+    private ToolpathResult.InsideOutside classifySegments(PreparedPath path, List<Toolpath.Segment> validSegments,
+                                                          int layer) {
+        ToolpathStageEvent event = ToolpathStageEvent.begin("classify", layer, validSegments.size());
+        List<Byte> classes = runInPool(() -> layerStream(validSegments)
+                .map(segment -> classifySegment(path, segment))
+                .collect(Collectors.toList()));
+        List<Toolpath.Segment> insideSegments = new ArrayList<>();
+        List<Toolpath.Segment> outsideSegments = new ArrayList<>();
+        for (int i = 0; i < validSegments.size(); ++i) {
+            byte segmentClass = classes.get(i);
+            if (segmentClass == INSIDE) {
+                insideSegments.add(validSegments.get(i));
+            } else if (segmentClass == OUTSIDE) {
+                outsideSegments.add(validSegments.get(i));
+            }
+        }
+        if (event != null) {
+            event.end(insideSegments.size() + outsideSegments.size(), 0);
+        }
+        return new ToolpathResult.InsideOutside(path, validSegments, insideSegments, outsideSegments);
     }
 
     private List<List<Toolpath.Segment>> computeConnectedToolpathSides(List<PathSegment> connectedEdges) {
@@ -332,79 +452,59 @@ public class ToolpathGenerator {
         return connectedToolpathSides;
     }
 
-    public List<Toolpath> computeProfileToolpaths(Side side, Direction direction, GraphicsContext ctx,
-                                                  GCodeDisplayMode displayMode) {
+    /**
+     * Computes toolpaths that cut along one side of every closed path.
+     *
+     * @param side side of the paths to cut
+     * @param direction direction to cut each toolpath in
+     * @return computed toolpaths and the results of each stage of the computation
+     */
+    public ToolpathResult computeProfileResult(Side side, Direction direction) {
+        ToolpathResult result = new ToolpathResult();
+        ToolpathStageEvent offsetEvent = ToolpathStageEvent.begin("offset", ToolpathStageEvent.NO_LAYER, 0);
         List<PathSegment> connectedEdges = new ArrayList<>();
         List<List<Toolpath.Segment>> connectedToolpathSides = computeConnectedToolpathSides(connectedEdges);
 
-        if (ctx != null && displayMode == GCodeDisplayMode.CONNECTED_SEGMENTS) {
-            ctx.setStroke(SEGMENT_PAINT);
-            for (List<Toolpath.Segment> toolpathSide : connectedToolpathSides) {
-                toolpathSide.forEach(segment -> drawToolpathSegment(ctx, segment));
-            }
+        List<Toolpath.Segment> allSegments = new ArrayList<>();
+        connectedToolpathSides.forEach(allSegments::addAll);
+        result.connectedSegments = allSegments;
+        if (offsetEvent != null) {
+            offsetEvent.inputSegments = connectedEdges.size();
+            offsetEvent.end(allSegments.size(), 0);
+        }
+        if (allSegments.isEmpty()) {
+            result.toolpaths = Collections.emptyList();
+            return result;
         }
 
-        if (!connectedToolpathSides.isEmpty()) {
-            List<Toolpath.Segment> allSegments = new ArrayList<>();
-            connectedToolpathSides.forEach(allSegments::addAll);
-            intersectAllToolpathSegments(allSegments);
-
-            if (ctx != null && displayMode == GCodeDisplayMode.SPLIT_POINTS) {
-                allSegments.forEach(segment -> drawSplitPoints(ctx, segment));
-            }
-
-            List<Toolpath.Segment> allValidSegments = getAllValidSegments(allSegments);
-
-            if (ctx != null && displayMode == GCodeDisplayMode.VALID_SEGMENTS) {
-                allValidSegments.forEach(segment -> drawValidSegment(ctx, segment));
-            }
-
-            List<Toolpath.Segment> insideSegments = allValidSegments.stream()
-                    .filter(segment -> isInsideSegment(connectedEdges, segment))
-                    .collect(Collectors.toList());
-            List<Toolpath.Segment> outsideSegments = allValidSegments.stream()
-                    .filter(segment -> isOutsideSegment(connectedEdges, segment))
-                    .collect(Collectors.toList());
-
-            if (ctx != null && displayMode == GCodeDisplayMode.INSIDE_OUTSIDE) {
-                drawInsideOutsideSegments(ctx, connectedEdges, allValidSegments, insideSegments, outsideSegments);
-            }
-
-            List<Toolpath.Segment> sideSegments;
-            switch (side) {
-                case INSIDE:
-                    sideSegments = insideSegments;
-                    break;
-                case OUTSIDE:
-                    sideSegments = outsideSegments;
-                    break;
-                default:
-                    sideSegments = Collections.emptyList();
-                    break;
-            }
-
-            List<Toolpath> partitionedToolpaths = partitionToolpaths(sideSegments);
-
-            if (ctx != null && displayMode == GCodeDisplayMode.TOOLPATHS) {
-                drawToolpaths(ctx, partitionedToolpaths);
-            }
-
-            List<Toolpath> orientedToolpaths = partitionedToolpaths.stream()
-                .map(toolpath -> toolpath.orient(direction))
-                .collect(Collectors.toList());
-
-            if (ctx != null && displayMode != null && displayMode.compareTo(GCodeDisplayMode.ORIENTED_TOOLPATHS) >= 0) {
-                drawToolpaths(ctx, orientedToolpaths);
-            }
-
-            return orientedToolpaths;
+        intersectAllToolpathSegments(allSegments);
+        List<Toolpath.Segment> allValidSegments = getAllValidSegments(allSegments);
+        result.insideOutside = classifySegments(new PreparedPath(connectedEdges), allValidSegments,
+                ToolpathStageEvent.NO_LAYER);
+
+        List<Toolpath.Segment> sideSegments;
+        switch (side) {
+            case INSIDE:
+                sideSegments = result.insideOutside.getInsideSegments();
+                break;
+            case OUTSIDE:
+                sideSegments = result.insideOutside.getOutsideSegments();
+                break;
+            default:
+                sideSegments = Collections.emptyList();
+                break;
         }
 
-        return Collections.emptyList();
+        result.partitionedToolpaths = partitionToolpaths(sideSegments, ToolpathStageEvent.NO_LAYER);
+        result.orientedToolpaths = result.partitionedToolpaths.stream()
+            .map(toolpath -> toolpath.orient(direction))
+            .collect(Collectors.toList());
+        result.toolpaths = result.orientedToolpaths;
+        return result;
     }
 
     public List<Toolpath> computeProfileToolpaths(Side side, Direction direction) {
-        return computeProfileToolpaths(side, direction, null, null);
+        return computeProfileResult(side, direction).getToolpaths();
     }
 
     private static List<PathSegment> computeEnclosingPath(Toolpath enclosingToolpath) {
@@ -424,65 +524,111 @@ public class ToolpathGenerator {
         return connectToolpathSegments(pocketSegments);
     }
 
-    private List<Toolpath> computePockets(List<Toolpath> insideToolpaths, GraphicsContext ctx, GCodeDisplayMode displayMode) {
+    private <T> Stream<T> layerStream(List<T> items) {
+        return (forkJoinPool != null) ? items.parallelStream() : items.stream();
+    }
+
+    private <T> T runInPool(Supplier<T> task) {
+        // parallel streams started by a task in a fork-join pool run in that pool
+        return (forkJoinPool != null) ? forkJoinPool.submit(task::get).join() : task.get();
+    }
+
+    private List<Toolpath> computePockets(List<Toolpath> insideToolpaths, ToolpathResult result) {
 
         List<Toolpath.Segment> allSegments = new ArrayList<>();
         insideToolpaths.forEach(toolpath -> allSegments.addAll(toolpath.getSegments()));
 
+        double cellSize = computeIndexCellSize(allSegments);
+        SpatialGrid<Toolpath.Segment> prevSegmentsIndex = createSegmentIndex(cellSize);
+        allSegments.forEach(segment -> indexSegment(prevSegmentsIndex, segment));
+
         List<Toolpath> pocketToolpaths = new ArrayList<>(insideToolpaths);
         List<Toolpath> enclosingLayer = insideToolpaths;
+        result.pocketConnectedSegments = new ArrayList<>();
+        result.pocketSplitSegments = allSegments;
+        result.pocketLayers = new ArrayList<>();
 
         while (!enclosingLayer.isEmpty()) {
-            List<PathSegment> connectedPath = new ArrayList<>();
-            List<Toolpath.Segment> layerSegments = new ArrayList<>();
-            List<List<Toolpath.Segment>> connectedLayerSegments = new ArrayList<>();
-
-            for (Toolpath toolpath : enclosingLayer) {
-                List<PathSegment> enclosingPath = computeEnclosingPath(toolpath);
-                connectedPath.addAll(enclosingPath);
-
-                List<Toolpath.Segment> pocketSegments = computePocketSegments(toolpath);
+            // pockets can take a long time to compute, so stop early if a background generation task was cancelled
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("pocket computation interrupted");
+            }
 
-                if (ctx != null && displayMode == GCodeDisplayMode.POCKET_CONNECTED_SEGMENTS) {
-                    ctx.setStroke(SEGMENT_PAINT);
-                    pocketSegments.forEach(segment -> drawToolpathSegment(ctx, segment));
-                }
+            List<Toolpath> currentLayer = enclosingLayer;
+            int layerIndex = result.pocketLayers.size();
 
-                layerSegments.addAll(pocketSegments);
-                connectedLayerSegments.add(pocketSegments);
+            List<PathSegment> connectedPath = new ArrayList<>();
+            currentLayer.forEach(toolpath -> connectedPath.addAll(computeEnclosingPath(toolpath)));
+            PreparedPath preparedPath = new PreparedPath(connectedPath);
+
+            ToolpathStageEvent offsetEvent = ToolpathStageEvent.begin("pocketOffset", layerIndex,
+                    connectedPath.size());
+            List<Toolpath.Segment> layerSegments = runInPool(() -> layerStream(currentLayer)
+                    .flatMap(toolpath -> computePocketSegments(toolpath).stream())
+                    .collect(Collectors.toList()));
+            result.pocketConnectedSegments.addAll(layerSegments);
+            if (offsetEvent != null) {
+                offsetEvent.end(layerSegments.size(), 0);
             }
 
-            int pocketStartIndex = allSegments.size();
-            allSegments.addAll(layerSegments);
-            for (int i = pocketStartIndex; i < allSegments.size(); ++i) {
-                intersectToolpathSegments(allSegments.get(i), allSegments.subList(0, pocketStartIndex));
-                intersectToolpathSegments(allSegments.get(i), allSegments.subList(i + 1, allSegments.size()));
+            // intersect each layer segment with previous segments, then with later segments in the same layer;
+            // intersections are found in parallel, but segments are split in list order so the result is the same
+            // as splitting each pair in turn
+            ToolpathStageEvent intersectEvent = ToolpathStageEvent.begin("pocketIntersect", layerIndex,
+                    layerSegments.size());
+            LongAdder intersectionTests = (intersectEvent != null) ? new LongAdder() : null;
+            SpatialGrid<Toolpath.Segment> layerSegmentIndex = createSegmentIndex(cellSize);
+            layerSegments.forEach(segment -> indexSegment(layerSegmentIndex, segment));
+            Map<Toolpath.Segment, Integer> layerPositions = new IdentityHashMap<>();
+            for (int i = 0; i < layerSegments.size(); ++i) {
+                layerPositions.put(layerSegments.get(i), i);
             }
-
-            if (ctx != null && displayMode == GCodeDisplayMode.POCKET_SPLIT_POINTS) {
-                allSegments.forEach(segment -> drawSplitPoints(ctx, segment));
+            List<List<Intersection>> layerIntersections = runInPool(() -> layerStream(layerSegments)
+                    .map(current -> {
+                        int position = layerPositions.get(current);
+                        List<Toolpath.Segment> laterSegments = findOverlappingSegments(layerSegmentIndex, current)
+                                .stream()
+                                .filter(other -> layerPositions.get(other) > position)
+                                .collect(Collectors.toList());
+                        List<Toolpath.Segment> prevSegments = findOverlappingSegments(prevSegmentsIndex, current);
+                        List<Intersection> intersections = new ArrayList<>(findIntersections(current, prevSegments));
+                        intersections.addAll(findIntersections(current, laterSegments));
+                        if (intersectionTests != null) {
+                            intersectionTests.add(prevSegments.size() + laterSegments.size());
+                        }
+                        return intersections;
+                    })
+                    .collect(Collectors.toList()));
+            long splitPoints = 0;
+            for (int i = 0; i < layerSegments.size(); ++i) {
+                splitAtIntersections(layerSegments.get(i), layerIntersections.get(i));
+                splitPoints += 2 * layerIntersections.get(i).size();
             }
-
-            List<Toolpath.Segment> validPocketSegments = getAllValidSegments(layerSegments);
-
-            if (ctx != null && displayMode == GCodeDisplayMode.POCKET_VALID_SEGMENTS) {
-                ctx.setStroke(VALID_PAINT);
-                validPocketSegments.forEach(segment -> drawToolpathSegment(ctx, segment));
+            if (intersectEvent != null) {
+                intersectEvent.intersectionTests = intersectionTests.sum();
+                intersectEvent.splitPoints = splitPoints;
+                intersectEvent.end(layerSegments.size(), 0);
             }
 
-            List<Toolpath.Segment> insidePocketSegments = validPocketSegments.stream()
-                    .filter(segment -> isInsideSegment(connectedPath, segment))
-                    .collect(Collectors.toList());
-
-            if (ctx != null && displayMode == GCodeDisplayMode.POCKET_INSIDE_OUTSIDE) {
-                List<Toolpath.Segment> outsidePocketSegments = validPocketSegments.stream()
-                        .filter(segment -> isOutsideSegment(connectedPath, segment))
-                        .collect(Collectors.toList());
-                drawInsideOutsideSegments(ctx, connectedPath, validPocketSegments, insidePocketSegments,
-                        outsidePocketSegments);
+            allSegments.addAll(layerSegments);
+            if (intersectPreviousLayerOnly) {
+                prevSegmentsIndex.clear();
             }
+            layerSegments.forEach(segment -> indexSegment(prevSegmentsIndex, segment));
+
+            ToolpathStageEvent validEvent = ToolpathStageEvent.begin("pocketValidSegments", layerIndex,
+                    layerSegments.size());
+            List<Toolpath.Segment> validPocketSegments = runInPool(() -> layerStream(layerSegments)
+                    .flatMap(segment -> segment.getValidSegments().stream())
+                    .collect(Collectors.toList()));
+            if (validEvent != null) {
+                validEvent.end(validPocketSegments.size(), 0);
+            }
+
+            ToolpathResult.InsideOutside layer = classifySegments(preparedPath, validPocketSegments, layerIndex);
+            result.pocketLayers.add(layer);
 
-            List<Toolpath> partitionedPocketToolpaths = partitionToolpaths(insidePocketSegments);
+            List<Toolpath> partitionedPocketToolpaths = partitionToolpaths(layer.getInsideSegments(), layerIndex);
 
             pocketToolpaths.addAll(partitionedPocketToolpaths);
             enclosingLayer = partitionedPocketToolpaths;
@@ -491,106 +637,114 @@ public class ToolpathGenerator {
         return pocketToolpaths;
     }
 
+    private static boolean isValidPocketConnection(SpatialGrid<Toolpath.Segment> pocketSegmentIndex,
+                                                   Point2D fromPoint, Point2D toPoint) {
+        LineSegment connection = LineSegment.of(fromPoint, toPoint);
+        for (Toolpath.Segment pocketSegment : pocketSegmentIndex.query(connection.getMinX(), connection.getMinY(),
+                connection.getMaxX(), connection.getMaxY())) {
+            for (PathSegment.IntersectionPoint intersection : pocketSegment.getSegment().intersect(connection)) {
+                Point2D point = intersection.getPoint();
+                if (intersection.isOnSegments() && !(isSamePoint(point, fromPoint) || isSamePoint(point, toPoint))) {
+                    log.debug("Potential connection: {} intersects other paths at: {}", connection, point);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Toolpath pollFirstRemaining(Iterator<Toolpath> pocketOrder, KdTree<Toolpath> remainingPockets) {
+        while (pocketOrder.hasNext()) {
+            Toolpath pocket = pocketOrder.next();
+            if (remainingPockets.remove(pocket)) {
+                return pocket;
+            }
+        }
+        return null;
+    }
+
     private List<Toolpath> connectPockets(List<Toolpath> pocketToolpaths) {
+        ToolpathStageEvent event = ToolpathStageEvent.begin("connectPockets", ToolpathStageEvent.NO_LAYER, 0);
+        int connectionTests = 0;
         List<Toolpath> allConnectedPockets = new ArrayList<>();
-        List<PathSegment> allPocketPathSegments = pocketToolpaths.stream()
-                .map(ToolpathGenerator::computeEnclosingPath)
-                .flatMap(List::stream)
-                .collect(Collectors.toList());
-        LinkedList<Toolpath> remainingPockets = new LinkedList<>(pocketToolpaths);
-        Toolpath currentPocket = remainingPockets.pollFirst();
+
+        List<Toolpath.Segment> allPocketSegments = new ArrayList<>();
+        pocketToolpaths.forEach(toolpath -> allPocketSegments.addAll(toolpath.getSegments()));
+        SpatialGrid<Toolpath.Segment> pocketSegmentIndex = createSegmentIndex(computeIndexCellSize(allPocketSegments));
+        allPocketSegments.forEach(segment -> indexSegment(pocketSegmentIndex, segment));
+
+        // start points of pockets that have not been connected yet, searched nearest first
+        KdTree<Toolpath> remainingPockets = new KdTree<>(pocketToolpaths,
+                pocket -> pocket.getFirstSegment().getFrom());
+        Iterator<Toolpath> pocketOrder = pocketToolpaths.iterator();
+        Toolpath currentPocket = pollFirstRemaining(pocketOrder, remainingPockets);
         while (currentPocket != null) {
             allConnectedPockets.add(currentPocket);
             Point2D currentPoint = currentPocket.getLastSegment().getTo();
-            log.info("Searching for a connection from {} to next toolpath.", currentPoint);
+            log.debug("Searching for a connection from {} to next toolpath.", currentPoint);
 
+            // the first valid connection found is the shortest one, since pockets are visited nearest first
             Toolpath nextPocket = null;
-            double nextPocketDistance = Double.MAX_VALUE;
-
-            ListIterator<Toolpath> toolpathIterator = remainingPockets.listIterator();
-            while (toolpathIterator.hasNext()) {
-                Toolpath otherPocket = toolpathIterator.next();
-                Point2D startPoint = otherPocket.getFirstSegment().getFrom();
-                LineSegment connection = LineSegment.of(currentPoint, startPoint);
-                List<Point2D> intersectionPoints = allPocketPathSegments.stream()
-                        .flatMap(segment -> segment.intersect(connection).stream())
-                        .filter(PathSegment.IntersectionPoint::isOnSegments)
-                        .map(PathSegment.IntersectionPoint::getPoint)
-                        .filter(p -> !(isSamePoint(p, currentPoint) || isSamePoint(p, startPoint)))
-                        .collect(Collectors.toList());
-                if (intersectionPoints.isEmpty()) {
-                    double pocketDistance = currentPoint.distance(startPoint);
-                    log.info("Found valid connection {} with length {}", connection, pocketDistance);
-                    if (pocketDistance < nextPocketDistance) {
-                        if (nextPocket != null) {
-                            toolpathIterator.set(nextPocket);
-                        } else {
-                            toolpathIterator.remove();
-                        }
-                        nextPocket = otherPocket;
-                        nextPocketDistance = pocketDistance;
-                    }
-                } else {
-                    log.info("Potential connection: {} intersects other paths at: {}",
-                            connection, intersectionPoints);
+            Iterator<Toolpath> nearestPockets = remainingPockets.nearest(currentPoint);
+            while (nextPocket == null && nearestPockets.hasNext()) {
+                Toolpath otherPocket = nearestPockets.next();
+                ++connectionTests;
+                if (isValidPocketConnection(pocketSegmentIndex, currentPoint,
+                        otherPocket.getFirstSegment().getFrom())) {
+                    nextPocket = otherPocket;
                 }
             }
 
             if (nextPocket != null) {
-                log.info("Current path is connected to: " + nextPocket);
+                log.debug("Current path is connected to: {}", nextPocket);
+                remainingPockets.remove(nextPocket);
                 currentPocket.setNext(nextPocket);
                 currentPocket = nextPocket;
             } else {
-                log.info("Found path to connect with current path.");
-                currentPocket = remainingPockets.pollFirst();
+                log.debug("No valid connection found from current path.");
+                currentPocket = pollFirstRemaining(pocketOrder, remainingPockets);
             }
         }
-        return allConnectedPockets;
-    }
-
-    public List<Toolpath> computePocketToolpaths(Direction direction, GraphicsContext ctx, GCodeDisplayMode displayMode) {
-        List<Toolpath> insideToolpaths = computeProfileToolpaths(Side.INSIDE, direction, ctx, displayMode);
-        List<Toolpath> pocketToolpaths = computePockets(insideToolpaths, ctx, displayMode);
 
-        if (ctx != null && displayMode == GCodeDisplayMode.POCKET_TOOLPATHS) {
-            drawToolpaths(ctx, pocketToolpaths);
-        }
-
-        List<Toolpath> connectedPocketToolpaths = connectPockets(pocketToolpaths);
-
-        if (ctx != null && displayMode == GCodeDisplayMode.CONNECTED_TOOLPATHS) {
-            drawToolpaths(ctx, connectedPocketToolpaths);
+        if (event != null) {
+            event.inputSegments = allPocketSegments.size();
+            event.intersectionTests = connectionTests;
+            event.end(0, allConnectedPockets.size());
         }
+        return allConnectedPockets;
+    }
 
-        return connectedPocketToolpaths;
+    /**
+     * Computes toolpaths that clear the inside of every closed path, starting from the inside profile toolpaths.
+     *
+     * @param direction direction to cut each toolpath in
+     * @return computed toolpaths and the results of each stage of the computation
+     */
+    public ToolpathResult computePocketResult(Direction direction) {
+        ToolpathResult result = computeProfileResult(Side.INSIDE, direction);
+        result.pocketToolpaths = computePockets(result.getToolpaths(), result);
+        result.toolpaths = connectPockets(result.pocketToolpaths);
+        return result;
     }
 
     public List<Toolpath> computePocketToolpaths(Direction direction) {
-        return computePocketToolpaths(direction, null, null);
+        return computePocketResult(direction).getToolpaths();
     }
 
-    public List<Toolpath> computeFollowPathToolpaths(Direction direction, GraphicsContext ctx, GCodeDisplayMode displayMode) {
-        List<Toolpath> toolpaths = paths.stream()
+    public ToolpathResult computeFollowPathResult(Direction direction) {
+        ToolpathResult result = new ToolpathResult();
+        result.partitionedToolpaths = paths.stream()
                 .map(path -> new Toolpath(path, getToolRadius(), true))
                 .collect(Collectors.toList());
-
-        if (ctx != null && displayMode != null && displayMode.compareTo(GCodeDisplayMode.TOOLPATHS) <= 0) {
-            drawToolpaths(ctx, toolpaths);
-        }
-
-        toolpaths = toolpaths.stream()
+        result.orientedToolpaths = result.partitionedToolpaths.stream()
                 .map(toolpath -> toolpath.orient(direction))
                 .collect(Collectors.toList());
-
-        if (ctx != null && displayMode != null && displayMode.compareTo(GCodeDisplayMode.ORIENTED_TOOLPATHS) >= 0) {
-            drawToolpaths(ctx, toolpaths);
-        }
-
-        return toolpaths;
+        result.toolpaths = result.orientedToolpaths;
+        return result;
     }
 
     public List<Toolpath> computeFollowPathToolpaths(Direction direction) {
-        return computeFollowPathToolpaths(direction, null, null);
+        return computeFollowPathResult(direction).getToolpaths();
     }
 
     private static void drawCircle(GraphicsContext ctx, Point2D center, double radius) {
@@ -696,8 +850,8 @@ public class ToolpathGenerator {
         }
     }
 
-    private void drawPointInsidePath(GraphicsContext ctx, List<PathSegment> path, Point2D point) {
-        if (PathSegment.isPointInsidePath(path, point)) {
+    private void drawPointInsidePath(GraphicsContext ctx, PreparedPath path, Point2D point) {
+        if (path.isPointInside(point)) {
             ctx.setFill(INSIDE_PAINT);
         } else {
             ctx.setFill(OUTSIDE_PAINT);
@@ -706,21 +860,97 @@ public class ToolpathGenerator {
         ctx.setFill(PATH_PAINT);
     }
 
-    private void drawInsideOutsideSegments(GraphicsContext ctx, List<PathSegment> connectedEdges,
-                                           List<Toolpath.Segment> allValidSegments,
-                                           List<Toolpath.Segment> insideSegments,
-                                           List<Toolpath.Segment> outsideSegments) {
+    private void drawInsideOutsideSegments(GraphicsContext ctx, ToolpathResult.InsideOutside insideOutside) {
         ctx.setStroke(INSIDE_PAINT);
-        insideSegments.forEach(segment -> drawToolpathSegment(ctx, segment));
+        insideOutside.getInsideSegments().forEach(segment -> drawToolpathSegment(ctx, segment));
         ctx.setStroke(OUTSIDE_PAINT);
-        outsideSegments.forEach(segment -> drawToolpathSegment(ctx, segment));
-        allValidSegments.stream().forEach(segment -> {
-            drawPointInsidePath(ctx, connectedEdges, segment.getFrom());
-            drawPointInsidePath(ctx, connectedEdges, segment.getTo());
+        insideOutside.getOutsideSegments().forEach(segment -> drawToolpathSegment(ctx, segment));
+        insideOutside.getValidSegments().forEach(segment -> {
+            drawPointInsidePath(ctx, insideOutside.getPath(), segment.getFrom());
+            drawPointInsidePath(ctx, insideOutside.getPath(), segment.getTo());
         });
     }
 
-    private void drawToolpaths(GraphicsContext ctx, List<Toolpath> toolpaths) {
+    /**
+     * Draws the stage of a toolpath computation shown in a display mode. Stages the computation did not have are
+     * drawn as the toolpaths of the closest earlier stage it did have.
+     *
+     * @param ctx graphics context to draw on
+     * @param result computed toolpaths
+     * @param displayMode current toolpath display mode
+     */
+    public void drawResult(GraphicsContext ctx, ToolpathResult result, GCodeDisplayMode displayMode) {
+        if (displayMode == null) {
+            return;
+        }
+
+        if (displayMode.compareTo(GCodeDisplayMode.TOOLPATHS) < 0 && result.getInsideOutside() == null) {
+            displayMode = GCodeDisplayMode.TOOLPATHS;
+        }
+        switch (displayMode) {
+            case CONNECTED_SEGMENTS:
+                ctx.setStroke(SEGMENT_PAINT);
+                result.getConnectedSegments().forEach(segment -> drawToolpathSegment(ctx, segment));
+                return;
+            case SPLIT_POINTS:
+                result.getConnectedSegments().forEach(segment -> drawSplitPoints(ctx, segment));
+                return;
+            case VALID_SEGMENTS:
+                result.getInsideOutside().getValidSegments().forEach(segment -> drawValidSegment(ctx, segment));
+                return;
+            case INSIDE_OUTSIDE:
+                drawInsideOutsideSegments(ctx, result.getInsideOutside());
+                return;
+            case TOOLPATHS:
+                if (result.getPartitionedToolpaths() != null) {
+                    drawToolpaths(ctx, result.getPartitionedToolpaths(), false);
+                }
+                return;
+            default:
+                break;
+        }
+
+        // later stages are drawn over the oriented toolpaths
+        if (result.getOrientedToolpaths() != null) {
+            drawToolpaths(ctx, result.getOrientedToolpaths(), false);
+        }
+        if (result.getPocketToolpaths() == null) {
+            return;
+        }
+        switch (displayMode) {
+            case POCKET_CONNECTED_SEGMENTS:
+                ctx.setStroke(SEGMENT_PAINT);
+                result.getPocketConnectedSegments().forEach(segment -> drawToolpathSegment(ctx, segment));
+                break;
+            case POCKET_SPLIT_POINTS:
+                result.getPocketSplitSegments().forEach(segment -> drawSplitPoints(ctx, segment));
+                break;
+            case POCKET_VALID_SEGMENTS:
+                ctx.setStroke(VALID_PAINT);
+                result.getPocketLayers().forEach(layer -> layer.getValidSegments()
+                        .forEach(segment -> drawToolpathSegment(ctx, segment)));
+                break;
+            case POCKET_INSIDE_OUTSIDE:
+                result.getPocketLayers().forEach(layer -> drawInsideOutsideSegments(ctx, layer));
+                break;
+            case POCKET_TOOLPATHS:
+                drawToolpaths(ctx, result.getPocketToolpaths(), false);
+                break;
+            case CONNECTED_TOOLPATHS:
+                drawToolpaths(ctx, result.getToolpaths());
+                break;
+            default:
+                break;
+        }
+    }
+
+    public void drawToolpaths(GraphicsContext ctx, List<Toolpath> toolpaths) {
+        drawToolpaths(ctx, toolpaths, true);
+    }
+
+    // connections are only drawn for stages after pockets are connected, since earlier stages share toolpaths
+    // with the connected pockets
+    private void drawToolpaths(GraphicsContext ctx, List<Toolpath> toolpaths, boolean showConnections) {
         ctx.setStroke(VALID_PAINT);
         int toolpathIndex = 0;
         for (Toolpath toolpath : toolpaths) {
@@ -753,7 +983,7 @@ public class ToolpathGenerator {
                 ctx.setLineDashes();
             }
 
-            if (toolpath.hasNext()) {
+            if (showConnections && toolpath.hasNext()) {
                 drawLine(ctx, toolpath.getLastSegment().getTo(),
                         toolpath.getNext().getFirstSegment().getFrom());
             }
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator.toolpath;
+
+import com.gcodebuilder.geometry.PreparedPath;
+import lombok.Data;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Toolpaths computed by a {@link ToolpathGenerator} together with the intermediate results of each stage of the
+ * computation, so previews of any stage can be drawn from one computation without depending on how it was drawn.
+ * Stages that were not part of the computation are null. Results may be shared between threads once computed, so
+ * the lists and segments they hold must not be modified.
+ */
+@Getter
+public class ToolpathResult {
+    /**
+     * Valid segments of one stage sorted by whether both of their end points are inside or outside a path.
+     */
+    @Data
+    public static class InsideOutside {
+        private final PreparedPath path;
+        private final List<Toolpath.Segment> validSegments;
+        private final List<Toolpath.Segment> insideSegments;
+        private final List<Toolpath.Segment> outsideSegments;
+    }
+
+    // segments offset from each side of every closed path and connected at the corners, which also hold the points
+    // where they were split at intersections with other segments
+    List<Toolpath.Segment> connectedSegments;
+
+    InsideOutside insideOutside;
+
+    List<Toolpath> partitionedToolpaths;
+
+    List<Toolpath> orientedToolpaths;
+
+    // segments of every pocket layer before they are split
+    List<Toolpath.Segment> pocketConnectedSegments;
+
+    // profile and pocket segments holding the points where pocket segments were split
+    List<Toolpath.Segment> pocketSplitSegments;
+
+    List<InsideOutside> pocketLayers;
+
+    // pocket toolpaths from the innermost layer out, before they are connected
+    List<Toolpath> pocketToolpaths;
+
+    List<Toolpath> toolpaths;
+
+    ToolpathResult() {
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator.toolpath;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event covering one stage of a toolpath computation. Events are only created while a recording
+ * with this event enabled is running, and counters that take extra work to collect are only collected then.
+ */
+@Name("com.gcodebuilder.ToolpathStage")
+@Label("Toolpath Stage")
+@Category({"GCodeBuilder", "Toolpath Generation"})
+@Description("One stage of computing profile or pocket toolpaths")
+@StackTrace(false)
+class ToolpathStageEvent extends Event {
+    static final int NO_LAYER = -1;
+
+    private static final EventType EVENT_TYPE = EventType.getEventType(ToolpathStageEvent.class);
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Pocket Layer")
+    @Description("Index of the pocket layer, or -1 for profile stages")
+    int layer = NO_LAYER;
+
+    @Label("Input Segments")
+    int inputSegments;
+
+    @Label("Output Segments")
+    int outputSegments;
+
+    @Label("Toolpaths")
+    int toolpaths;
+
+    @Label("Intersection Tests")
+    @Description("Pairs of segments with overlapping bounding boxes tested for intersections, or possible "
+            + "connections tested when connecting pockets")
+    long intersectionTests;
+
+    @Label("Split Points")
+    long splitPoints;
+
+    /**
+     * Starts timing a stage.
+     *
+     * @param stage name of the stage
+     * @param layer index of the pocket layer, or {@link #NO_LAYER}
+     * @param inputSegments number of segments the stage starts with
+     * @return started event, or null if no recording has this event enabled
+     */
+    static ToolpathStageEvent begin(String stage, int layer, int inputSegments) {
+        if (!EVENT_TYPE.isEnabled()) {
+            return null;
+        }
+        ToolpathStageEvent event = new ToolpathStageEvent();
+        event.stage = stage;
+        event.layer = layer;
+        event.inputSegments = inputSegments;
+        event.begin();
+        return event;
+    }
+
+    void end(int outputSegments, int toolpaths) {
+        end();
+        if (shouldCommit()) {
+            this.outputSegments = outputSegments;
+            this.toolpaths = toolpaths;
+            commit();
+        }
+    }
+}
@@ -141,7 +141,7 @@ public class ArcSegment implements PathSegment {
                                 // arc crosses leftmost point in circle
                                 this.minX = minX;
                             } else {
-                                this.minX = Math.min(from.getY(), to.getX());
+                                this.minX = Math.min(from.getX(), to.getX());
                             }
                             this.maxX = maxX;
                             this.minY = minY;
@@ -188,7 +188,7 @@ public class ArcSegment implements PathSegment {
                             this.maxX = from.getX();
                         }
                         this.minY = minY;
-                        this.maxY = Math.min(from.getY(), to.getY());
+                        this.maxY = Math.max(from.getY(), to.getY());
                     } else {
                         // arc starts and stops in right half of circle
                         if (-extentAngle <= Math.PI) {
@@ -217,7 +217,7 @@ public class ArcSegment implements PathSegment {
                                 // arc crosses rightmost point in circle
                                 this.maxX = maxX;
                             } else {
-                                this.maxX = Math.max(from.getY(), to.getX());
+                                this.maxX = Math.max(from.getX(), to.getX());
                             }
                             this.minY = minY;
                             this.maxY = maxY;
@@ -667,6 +667,16 @@ public class ArcSegment implements PathSegment {
         return windingMatch;
     }
 
+    @Override
+    public double getWindingMinY() {
+        return center.getY() - radius;
+    }
+
+    @Override
+    public double getWindingMaxY() {
+        return center.getY() + radius;
+    }
+
     @Override
     public String toString() {
         return String.format("ArcSegment((%s,%s), (%s,%s), (%s,%s), %s)",
@@ -22,6 +22,8 @@ import com.gcodebuilder.canvas.Drawable;
 import com.gcodebuilder.changelog.Snapshot;
 import com.gcodebuilder.model.LengthUnit;
 import com.gcodebuilder.recipe.GCodeRecipe;
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.input.Clipboard;
 import lombok.Getter;
@@ -29,13 +31,20 @@ import lombok.Setter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -59,8 +68,38 @@ public class Drawing implements Drawable {
     @JsonIgnore
     private boolean dirty = true;
 
+    // spatial index of shape handle bounding boxes used to find shapes near the mouse, built when first needed
+    private SpatialGrid<Shape<?>> shapeIndex;
+
+    // position of each shape in drawing order, built when first needed
+    private Map<Shape<?>, Integer> shapeOrder;
+
+    // shapes being edited, which are drawn by the live layer instead of with the rest of the drawing
+    private Set<Shape<?>> liveShapes = Collections.emptySet();
+
+    private final Drawable liveLayer = new Drawable() {
+        @Override
+        public void draw(GraphicsContext ctx, double pixelsPerUnit, GridSettings settings) {
+            for (Drawable shape : liveShapes) {
+                shape.draw(ctx, pixelsPerUnit, settings);
+            }
+            dirty = false;
+        }
+
+        @Override
+        public boolean isVisible() {
+            return hasLiveShapes();
+        }
+
+        @Override
+        public Rectangle2D getBounds() {
+            return Math2D.computeBoundingBoxForShapes(new ArrayList<>(liveShapes));
+        }
+    };
+
     public void add(Shape<?> shape) {
         shapes.add(shape);
+        addToShapeIndex(shape);
         dirty = true;
     }
 
@@ -68,14 +107,17 @@ public class Drawing implements Drawable {
         int currentShapeIndex = shapes.indexOf(shape);
         if (currentShapeIndex < 0) {
             shapes.add(index, shape);
+            addToShapeIndex(shape);
             dirty = true;
         } else if (currentShapeIndex < index) {
             shapes.remove(currentShapeIndex);
             shapes.add(index - 1, shape);
+            invalidateShapeIndex();
             dirty = true;
         } else if (currentShapeIndex > index) {
             shapes.remove(currentShapeIndex);
             shapes.add(index, shape);
+            invalidateShapeIndex();
             dirty = true;
         }
     }
@@ -83,6 +125,7 @@ public class Drawing implements Drawable {
     public boolean addAll(Collection<? extends Shape<?>> shapes) {
         boolean changed = this.shapes.addAll(shapes);
         if (changed) {
+            shapes.forEach(this::addToShapeIndex);
             dirty = true;
         }
         return changed;
@@ -90,6 +133,7 @@ public class Drawing implements Drawable {
 
     public boolean remove(Shape<?> shape) {
         if (shapes.remove(shape)) {
+            invalidateShapeIndex();
             dirty = true;
             return true;
         }
@@ -99,6 +143,7 @@ public class Drawing implements Drawable {
     public boolean removeAll(Collection<? extends Shape<?>> shapes) {
         boolean changed = this.shapes.removeAll(shapes);
         if (changed) {
+            invalidateShapeIndex();
             dirty = true;
         }
         return changed;
@@ -238,15 +283,145 @@ public class Drawing implements Drawable {
             public List<Shape<?>> restore() {
                 Drawing.this.shapes.clear();
                 Drawing.this.shapes.addAll(shapes);
+                invalidateShapeIndex();
                 return shapes;
             }
         };
     }
 
+    private void insertIntoShapeIndex(Shape<?> shape) {
+        Rectangle2D box = shape.getHandleBoundingBox();
+        if (box != null) {
+            shapeIndex.insert(shape, box);
+        } else {
+            shapeIndex.insert(shape, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                    Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+    }
+
+    private void addToShapeIndex(Shape<?> shape) {
+        if (shapeIndex != null) {
+            insertIntoShapeIndex(shape);
+        }
+        shapeOrder = null;
+    }
+
+    private SpatialGrid<Shape<?>> getShapeIndex() {
+        if (shapeIndex == null) {
+            Rectangle2D extent = Math2D.computeBoundingBoxForShapes(shapes);
+            shapeIndex = new SpatialGrid<>(SpatialGrid.suggestCellSize(
+                    extent.getWidth(), extent.getHeight(), shapes.size()));
+            shapes.forEach(this::insertIntoShapeIndex);
+        }
+        return shapeIndex;
+    }
+
+    private Map<Shape<?>, Integer> getShapeOrder() {
+        if (shapeOrder == null) {
+            shapeOrder = new IdentityHashMap<>();
+            for (int i = 0; i < shapes.size(); ++i) {
+                shapeOrder.putIfAbsent(shapes.get(i), i);
+            }
+        }
+        return shapeOrder;
+    }
+
+    /**
+     * Finds the shapes that may have a handle at a point, so only those shapes need to be checked with
+     * {@link Shape#getHandle}.
+     *
+     * @param point snapped point passed to getHandle
+     * @param mousePoint mouse point passed to getHandle
+     * @param handleRadius handle radius passed to getHandle
+     * @return candidate shapes in drawing order
+     */
+    public List<Shape<?>> getShapesNear(Point2D point, Point2D mousePoint, double handleRadius) {
+        double minX = Math.min(point.getX(), mousePoint.getX()) - handleRadius;
+        double minY = Math.min(point.getY(), mousePoint.getY()) - handleRadius;
+        double maxX = Math.max(point.getX(), mousePoint.getX()) + handleRadius;
+        double maxY = Math.max(point.getY(), mousePoint.getY()) + handleRadius;
+        List<Shape<?>> nearShapes = getShapeIndex().query(minX, minY, maxX, maxY);
+        Map<Shape<?>, Integer> order = getShapeOrder();
+        nearShapes.removeIf(shape -> !order.containsKey(shape));
+        nearShapes.sort(Comparator.comparingInt(order::get));
+        return nearShapes;
+    }
+
+    /**
+     * Updates the shape index after a shape in this drawing has been edited in place. Editing a shape inside a group
+     * causes the whole index to be rebuilt the next time it is used.
+     *
+     * @param shape edited shape
+     */
+    public void updateShapeIndex(Shape<?> shape) {
+        if (shapeIndex != null) {
+            if (shapeIndex.contains(shape)) {
+                insertIntoShapeIndex(shape);
+            } else {
+                invalidateShapeIndex();
+            }
+        }
+    }
+
+    /**
+     * Discards the shape index after shapes have been changed without going through this drawing, such as when
+     * changes are undone.
+     */
+    public void invalidateShapeIndex() {
+        shapeIndex = null;
+        shapeOrder = null;
+    }
+
+    /**
+     * Sets the shapes that are drawn by the live layer instead of with the rest of the drawing. Only shapes that
+     * belong directly to this drawing can be drawn on the live layer, so shapes inside groups are ignored.
+     *
+     * @param liveShapes shapes being edited
+     * @return true if any shapes will be drawn on the live layer
+     */
+    public boolean setLiveShapes(Collection<? extends Shape<?>> liveShapes) {
+        Set<Shape<?>> newLiveShapes = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Shape<?> shape : liveShapes) {
+            if (shapes.stream().anyMatch(drawingShape -> drawingShape == shape)) {
+                newLiveShapes.add(shape);
+            }
+        }
+        this.liveShapes = newLiveShapes.isEmpty() ? Collections.emptySet() : newLiveShapes;
+        dirty = true;
+        return hasLiveShapes();
+    }
+
+    public void clearLiveShapes() {
+        if (hasLiveShapes()) {
+            liveShapes = Collections.emptySet();
+            dirty = true;
+        }
+    }
+
+    public boolean hasLiveShapes() {
+        return !liveShapes.isEmpty();
+    }
+
+    public boolean isLiveShape(Shape<?> shape) {
+        return liveShapes.contains(shape);
+    }
+
+    /**
+     * Returns a drawable that draws only the live shapes of this drawing.
+     *
+     * @return live layer drawable
+     */
+    @JsonIgnore
+    public Drawable getLiveLayer() {
+        return liveLayer;
+    }
+
     @Override
     public void draw(GraphicsContext ctx, double pixelsPerUnit, GridSettings settings) {
-        for (Drawable shape : shapes) {
-            shape.draw(ctx, pixelsPerUnit, settings);
+        for (Shape<?> shape : shapes) {
+            if (!isLiveShape(shape)) {
+                shape.draw(ctx, pixelsPerUnit, settings);
+            }
         }
         dirty = false;
     }
@@ -255,18 +430,115 @@ public class Drawing implements Drawable {
         ShapeIO.save(out, this);
     }
 
+    public void saveBinary(OutputStream out) throws IOException {
+        DrawingFile.save(this, out);
+    }
+
     public String saveAsString() throws IOException {
         return ShapeIO.saveAsString(this);
     }
 
+    /**
+     * Loads a drawing saved as JSON or in the binary {@link DrawingFile} format.
+     *
+     * @param in stream to read the drawing from
+     * @return loaded drawing
+     * @throws IOException if the drawing cannot be read
+     */
     public static Drawing load(InputStream in) throws IOException {
-        return ShapeIO.load(in, Drawing.class);
+        InputStream markedIn = in.markSupported() ? in : new BufferedInputStream(in);
+        if (startsWithDrawingFile(markedIn)) {
+            return DrawingFile.read(markedIn).readDrawing();
+        }
+        return ShapeIO.load(markedIn, Drawing.class);
+    }
+
+    /**
+     * Loads a drawing from a file saved as JSON or in the binary {@link DrawingFile} format. Binary files are mapped
+     * into memory instead of being copied into a buffer, and the mapping is only released once it is garbage
+     * collected, so use {@link #load(InputStream)} for files that may be overwritten while the program runs.
+     *
+     * @param file file to read the drawing from
+     * @return loaded drawing
+     * @throws IOException if the drawing cannot be read
+     */
+    public static Drawing loadFromFile(java.nio.file.Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            if (startsWithDrawingFile(in)) {
+                return DrawingFile.open(file).readDrawing();
+            }
+            return ShapeIO.load(in, Drawing.class);
+        }
+    }
+
+    private static boolean startsWithDrawingFile(InputStream markedIn) throws IOException {
+        byte[] prefix = new byte[Integer.BYTES];
+        markedIn.mark(prefix.length);
+        int prefixLength = markedIn.readNBytes(prefix, 0, prefix.length);
+        markedIn.reset();
+        return DrawingFile.isDrawingFile(prefix, prefixLength);
     }
 
     public static Drawing loadFromString(String saved) throws IOException {
         return ShapeIO.loadFromString(saved, Drawing.class);
     }
 
+    /**
+     * Saved state of a drawing that a copy of the drawing can be read from on another thread.
+     */
+    public static class SavedCopy {
+        private final byte[] saved;
+        private final boolean[] selected;
+
+        private SavedCopy(byte[] saved, boolean[] selected) {
+            this.saved = saved;
+            this.selected = selected;
+        }
+
+        /**
+         * Reads a new copy of the drawing as it was when it was saved.
+         *
+         * @return copy of the drawing
+         * @throws IOException if the saved drawing cannot be read
+         */
+        public Drawing read() throws IOException {
+            Drawing copy = DrawingFile.wrap(ByteBuffer.wrap(saved)).readDrawing();
+            for (int i = 0; i < selected.length; ++i) {
+                copy.shapes.get(i).setSelected(selected[i]);
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Saves this drawing, including shape selection, in the compact binary format, so a copy can be read from it on
+     * another thread while this drawing continues to be edited. Only saving needs to happen on the thread that edits
+     * the drawing.
+     *
+     * @return saved state of this drawing
+     * @throws IOException if the drawing cannot be serialized
+     */
+    public SavedCopy saveCopy() throws IOException {
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        saveBinary(saved);
+        boolean[] selected = new boolean[shapes.size()];
+        for (int i = 0; i < shapes.size(); ++i) {
+            selected[i] = shapes.get(i).isSelected();
+        }
+        return new SavedCopy(saved.toByteArray(), selected);
+    }
+
+    /**
+     * Creates a deep copy of this drawing, including shape selection, that can be used on another thread while this
+     * drawing continues to be edited.
+     *
+     * @return copy of this drawing
+     * @throws IOException if the drawing cannot be serialized
+     */
+    public Drawing copy() throws IOException {
+        return saveCopy().read();
+    }
+
     @Override
     public String toString() {
         return String.format("Drawing(shapes=%s, dirty=%s)", shapes, dirty);
@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.geometry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Binary drawing format for drawings with large paths. The file starts with the drawing settings and recipes as
+ * JSON, followed by a table of contents with the offset and length of every shape record, and then the shape
+ * records. Paths store their points as packed arrays of doubles, so the points of a path are read and written in
+ * bulk, and every value is stored exactly, so a saved drawing loads back unchanged.
+ * <p>
+ * Only the settings and table of contents are read when a file is opened. Each shape is decoded the first time it
+ * is read, so a file can be inspected or partly loaded without decoding every point in it. {@link Drawing#load} and
+ * {@link Drawing#loadFromFile} recognize this format, so drawings are loaded the same way whichever format they were
+ * saved in.
+ */
+public class DrawingFile {
+    public static final String EXTENSION = "gcbp";
+
+    // "GCBP"
+    private static final int MAGIC = 0x47434250;
+    private static final int VERSION = 1;
+
+    // shape record types
+    private static final byte JSON_SHAPE = 0;
+    private static final byte RECTANGLE = 1;
+    private static final byte CIRCLE = 2;
+    private static final byte PATH = 3;
+    private static final byte GROUP = 4;
+
+    // size of a table of contents entry: offset and length
+    private static final int ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final String settings;
+    private final int tableOffset;
+    private final Shape<?>[] shapes;
+
+    private DrawingFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        try {
+            ByteBuffer in = buffer.duplicate();
+            if (in.getInt() != MAGIC) {
+                throw new IOException("not a binary drawing file");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported binary drawing version: " + version);
+            }
+            this.settings = readString(in);
+            int shapeCount = in.getInt();
+            this.tableOffset = in.position();
+            if (shapeCount < 0 || (long)shapeCount * ENTRY_SIZE > in.remaining()) {
+                throw new IOException("invalid shape count: " + shapeCount);
+            }
+            this.shapes = new Shape<?>[shapeCount];
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("binary drawing file is truncated", ex);
+        }
+    }
+
+    /**
+     * Checks whether data starts like a binary drawing file.
+     *
+     * @param prefix first bytes of the data
+     * @param length number of bytes in prefix
+     * @return true if the data is a binary drawing file
+     */
+    public static boolean isDrawingFile(byte[] prefix, int length) {
+        return length >= Integer.BYTES && ByteBuffer.wrap(prefix).getInt() == MAGIC;
+    }
+
+    public static DrawingFile wrap(ByteBuffer buffer) throws IOException {
+        return new DrawingFile(buffer);
+    }
+
+    public static DrawingFile read(InputStream in) throws IOException {
+        return new DrawingFile(ByteBuffer.wrap(in.readAllBytes()));
+    }
+
+    /**
+     * Opens a binary drawing file by mapping it into memory, so only the shapes that are read are loaded from disk.
+     *
+     * @param path file to open
+     * @return opened file
+     * @throws IOException if the file cannot be read or is not a binary drawing file
+     */
+    public static DrawingFile open(java.nio.file.Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new DrawingFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getShapeCount() {
+        return shapes.length;
+    }
+
+    /**
+     * Decodes a shape the first time it is read. Later reads return the same shape.
+     *
+     * @param index index of the shape in drawing order
+     * @return decoded shape
+     * @throws IOException if the shape record is invalid
+     */
+    public synchronized Shape<?> readShape(int index) throws IOException {
+        if (shapes[index] == null) {
+            try {
+                int entry = tableOffset + index * ENTRY_SIZE;
+                long offset = buffer.getLong(entry);
+                int length = buffer.getInt(entry + Long.BYTES);
+                if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+                    throw new IOException(String.format("invalid record of shape %d", index));
+                }
+                ByteBuffer record = buffer.duplicate();
+                record.position((int)offset).limit((int)offset + length);
+                shapes[index] = readShapeRecord(record);
+            } catch (BufferUnderflowException | IllegalArgumentException ex) {
+                throw new IOException(String.format("invalid record of shape %d", index), ex);
+            }
+        }
+        return shapes[index];
+    }
+
+    private class ShapeList extends AbstractList<Shape<?>> implements RandomAccess {
+        @Override
+        public Shape<?> get(int index) {
+            try {
+                return readShape(index);
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        @Override
+        public int size() {
+            return shapes.length;
+        }
+    }
+
+    /**
+     * Returns a list of all shapes that decodes each shape when it is first read.
+     *
+     * @return unmodifiable list of shapes
+     */
+    public List<Shape<?>> getShapes() {
+        return new ShapeList();
+    }
+
+    public Drawing readDrawing() throws IOException {
+        Drawing drawing = ShapeIO.loadFromString(settings, Drawing.class);
+        List<Shape<?>> drawingShapes = new ArrayList<>(shapes.length);
+        for (int i = 0; i < shapes.length; ++i) {
+            drawingShapes.add(readShape(i));
+        }
+        drawing.addAll(drawingShapes);
+        return drawing;
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Point.Type readPointType(byte code) throws IOException {
+        if (code == 0) {
+            return null;
+        } else if (code > 0 && code <= Point.Type.values().length) {
+            return Point.Type.values()[code - 1];
+        }
+        throw new IOException("invalid point type: " + code);
+    }
+
+    private static Shape<?> readShapeRecord(ByteBuffer in) throws IOException {
+        byte type = in.get();
+        int recipeId = in.getInt();
+        Shape<?> shape;
+        switch (type) {
+            case RECTANGLE:
+                shape = new Rectangle(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+                break;
+            case CIRCLE: {
+                double x = in.getDouble();
+                double y = in.getDouble();
+                Point center = new Point(x, y, readPointType(in.get()));
+                shape = new Circle(center, in.getDouble());
+                break;
+            }
+            case PATH:
+                shape = readPath(in);
+                break;
+            case GROUP: {
+                int count = in.getInt();
+                if (count < 0 || count > in.remaining()) {
+                    throw new IOException("invalid group size: " + count);
+                }
+                List<Shape<?>> groupShapes = new ArrayList<>(count);
+                for (int i = 0; i < count; ++i) {
+                    groupShapes.add(readShapeRecord(in));
+                }
+                shape = new Group(groupShapes);
+                break;
+            }
+            case JSON_SHAPE:
+                shape = ShapeIO.loadFromString(readString(in), Shape.class);
+                break;
+            default:
+                throw new IOException("unknown shape record type: " + type);
+        }
+        shape.setRecipeId(recipeId);
+        return shape;
+    }
+
+    private static Path readPath(ByteBuffer in) throws IOException {
+        boolean closed = in.get() != 0;
+        int count = in.getInt();
+        boolean hasTypes = in.get() != 0;
+        if (count < 0 || (long)count * 2 * Double.BYTES > in.remaining()) {
+            throw new IOException("invalid path size: " + count);
+        }
+        double[] coordinates = new double[count * 2];
+        in.asDoubleBuffer().get(coordinates);
+        in.position(in.position() + coordinates.length * Double.BYTES);
+        byte[] types = null;
+        if (hasTypes) {
+            types = new byte[count];
+            in.get(types);
+        }
+        List<Point> points = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            Point.Type pointType = (types != null) ? readPointType(types[i]) : null;
+            points.add(new Point(coordinates[2 * i], coordinates[2 * i + 1], pointType));
+        }
+        return new Path(points, closed);
+    }
+
+    // shapes without a binary record are encoded as JSON while sizing records, and the same bytes are written later
+    private static int getRecordSize(Shape<?> shape, Map<Shape<?>, byte[]> jsonShapes) throws IOException {
+        int size = Byte.BYTES + Integer.BYTES;
+        if (shape instanceof Rectangle) {
+            size += 4 * Double.BYTES;
+        } else if (shape instanceof Circle) {
+            size += 3 * Double.BYTES + Byte.BYTES;
+        } else if (shape instanceof Path) {
+            Path path = (Path)shape;
+            size += Byte.BYTES + Integer.BYTES + Byte.BYTES + path.getPointCount() * 2 * Double.BYTES;
+            if (hasPointTypes(path)) {
+                size += path.getPointCount();
+            }
+        } else if (shape instanceof Group) {
+            size += Integer.BYTES;
+            for (Shape<?> groupShape : ((Group)shape).getShapes()) {
+                size += getRecordSize(groupShape, jsonShapes);
+            }
+        } else {
+            byte[] json = ShapeIO.saveAsString(shape).getBytes(StandardCharsets.UTF_8);
+            jsonShapes.put(shape, json);
+            size += Integer.BYTES + json.length;
+        }
+        return size;
+    }
+
+    private static boolean hasPointTypes(Path path) {
+        for (Point point : path.getPoints()) {
+            if (point.getType() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte getPointTypeCode(Point point) {
+        return (byte)((point.getType() != null) ? point.getType().ordinal() + 1 : 0);
+    }
+
+    private static void writeShapeRecord(ByteBuffer out, Shape<?> shape, Map<Shape<?>, byte[]> jsonShapes) {
+        if (shape instanceof Rectangle) {
+            Rectangle rectangle = (Rectangle)shape;
+            out.put(RECTANGLE).putInt(shape.getRecipeId());
+            out.putDouble(rectangle.getMinX()).putDouble(rectangle.getMinY())
+                    .putDouble(rectangle.getWidth()).putDouble(rectangle.getHeight());
+        } else if (shape instanceof Circle) {
+            Circle circle = (Circle)shape;
+            out.put(CIRCLE).putInt(shape.getRecipeId());
+            out.putDouble(circle.getCenter().getX()).putDouble(circle.getCenter().getY())
+                    .put(getPointTypeCode(circle.getCenter())).putDouble(circle.getRadius());
+        } else if (shape instanceof Path) {
+            Path path = (Path)shape;
+            List<Point> points = path.getPoints();
+            boolean hasTypes = hasPointTypes(path);
+            out.put(PATH).putInt(shape.getRecipeId());
+            out.put((byte)(path.isClosed() ? 1 : 0)).putInt(points.size()).put((byte)(hasTypes ? 1 : 0));
+            double[] coordinates = new double[points.size() * 2];
+            for (int i = 0; i < points.size(); ++i) {
+                coordinates[2 * i] = points.get(i).getX();
+                coordinates[2 * i + 1] = points.get(i).getY();
+            }
+            out.asDoubleBuffer().put(coordinates);
+            out.position(out.position() + coordinates.length * Double.BYTES);
+            if (hasTypes) {
+                for (Point point : points) {
+                    out.put(getPointTypeCode(point));
+                }
+            }
+        } else if (shape instanceof Group) {
+            List<Shape<?>> groupShapes = ((Group)shape).getShapes();
+            out.put(GROUP).putInt(shape.getRecipeId()).putInt(groupShapes.size());
+            for (Shape<?> groupShape : groupShapes) {
+                writeShapeRecord(out, groupShape, jsonShapes);
+            }
+        } else {
+            byte[] json = jsonShapes.get(shape);
+            out.put(JSON_SHAPE).putInt(shape.getRecipeId());
+            out.putInt(json.length).put(json);
+        }
+    }
+
+    /**
+     * Writes a drawing in the binary format.
+     *
+     * @param drawing drawing to save
+     * @param out stream to write to
+     * @throws IOException if writing fails
+     */
+    public static void save(Drawing drawing, OutputStream out) throws IOException {
+        // settings and recipes are small, so they are saved as a drawing without shapes
+        Drawing settingsDrawing = new Drawing();
+        settingsDrawing.setLengthUnit(drawing.getLengthUnit());
+        settingsDrawing.setRecipes(drawing.getRecipes());
+        byte[] settingsBytes = ShapeIO.saveAsString(settingsDrawing).getBytes(StandardCharsets.UTF_8);
+
+        List<Shape<?>> shapes = drawing.getShapes();
+        int[] recordSizes = new int[shapes.size()];
+        Map<Shape<?>, byte[]> jsonShapes = new IdentityHashMap<>();
+        long size = 3 * Integer.BYTES + settingsBytes.length + Integer.BYTES + (long)shapes.size() * ENTRY_SIZE;
+        for (int i = 0; i < shapes.size(); ++i) {
+            recordSizes[i] = getRecordSize(shapes.get(i), jsonShapes);
+            size += recordSizes[i];
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("drawing is too large for a binary drawing file");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int)size);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        buffer.putInt(settingsBytes.length).put(settingsBytes);
+        buffer.putInt(shapes.size());
+        long offset = buffer.position() + (long)shapes.size() * ENTRY_SIZE;
+        for (int recordSize : recordSizes) {
+            buffer.putLong(offset).putInt(recordSize);
+            offset += recordSize;
+        }
+        for (Shape<?> shape : shapes) {
+            writeShapeRecord(buffer, shape, jsonShapes);
+        }
+        out.write(buffer.array(), 0, buffer.position());
+    }
+}
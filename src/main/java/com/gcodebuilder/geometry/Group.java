@@ -122,6 +122,27 @@ public class Group extends Shape<Group.Handle> {
         return Math2D.computeBoundingBoxForShapes(shapes);
     }
 
+    @Override
+    @JsonIgnore
+    public Rectangle2D getHandleBoundingBox() {
+        Rectangle2D handleBox = null;
+        for (Shape<?> shape : shapes) {
+            Rectangle2D box = shape.getHandleBoundingBox();
+            if (box == null) {
+                return null;
+            } else if (handleBox == null) {
+                handleBox = box;
+            } else {
+                double minX = Math.min(handleBox.getMinX(), box.getMinX());
+                double minY = Math.min(handleBox.getMinY(), box.getMinY());
+                double maxX = Math.max(handleBox.getMaxX(), box.getMaxX());
+                double maxY = Math.max(handleBox.getMaxY(), box.getMaxY());
+                handleBox = new Rectangle2D(minX, minY, maxX - minX, maxY - minY);
+            }
+        }
+        return handleBox;
+    }
+
     @Override
     @JsonIgnore
     public Point getCenter() {
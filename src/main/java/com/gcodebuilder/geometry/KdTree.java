@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.geometry;
+
+import javafx.geometry.Point2D;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Static two dimensional k-d tree of items located at points, used to visit items in order of increasing distance
+ * from a query point. Items are compared by identity and can be removed, but not added after the tree is built.
+ * Items at the same distance are visited in the order they were passed to the constructor.
+ *
+ * @param <T> type of item stored in the tree
+ */
+public class KdTree<T> {
+    private static class Node {
+        private final int index;
+        private final double x;
+        private final double y;
+        private Node left;
+        private Node right;
+        private double minX;
+        private double minY;
+        private double maxX;
+        private double maxY;
+
+        private Node(int index, Point2D point) {
+            this.index = index;
+            this.x = point.getX();
+            this.y = point.getY();
+        }
+
+        private double squaredDistance(double px, double py) {
+            double dx = x - px;
+            double dy = y - py;
+            return dx * dx + dy * dy;
+        }
+
+        // never more than the squared distance to any point in the subtree, even after rounding
+        private double squaredDistanceToBounds(double px, double py) {
+            double dx = Math.max(0, Math.max(minX - px, px - maxX));
+            double dy = Math.max(0, Math.max(minY - py, py - maxY));
+            return dx * dx + dy * dy;
+        }
+    }
+
+    // queue entry for either a subtree, ordered by the squared distance to its bounds, or a single item
+    private static class Candidate {
+        private final Node node;
+        private final boolean subtree;
+        private final double distance;
+
+        private Candidate(Node node, boolean subtree, double distance) {
+            this.node = node;
+            this.subtree = subtree;
+            this.distance = distance;
+        }
+    }
+
+    // subtrees are expanded before items at the same distance, so ties are broken by item index
+    private static final Comparator<Candidate> CANDIDATE_ORDER = Comparator
+            .comparingDouble((Candidate candidate) -> candidate.distance)
+            .thenComparing(candidate -> !candidate.subtree)
+            .thenComparingInt(candidate -> candidate.node.index);
+
+    private final List<T> items;
+    private final boolean[] removed;
+    private final Map<T, Integer> indexes = new IdentityHashMap<>();
+    private final Node root;
+    private int size;
+
+    public KdTree(List<T> items, Function<? super T, Point2D> pointFunction) {
+        this.items = new ArrayList<>(items);
+        this.removed = new boolean[items.size()];
+        this.size = items.size();
+        List<Node> nodes = new ArrayList<>(items.size());
+        for (int index = 0; index < items.size(); ++index) {
+            T item = items.get(index);
+            indexes.put(item, index);
+            nodes.add(new Node(index, pointFunction.apply(item)));
+        }
+        this.root = build(nodes, 0, nodes.size(), 0);
+    }
+
+    private static Node build(List<Node> nodes, int from, int to, int depth) {
+        if (from >= to) {
+            return null;
+        }
+        boolean splitX = depth % 2 == 0;
+        nodes.subList(from, to).sort(splitX
+                ? Comparator.comparingDouble((Node node) -> node.x)
+                : Comparator.comparingDouble((Node node) -> node.y));
+        int median = (from + to) >>> 1;
+        Node node = nodes.get(median);
+        node.left = build(nodes, from, median, depth + 1);
+        node.right = build(nodes, median + 1, to, depth + 1);
+        node.minX = node.maxX = node.x;
+        node.minY = node.maxY = node.y;
+        for (Node child : new Node[] { node.left, node.right }) {
+            if (child != null) {
+                node.minX = Math.min(node.minX, child.minX);
+                node.minY = Math.min(node.minY, child.minY);
+                node.maxX = Math.max(node.maxX, child.maxX);
+                node.maxY = Math.max(node.maxY, child.maxY);
+            }
+        }
+        return node;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(T item) {
+        Integer index = indexes.get(item);
+        return index != null && !removed[index];
+    }
+
+    public boolean remove(T item) {
+        if (contains(item)) {
+            removed[indexes.get(item)] = true;
+            --size;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the items in this tree in order of increasing distance from a point. Items are found lazily, so
+     * visiting only the first few items is much faster than visiting all of them. The tree must not be modified
+     * while the iterator is used.
+     *
+     * @param point query point
+     * @return iterator over remaining items, nearest first
+     */
+    public Iterator<T> nearest(Point2D point) {
+        double px = point.getX();
+        double py = point.getY();
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(CANDIDATE_ORDER);
+        if (root != null) {
+            queue.add(new Candidate(root, true, root.squaredDistanceToBounds(px, py)));
+        }
+        return new Iterator<>() {
+            private Node next = findNext();
+
+            private Node findNext() {
+                while (!queue.isEmpty()) {
+                    Candidate candidate = queue.poll();
+                    Node node = candidate.node;
+                    if (!candidate.subtree) {
+                        return node;
+                    }
+                    if (!removed[node.index]) {
+                        queue.add(new Candidate(node, false, node.squaredDistance(px, py)));
+                    }
+                    for (Node child : new Node[] { node.left, node.right }) {
+                        if (child != null) {
+                            queue.add(new Candidate(child, true, child.squaredDistanceToBounds(px, py)));
+                        }
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                T item = items.get(next.index);
+                next = findNext();
+                return item;
+            }
+        };
+    }
+}
@@ -42,9 +42,15 @@ import java.util.List;
 public class Path extends SimpleShape<Path.Handle> {
     private static final Logger log = LogManager.getLogger(Path.class);
 
+    // paths with fewer points than this find handles without building a handle index
+    private static final int MIN_INDEXED_POINTS = 32;
+
     private List<Point> points;
     private volatile List<PathSegment> segments;
 
+    @EqualsAndHashCode.Exclude
+    private volatile HandleIndex handleIndex;
+
     @Getter @Setter
     private boolean closed;
 
@@ -332,8 +338,96 @@ public class Path extends SimpleShape<Path.Handle> {
         }
     }
 
+    /**
+     * Spatial index of the points and segments of a path, which is rebuilt whenever the segments are rebuilt.
+     */
+    private static class HandleIndex {
+        private final List<PathSegment> segments;
+        private final SpatialGrid<Integer> pointGrid;
+        private final SpatialGrid<Integer> segmentGrid;
+        private final int[] segmentPointIndexes;
+
+        private HandleIndex(List<Point> points, List<PathSegment> segments) {
+            this.segments = segments;
+
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (Point point : points) {
+                minX = Math.min(minX, point.getX());
+                minY = Math.min(minY, point.getY());
+                maxX = Math.max(maxX, point.getX());
+                maxY = Math.max(maxY, point.getY());
+            }
+            double cellSize = SpatialGrid.suggestCellSize(maxX - minX, maxY - minY, points.size());
+
+            pointGrid = new SpatialGrid<>(cellSize);
+            for (int pointIndex = 0; pointIndex < points.size(); ++pointIndex) {
+                Point point = points.get(pointIndex);
+                pointGrid.insert(pointIndex, point.getX(), point.getY(), point.getX(), point.getY());
+            }
+
+            segmentGrid = new SpatialGrid<>(cellSize);
+            segmentPointIndexes = new int[segments.size()];
+            for (int segmentIndex = 0, pointIndex = 0; segmentIndex < segments.size(); ++segmentIndex, ++pointIndex) {
+                PathSegment segment = segments.get(segmentIndex);
+                segmentPointIndexes[segmentIndex] = pointIndex;
+                if (segment instanceof ArcSegment) {
+                    ArcSegment arc = (ArcSegment)segment;
+                    Point2D center = arc.getCenter();
+                    double radius = arc.getRadius();
+                    segmentGrid.insert(segmentIndex, center.getX() - radius, center.getY() - radius,
+                            center.getX() + radius, center.getY() + radius);
+                    ++pointIndex;
+                } else {
+                    segmentGrid.insert(segmentIndex,
+                            segment.getMinX(), segment.getMinY(), segment.getMaxX(), segment.getMaxY());
+                }
+            }
+        }
+    }
+
+    private HandleIndex getHandleIndex() {
+        List<PathSegment> segments = getSegments();
+        HandleIndex index = handleIndex;
+        if (index == null || index.segments != segments) {
+            index = new HandleIndex(points, segments);
+            handleIndex = index;
+        }
+        return index;
+    }
+
+    private Handle getIndexedHandle(Point2D mousePoint, double handleRadius) {
+        HandleIndex index = getHandleIndex();
+        double minX = mousePoint.getX() - handleRadius;
+        double minY = mousePoint.getY() - handleRadius;
+        double maxX = mousePoint.getX() + handleRadius;
+        double maxY = mousePoint.getY() + handleRadius;
+        for (int pointIndex : index.pointGrid.query(minX, minY, maxX, maxY)) {
+            Point originalPoint = points.get(pointIndex);
+            if (originalPoint.isSame(mousePoint, handleRadius)) {
+                log.info("Created handle for point: {}", originalPoint);
+                return new Handle(pointIndex);
+            }
+        }
+        for (int segmentIndex : index.segmentGrid.query(minX, minY, maxX, maxY)) {
+            PathSegment segment = index.segments.get(segmentIndex);
+            Point2D projectedPoint = segment.project(mousePoint);
+            if (projectedPoint != null && projectedPoint.distance(mousePoint) < handleRadius) {
+                log.info("Created handle for point: {} on segment: {}", projectedPoint, segment);
+                return new Handle(index.segmentPointIndexes[segmentIndex], projectedPoint);
+            }
+        }
+        return null;
+    }
+
     @Override
     public Handle getHandle(Point2D point, Point2D mousePoint, double handleRadius) {
+        if (points.size() >= MIN_INDEXED_POINTS) {
+            // same search as below, but only over points and segments near the mouse point
+            return getIndexedHandle(mousePoint, handleRadius);
+        }
         for (int pointIndex = 0; pointIndex < points.size(); ++pointIndex) {
             Point originalPoint = points.get(pointIndex);
             if (originalPoint.isSame(mousePoint, handleRadius)) {
@@ -416,6 +510,35 @@ public class Path extends SimpleShape<Path.Handle> {
         return Math2D.computeBoundingBoxForPathSegments(getSegments());
     }
 
+    @Override
+    @JsonIgnore
+    public Rectangle2D getHandleBoundingBox() {
+        if (points.isEmpty()) {
+            return null;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (Point point : points) {
+            minX = Math.min(minX, point.getX());
+            minY = Math.min(minY, point.getY());
+            maxX = Math.max(maxX, point.getX());
+            maxY = Math.max(maxY, point.getY());
+        }
+        // arcs can bulge past their end points, which the segment bounding box does not include
+        for (PathSegment segment : getSegments()) {
+            if (segment instanceof ArcSegment) {
+                ArcSegment arc = (ArcSegment)segment;
+                minX = Math.min(minX, arc.getCenter().getX() - arc.getRadius());
+                minY = Math.min(minY, arc.getCenter().getY() - arc.getRadius());
+                maxX = Math.max(maxX, arc.getCenter().getX() + arc.getRadius());
+                maxY = Math.max(maxY, arc.getCenter().getY() + arc.getRadius());
+            }
+        }
+        return new Rectangle2D(minX, minY, maxX - minX, maxY - minY);
+    }
+
     @Override
     @JsonIgnore
     public Point getCenter() {
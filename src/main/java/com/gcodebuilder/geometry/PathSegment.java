@@ -170,5 +170,23 @@ public interface PathSegment {
      */
     boolean isWindingMatch(Point2D point);
 
+    /**
+     * Returns the minimum y coordinate of points for which {@link #isWindingMatch(Point2D)} can return true.
+     *
+     * @return minimum winding y coordinate
+     */
+    default double getWindingMinY() {
+        return getMinY();
+    }
+
+    /**
+     * Returns the maximum y coordinate of points for which {@link #isWindingMatch(Point2D)} can return true.
+     *
+     * @return maximum winding y coordinate
+     */
+    default double getWindingMaxY() {
+        return getMaxY();
+    }
+
     void draw(GraphicsContext ctx);
 }
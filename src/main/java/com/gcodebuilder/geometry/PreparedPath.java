@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.geometry;
+
+import javafx.geometry.Point2D;
+
+import java.util.List;
+
+/**
+ * Closed path prepared for repeated point in path tests. The path segments are sorted into horizontal buckets that
+ * cover the range of y coordinates where {@link PathSegment#isWindingMatch(Point2D)} can return true, so each test
+ * only checks the segments in the bucket containing the point instead of every segment in the path. Tests give the
+ * same results as {@link PathSegment#isPointInsidePath(List, Point2D)}. A prepared path is not modified by tests, so
+ * it may be used from several threads at once.
+ */
+public class PreparedPath {
+    private static final int MAX_BUCKETS = 4096;
+    private static final PathSegment[] NO_SEGMENTS = new PathSegment[0];
+
+    private final double minY;
+    private final double bucketsPerUnit;
+    private final PathSegment[][] buckets;
+
+    /**
+     * Prepares a path for point in path tests. The path is assumed to be closed, just like for
+     * {@link PathSegment#isPointInsidePath(List, Point2D)}.
+     *
+     * @param path path defined by a list of segments
+     */
+    public PreparedPath(List<PathSegment> path) {
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (PathSegment segment : path) {
+            minY = Math.min(minY, segment.getWindingMinY());
+            maxY = Math.max(maxY, segment.getWindingMaxY());
+        }
+        this.minY = minY;
+
+        int bucketCount = Math.max(1, Math.min(path.size(), MAX_BUCKETS));
+        double height = maxY - minY;
+        this.bucketsPerUnit = (height > 0 && Double.isFinite(height)) ? bucketCount / height : 0;
+        this.buckets = new PathSegment[bucketCount][];
+
+        // count segments in each bucket first, so every bucket can be filled without resizing
+        int[] bucketSizes = new int[bucketCount];
+        for (PathSegment segment : path) {
+            int lastBucket = getBucketIndex(segment.getWindingMaxY());
+            for (int bucket = getBucketIndex(segment.getWindingMinY()); bucket <= lastBucket; ++bucket) {
+                ++bucketSizes[bucket];
+            }
+        }
+        for (int bucket = 0; bucket < bucketCount; ++bucket) {
+            buckets[bucket] = (bucketSizes[bucket] > 0) ? new PathSegment[bucketSizes[bucket]] : NO_SEGMENTS;
+            bucketSizes[bucket] = 0;
+        }
+        for (PathSegment segment : path) {
+            int lastBucket = getBucketIndex(segment.getWindingMaxY());
+            for (int bucket = getBucketIndex(segment.getWindingMinY()); bucket <= lastBucket; ++bucket) {
+                buckets[bucket][bucketSizes[bucket]++] = segment;
+            }
+        }
+    }
+
+    private int getBucketIndex(double y) {
+        // monotonic in y, so a segment is always in the bucket of any y within its winding range
+        double index = Math.floor((y - minY) * bucketsPerUnit);
+        if (!(index > 0)) {
+            return 0;
+        } else if (index >= buckets.length) {
+            return buckets.length - 1;
+        } else {
+            return (int)index;
+        }
+    }
+
+    /**
+     * Checks if a point is inside this path.
+     *
+     * @param point a point
+     * @return true if point is inside the path, false if point is outside the path
+     */
+    public boolean isPointInside(Point2D point) {
+        boolean pointInPath = false;
+        for (PathSegment segment : buckets[getBucketIndex(point.getY())]) {
+            if (segment.isWindingMatch(point)) {
+                pointInPath = !pointInPath;
+            }
+        }
+        return pointInPath;
+    }
+}
@@ -103,6 +103,17 @@ public abstract class Shape<H> implements Drawable {
     @JsonIgnore
     public abstract Rectangle2D getBoundingBox();
 
+    /**
+     * Returns a box that contains every handle point of this shape, so {@link #getHandle} can only find a handle when
+     * the point or mouse point is within the handle radius of the box.
+     *
+     * @return handle bounding box, or null if handles are not limited to a box
+     */
+    @JsonIgnore
+    public Rectangle2D getHandleBoundingBox() {
+        return getBoundingBox();
+    }
+
     public abstract Point getCenter();
 
     public abstract boolean resize(double scaleFactor, Point center);
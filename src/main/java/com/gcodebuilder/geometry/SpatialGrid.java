@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.geometry;
+
+import com.google.common.base.Preconditions;
+import javafx.geometry.Rectangle2D;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Uniform grid of square cells used to find items with overlapping bounding boxes. Each item is stored in every cell
+ * covered by its bounding box, so a query only needs to look at the cells covered by the query box. Items are
+ * compared by identity and query results are always returned in insertion order, which keeps algorithms built on top
+ * of the grid deterministic. Queries do not modify the grid, so a grid may be queried from several threads as long as
+ * no thread is inserting or removing items at the same time.
+ *
+ * @param <T> type of item stored in the grid
+ */
+public class SpatialGrid<T> {
+    // items covering more cells than this are kept in a separate list checked by every query
+    private static final int MAX_CELLS_PER_ITEM = 64;
+
+    private static class Entry<T> {
+        private final T item;
+        private final long sequence;
+        private double minX;
+        private double minY;
+        private double maxX;
+        private double maxY;
+        private boolean oversized;
+
+        private Entry(T item, long sequence) {
+            this.item = item;
+            this.sequence = sequence;
+        }
+
+        private boolean overlaps(double minX, double minY, double maxX, double maxY) {
+            return this.minX <= maxX && minX <= this.maxX && this.minY <= maxY && minY <= this.maxY;
+        }
+    }
+
+    private final double cellSize;
+    private final double padding;
+    private final Map<Long, List<Entry<T>>> cells = new HashMap<>();
+    private final List<Entry<T>> oversizedEntries = new ArrayList<>();
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+    private long nextSequence = 0;
+
+    /**
+     * Creates an empty grid.
+     *
+     * @param cellSize width and height of each grid cell
+     * @param padding distance added on all sides of every inserted bounding box
+     */
+    public SpatialGrid(double cellSize, double padding) {
+        Preconditions.checkArgument(cellSize > 0, "cellSize must be positive");
+        Preconditions.checkArgument(padding >= 0, "padding must not be negative");
+        this.cellSize = cellSize;
+        this.padding = padding;
+    }
+
+    public SpatialGrid(double cellSize) {
+        this(cellSize, 0);
+    }
+
+    /**
+     * Suggests a cell size that spreads items evenly over an area, so each cell holds about one item.
+     *
+     * @param width width of the area covered by the items
+     * @param height height of the area covered by the items
+     * @param itemCount number of items
+     * @return positive cell size
+     */
+    public static double suggestCellSize(double width, double height, int itemCount) {
+        double cellSize = Math.max(width, height) / Math.sqrt(Math.max(itemCount, 1));
+        return (cellSize > 0 && Double.isFinite(cellSize)) ? cellSize : 1.0;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public boolean contains(T item) {
+        return entries.containsKey(item);
+    }
+
+    private int cellIndex(double coordinate) {
+        double index = Math.floor(coordinate / cellSize);
+        if (index <= Integer.MIN_VALUE) {
+            return Integer.MIN_VALUE;
+        } else if (index >= Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        } else {
+            return (int)index;
+        }
+    }
+
+    private static long cellKey(int cellX, int cellY) {
+        return ((long)cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+    private void forEachCell(double minX, double minY, double maxX, double maxY, Consumer<Long> action) {
+        int minCellX = cellIndex(minX);
+        int maxCellX = cellIndex(maxX);
+        int minCellY = cellIndex(minY);
+        int maxCellY = cellIndex(maxY);
+        for (int cellX = minCellX; cellX <= maxCellX; ++cellX) {
+            for (int cellY = minCellY; cellY <= maxCellY; ++cellY) {
+                action.accept(cellKey(cellX, cellY));
+                if (cellY == Integer.MAX_VALUE) {
+                    break;
+                }
+            }
+            if (cellX == Integer.MAX_VALUE) {
+                break;
+            }
+        }
+    }
+
+    private boolean isOversized(double minX, double minY, double maxX, double maxY) {
+        double cellsX = Math.floor(maxX / cellSize) - Math.floor(minX / cellSize) + 1;
+        double cellsY = Math.floor(maxY / cellSize) - Math.floor(minY / cellSize) + 1;
+        return !(cellsX * cellsY <= MAX_CELLS_PER_ITEM);
+    }
+
+    private void link(Entry<T> entry) {
+        entry.oversized = isOversized(entry.minX, entry.minY, entry.maxX, entry.maxY);
+        if (entry.oversized) {
+            oversizedEntries.add(entry);
+        } else {
+            forEachCell(entry.minX, entry.minY, entry.maxX, entry.maxY,
+                    key -> cells.computeIfAbsent(key, k -> new ArrayList<>()).add(entry));
+        }
+    }
+
+    private void unlink(Entry<T> entry) {
+        if (entry.oversized) {
+            oversizedEntries.remove(entry);
+        } else {
+            forEachCell(entry.minX, entry.minY, entry.maxX, entry.maxY, key -> {
+                List<Entry<T>> cell = cells.get(key);
+                if (cell != null) {
+                    cell.remove(entry);
+                    if (cell.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            });
+        }
+    }
+
+    private void setBounds(Entry<T> entry, double minX, double minY, double maxX, double maxY) {
+        entry.minX = minX - padding;
+        entry.minY = minY - padding;
+        entry.maxX = maxX + padding;
+        entry.maxY = maxY + padding;
+    }
+
+    /**
+     * Inserts an item into the grid, or updates its bounds if the item is already in the grid. Updating an item keeps
+     * its original position in the query result order.
+     *
+     * @param item item to insert
+     * @param minX minimum x coordinate of item bounding box
+     * @param minY minimum y coordinate of item bounding box
+     * @param maxX maximum x coordinate of item bounding box
+     * @param maxY maximum y coordinate of item bounding box
+     */
+    public void insert(T item, double minX, double minY, double maxX, double maxY) {
+        Entry<T> entry = entries.get(item);
+        if (entry != null) {
+            unlink(entry);
+        } else {
+            entry = new Entry<>(item, nextSequence++);
+            entries.put(item, entry);
+        }
+        setBounds(entry, minX, minY, maxX, maxY);
+        link(entry);
+    }
+
+    public void insert(T item, Rectangle2D boundingBox) {
+        insert(item, boundingBox.getMinX(), boundingBox.getMinY(), boundingBox.getMaxX(), boundingBox.getMaxY());
+    }
+
+    public boolean remove(T item) {
+        Entry<T> entry = entries.remove(item);
+        if (entry != null) {
+            unlink(entry);
+            return true;
+        }
+        return false;
+    }
+
+    public void clear() {
+        cells.clear();
+        oversizedEntries.clear();
+        entries.clear();
+    }
+
+    /**
+     * Finds all items with a bounding box that overlaps the given bounding box.
+     *
+     * @param minX minimum x coordinate of query box
+     * @param minY minimum y coordinate of query box
+     * @param maxX maximum x coordinate of query box
+     * @param maxY maximum y coordinate of query box
+     * @return overlapping items in insertion order
+     */
+    public List<T> query(double minX, double minY, double maxX, double maxY) {
+        List<Entry<T>> found = new ArrayList<>();
+        for (Entry<T> entry : oversizedEntries) {
+            if (entry.overlaps(minX, minY, maxX, maxY)) {
+                found.add(entry);
+            }
+        }
+        if (isOversized(minX, minY, maxX, maxY)) {
+            // query box covers too many cells, so checking every entry is cheaper
+            for (Entry<T> entry : entries.values()) {
+                if (!entry.oversized && entry.overlaps(minX, minY, maxX, maxY)) {
+                    found.add(entry);
+                }
+            }
+        } else {
+            forEachCell(minX, minY, maxX, maxY, key -> {
+                List<Entry<T>> cell = cells.get(key);
+                if (cell != null) {
+                    for (Entry<T> entry : cell) {
+                        if (entry.overlaps(minX, minY, maxX, maxY)) {
+                            found.add(entry);
+                        }
+                    }
+                }
+            });
+        }
+
+        // entries spanning several cells are found once per cell, so drop duplicates after sorting
+        found.sort(Comparator.comparingLong(entry -> entry.sequence));
+        List<T> result = new ArrayList<>(found.size());
+        Entry<T> prev = null;
+        for (Entry<T> entry : found) {
+            if (entry != prev) {
+                result.add(entry.item);
+                prev = entry;
+            }
+        }
+        return result;
+    }
+
+    public List<T> query(Rectangle2D boundingBox) {
+        return query(boundingBox.getMinX(), boundingBox.getMinY(), boundingBox.getMaxX(), boundingBox.getMaxY());
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Program stored in primitive columns instead of one object per line and word, for programs with millions of lines.
+ * Every word is a one byte opcode: a parameter letter, a feed rate, one of the modal codes, or a reference to a side
+ * table holding all other words, such as comments. Parameter and feed rate values are packed in a double array, and
+ * each line records where its words and values start and a bitmask of the parameter letters it contains.
+ * <p>
+ * {@link #getLines()} creates the line objects of each line when it is read, so printing and visiting the program
+ * with {@link #accept(GCodeVisitor)} should be preferred, as they do not create any objects.
+ */
+public class CompactGCodeProgram extends GCodeProgram {
+    private static final int LETTER_COUNT = 26;
+    private static final int FEED_RATE = LETTER_COUNT;
+    private static final int SIDE_WORD = FEED_RATE + 1;
+    private static final int FIRST_MODAL_WORD = SIDE_WORD + 1;
+
+    private static final GCodeWord[] MODAL_WORDS = concat(
+            MotionMode.values(), DistanceMode.values(), ArcDistanceMode.values(), FeedRateMode.values(),
+            UnitMode.values(), ProgramControl.values());
+
+    private static final Map<GCodeWord, Byte> MODAL_OPCODES = new HashMap<>();
+
+    static {
+        Preconditions.checkState(FIRST_MODAL_WORD + MODAL_WORDS.length <= 256, "too many modal words for opcodes");
+        for (int i = 0; i < MODAL_WORDS.length; ++i) {
+            MODAL_OPCODES.put(MODAL_WORDS[i], (byte)(FIRST_MODAL_WORD + i));
+        }
+    }
+
+    private static GCodeWord[] concat(GCodeWord[]... arrays) {
+        return Arrays.stream(arrays).flatMap(Arrays::stream).toArray(GCodeWord[]::new);
+    }
+
+    // one opcode per word
+    private final byte[] opcodes;
+
+    // value of every parameter and feed rate word
+    private final double[] values;
+
+    // words without an opcode, in program order
+    private final GCodeWord[] sideWords;
+
+    // index of the first word, value and side word of each line, with one extra entry marking the end of the last line
+    private final int[] wordStarts;
+    private final int[] valueStarts;
+    private final int[] sideWordStarts;
+
+    // bit (letter - 'A') is set when a line contains a parameter with that letter
+    private final int[] paramMasks;
+
+    private CompactGCodeProgram(Builder builder) {
+        int lineCount = builder.lineCount;
+        this.opcodes = Arrays.copyOf(builder.opcodes, builder.wordCount);
+        this.values = Arrays.copyOf(builder.values, builder.valueCount);
+        this.sideWords = builder.sideWords.toArray(GCodeWord[]::new);
+        this.wordStarts = Arrays.copyOf(builder.wordStarts, lineCount + 1);
+        this.valueStarts = Arrays.copyOf(builder.valueStarts, lineCount + 1);
+        this.sideWordStarts = Arrays.copyOf(builder.sideWordStarts, lineCount + 1);
+        this.paramMasks = Arrays.copyOf(builder.paramMasks, lineCount);
+    }
+
+    /**
+     * Collects lines into columns, either from line objects or as a {@link GCodeVisitor} receiving the events of a
+     * {@link GCodeParser}. A builder builds one program.
+     */
+    public static class Builder implements GCodeVisitor {
+        private byte[] opcodes = new byte[1024];
+        private int wordCount = 0;
+        private double[] values = new double[1024];
+        private int valueCount = 0;
+        private final List<GCodeWord> sideWords = new ArrayList<>();
+        private int[] wordStarts = new int[256];
+        private int[] valueStarts = new int[256];
+        private int[] sideWordStarts = new int[256];
+        private int[] paramMasks = new int[256];
+        private int lineCount = 0;
+        private int paramMask = 0;
+
+        private void addOpcode(int opcode) {
+            if (wordCount == opcodes.length) {
+                opcodes = Arrays.copyOf(opcodes, opcodes.length * 2);
+            }
+            opcodes[wordCount++] = (byte)opcode;
+        }
+
+        private void addValue(double value) {
+            if (valueCount == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[valueCount++] = value;
+        }
+
+        @Override
+        public void param(char letter, double value) {
+            letter = Character.toUpperCase(letter);
+            Preconditions.checkArgument(letter >= 'A' && letter <= 'Z', "invalid parameter letter: %s", letter);
+            if (letter == 'F' && value == Math.rint(value) && Math.abs(value) <= Integer.MAX_VALUE) {
+                // integer feed rates are printed without decimals
+                addOpcode(FEED_RATE);
+            } else {
+                addOpcode(letter - 'A');
+                paramMask |= 1 << (letter - 'A');
+            }
+            addValue(value);
+        }
+
+        @Override
+        public void word(GCodeWord word) {
+            if (word instanceof GCodeParam) {
+                GCodeParam param = (GCodeParam)word;
+                addOpcode(param.getLetter() - 'A');
+                addValue(param.getValue());
+                paramMask |= 1 << (param.getLetter() - 'A');
+            } else if (word instanceof FeedRate) {
+                addOpcode(FEED_RATE);
+                addValue(((FeedRate)word).getRate());
+            } else {
+                Byte opcode = MODAL_OPCODES.get(word);
+                if (opcode != null) {
+                    addOpcode(opcode & 0xff);
+                } else {
+                    addOpcode(SIDE_WORD);
+                    sideWords.add(word);
+                }
+            }
+        }
+
+        @Override
+        public void endLine(long lineNumber) {
+            endLine();
+        }
+
+        public Builder endLine() {
+            if (lineCount + 1 == wordStarts.length) {
+                int size = wordStarts.length * 2;
+                wordStarts = Arrays.copyOf(wordStarts, size);
+                valueStarts = Arrays.copyOf(valueStarts, size);
+                sideWordStarts = Arrays.copyOf(sideWordStarts, size);
+                paramMasks = Arrays.copyOf(paramMasks, size);
+            }
+            paramMasks[lineCount] = paramMask;
+            ++lineCount;
+            wordStarts[lineCount] = wordCount;
+            valueStarts[lineCount] = valueCount;
+            sideWordStarts[lineCount] = sideWords.size();
+            paramMask = 0;
+            return this;
+        }
+
+        public Builder addLine(GCodeLine line) {
+            for (GCodeWord word : line.getWords()) {
+                word(word);
+            }
+            return endLine();
+        }
+
+        public CompactGCodeProgram build() {
+            Preconditions.checkState(wordCount == wordStarts[lineCount], "last line has not ended");
+            return new CompactGCodeProgram(this);
+        }
+    }
+
+    public static CompactGCodeProgram of(Collection<GCodeLine> lines) {
+        Builder builder = new Builder();
+        for (GCodeLine line : lines) {
+            builder.addLine(line);
+        }
+        return builder.build();
+    }
+
+    public static CompactGCodeProgram of(GCodeProgram program) {
+        if (program instanceof CompactGCodeProgram) {
+            return (CompactGCodeProgram)program;
+        }
+        Builder builder = new Builder();
+        program.accept(builder);
+        return builder.build();
+    }
+
+    /**
+     * Reads a program with {@link GCodeParser} directly into columns.
+     *
+     * @param in stream to read GCode text from
+     * @return program with one line for every line of text
+     * @throws IOException if reading fails or the text is not valid GCode
+     */
+    public static CompactGCodeProgram load(InputStream in) throws IOException {
+        Builder builder = new Builder();
+        new GCodeParser(builder).parse(in);
+        return builder.build();
+    }
+
+    public static CompactGCodeProgram load(Path path) throws IOException {
+        Builder builder = new Builder();
+        new GCodeParser(builder).parse(path);
+        return builder.build();
+    }
+
+    @Override
+    public int getLineCount() {
+        return paramMasks.length;
+    }
+
+    /**
+     * Checks which parameters a line contains without reading its words.
+     *
+     * @param index zero-based line index
+     * @return bitmask with bit (letter - 'A') set for every parameter letter in the line
+     */
+    public int getParamMask(int index) {
+        return paramMasks[index];
+    }
+
+    private GCodeLine createLine(int index) {
+        int valueIndex = valueStarts[index];
+        int sideWordIndex = sideWordStarts[index];
+        GCodeWord[] words = new GCodeWord[wordStarts[index + 1] - wordStarts[index]];
+        for (int i = 0, wordIndex = wordStarts[index]; i < words.length; ++i, ++wordIndex) {
+            int opcode = opcodes[wordIndex] & 0xff;
+            if (opcode < LETTER_COUNT) {
+                words[i] = GCodeParam.of((char)('A' + opcode), values[valueIndex++]);
+            } else if (opcode == FEED_RATE) {
+                words[i] = new FeedRate((int)values[valueIndex++]);
+            } else if (opcode == SIDE_WORD) {
+                words[i] = sideWords[sideWordIndex++];
+            } else {
+                words[i] = MODAL_WORDS[opcode - FIRST_MODAL_WORD];
+            }
+        }
+        return new GCodeLine(words);
+    }
+
+    private class LineList extends AbstractList<GCodeLine> implements RandomAccess {
+        @Override
+        public GCodeLine get(int index) {
+            return createLine(index);
+        }
+
+        @Override
+        public int size() {
+            return getLineCount();
+        }
+    }
+
+    @Override
+    public List<GCodeLine> getLines() {
+        return new LineList();
+    }
+
+    @Override
+    protected void appendLine(int index, StringBuilder out, CoordinateFormat format) {
+        int valueIndex = valueStarts[index];
+        int sideWordIndex = sideWordStarts[index];
+        for (int wordIndex = wordStarts[index]; wordIndex < wordStarts[index + 1]; ++wordIndex) {
+            if (wordIndex > wordStarts[index]) {
+                out.append(' ');
+            }
+            int opcode = opcodes[wordIndex] & 0xff;
+            if (opcode < LETTER_COUNT) {
+                format.appendParam(out, (char)('A' + opcode), values[valueIndex++]);
+            } else if (opcode == FEED_RATE) {
+                out.append('F').append((int)values[valueIndex++]);
+            } else if (opcode == SIDE_WORD) {
+                sideWords[sideWordIndex++].appendGCode(out, format);
+            } else {
+                MODAL_WORDS[opcode - FIRST_MODAL_WORD].appendGCode(out, format);
+            }
+        }
+    }
+
+    @Override
+    public void accept(GCodeVisitor visitor) {
+        int valueIndex = 0;
+        int sideWordIndex = 0;
+        int wordIndex = 0;
+        for (int line = 0; line < getLineCount(); ++line) {
+            for (; wordIndex < wordStarts[line + 1]; ++wordIndex) {
+                int opcode = opcodes[wordIndex] & 0xff;
+                if (opcode < LETTER_COUNT) {
+                    visitor.param((char)('A' + opcode), values[valueIndex++]);
+                } else if (opcode == FEED_RATE) {
+                    visitor.param('F', values[valueIndex++]);
+                } else if (opcode == SIDE_WORD) {
+                    visitor.word(sideWords[sideWordIndex++]);
+                } else {
+                    visitor.word(MODAL_WORDS[opcode - FIRST_MODAL_WORD]);
+                }
+            }
+            visitor.endLine(line + 1);
+        }
+    }
+}
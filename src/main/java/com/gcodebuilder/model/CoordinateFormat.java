@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Formats GCode parameter values as fixed-point decimals appended to a {@link StringBuilder} without allocating
+ * any objects. Values are rounded exactly like {@code String.format("%.4f", value)}: half-up rounding of the
+ * shortest decimal representation of the value. The rare values that fall within a few ulps of a rounding tie,
+ * or that are too large for the fast path, are formatted with {@link String#format} to guarantee identical output.
+ *
+ * Instances are immutable; use {@link #withPrecision(char, int)} and {@link #withStripTrailingZeros(boolean)} to
+ * derive new formats.
+ */
+public class CoordinateFormat {
+    public static final int DEFAULT_PRECISION = 4;
+    public static final int MAX_PRECISION = 9;
+
+    public static final CoordinateFormat DEFAULT = new CoordinateFormat();
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+
+    // scaled values must be well below 2^53 so the fraction and its error bound are meaningful
+    private static final double MAX_FAST_SCALED_VALUE = 1e15;
+
+    // uncertainty of the scaled value in ulps: rounding of the multiplication plus shortest representation error
+    private static final double TIE_ULPS = 4;
+
+    private static final int LETTER_COUNT = 26;
+
+    private final int[] precisions;
+    private final boolean stripTrailingZeros;
+
+    private CoordinateFormat() {
+        this.precisions = new int[LETTER_COUNT];
+        Arrays.fill(precisions, DEFAULT_PRECISION);
+        this.stripTrailingZeros = false;
+    }
+
+    private CoordinateFormat(int[] precisions, boolean stripTrailingZeros) {
+        this.precisions = precisions;
+        this.stripTrailingZeros = stripTrailingZeros;
+    }
+
+    private static int letterIndex(char letter) {
+        int index = Character.toUpperCase(letter) - 'A';
+        Preconditions.checkArgument(index >= 0 && index < LETTER_COUNT, "invalid parameter letter: %s", letter);
+        return index;
+    }
+
+    private static void checkPrecision(int precision) {
+        Preconditions.checkArgument(precision >= 0 && precision <= MAX_PRECISION,
+                "precision must be between 0 and %s", MAX_PRECISION);
+    }
+
+    public int getPrecision(char letter) {
+        return precisions[letterIndex(letter)];
+    }
+
+    public boolean isStripTrailingZeros() {
+        return stripTrailingZeros;
+    }
+
+    public CoordinateFormat withPrecision(char letter, int precision) {
+        checkPrecision(precision);
+        int[] updated = Arrays.copyOf(precisions, LETTER_COUNT);
+        updated[letterIndex(letter)] = precision;
+        return new CoordinateFormat(updated, stripTrailingZeros);
+    }
+
+    public CoordinateFormat withPrecision(int precision) {
+        checkPrecision(precision);
+        int[] updated = new int[LETTER_COUNT];
+        Arrays.fill(updated, precision);
+        return new CoordinateFormat(updated, stripTrailingZeros);
+    }
+
+    public CoordinateFormat withStripTrailingZeros(boolean stripTrailingZeros) {
+        return new CoordinateFormat(precisions, stripTrailingZeros);
+    }
+
+    public void appendParam(StringBuilder out, char letter, double value) {
+        out.append(Character.toUpperCase(letter));
+        appendValue(out, value, getPrecision(letter));
+    }
+
+    public String formatParam(char letter, double value) {
+        StringBuilder out = new StringBuilder();
+        appendParam(out, letter, value);
+        return out.toString();
+    }
+
+    /**
+     * Appends value rounded to the given number of decimal places.
+     *
+     * @param out text to append to
+     * @param value value to format
+     * @param precision number of digits after the decimal point
+     */
+    public void appendValue(StringBuilder out, double value, int precision) {
+        checkPrecision(precision);
+        double scaled = Math.abs(value) * POWERS_OF_TEN[precision];
+        if (!(scaled < MAX_FAST_SCALED_VALUE)) {
+            // too large for the fast path (or not a number)
+            appendFormattedValue(out, value, precision);
+            return;
+        }
+
+        // exact since whole <= scaled < whole + 1
+        long whole = (long)scaled;
+        double fraction = scaled - whole;
+        if (Math.abs(fraction - 0.5) <= TIE_ULPS * Math.ulp(scaled)) {
+            // too close to call, so let Formatter decide using the shortest decimal representation
+            appendFormattedValue(out, value, precision);
+            return;
+        }
+        long rounded = (fraction > 0.5) ? whole + 1 : whole;
+
+        long unit = POWERS_OF_TEN[precision];
+        long integerPart = rounded / unit;
+        long fractionPart = rounded % unit;
+        int fractionDigits = precision;
+        if (stripTrailingZeros) {
+            while (fractionDigits > 0 && fractionPart % 10 == 0) {
+                fractionPart /= 10;
+                --fractionDigits;
+            }
+        }
+
+        // Formatter keeps the sign of negative values that round to zero, including -0.0
+        boolean negative = value < 0 || (value == 0 && 1 / value < 0);
+        if (negative && !(stripTrailingZeros && rounded == 0)) {
+            out.append('-');
+        }
+        out.append(integerPart);
+        if (fractionDigits > 0) {
+            out.append('.');
+            for (int digit = fractionDigits - 1; digit > 0 && fractionPart < POWERS_OF_TEN[digit]; --digit) {
+                out.append('0');
+            }
+            out.append(fractionPart);
+        }
+    }
+
+    private void appendFormattedValue(StringBuilder out, double value, int precision) {
+        String formatted = String.format(Locale.ROOT, "%." + precision + "f", value);
+        if (stripTrailingZeros && formatted.indexOf('.') >= 0) {
+            int end = formatted.length();
+            while (formatted.charAt(end - 1) == '0') {
+                --end;
+            }
+            if (formatted.charAt(end - 1) == '.') {
+                --end;
+            }
+            formatted = formatted.substring(0, end);
+            if (formatted.equals("-0")) {
+                formatted = "0";
+            }
+        }
+        out.append(formatted);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public enum DepthPassMode {
+    /**
+     * Write the toolpaths again for every depth pass, which every controller supports.
+     */
+    REPEAT_TOOLPATHS(null),
+
+    /**
+     * Write the toolpaths once as a LinuxCNC O-word subroutine called for every depth pass.
+     */
+    LINUXCNC_SUBROUTINE(SubroutineDialect.LINUXCNC),
+
+    /**
+     * Write the toolpaths once as a Fanuc style subprogram called with M98 for every depth pass.
+     */
+    FANUC_SUBROUTINE(SubroutineDialect.FANUC);
+
+    /**
+     * Dialect of the subroutine the toolpaths are written in, or null to repeat the toolpaths.
+     */
+    @Getter
+    private final SubroutineDialect subroutineDialect;
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+public enum DrillOrder {
+    /**
+     * Drill the points of each shape in the order of the recipe, with shapes in drawing order.
+     */
+    SHAPE_ORDER,
+
+    /**
+     * Drill the points of all shapes drilled with the recipe together, where the first of those shapes is in the
+     * drawing, in an order that shortens the rapid moves between holes.
+     */
+    OPTIMIZED
+}
@@ -26,4 +26,9 @@ public class FeedRate implements GCodeWord {
     public String toGCode() {
         return String.format("%c%d", 'F', rate);
     }
+
+    @Override
+    public void appendGCode(StringBuilder out, CoordinateFormat format) {
+        out.append('F').append(rate);
+    }
 }
@@ -0,0 +1,739 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import com.google.common.base.Preconditions;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Estimates the cut length, rapid length, run time and XYZ envelope of a GCode program by following its modal state
+ * one line at a time. The analyzer is a {@link GCodeVisitor}, so it can run directly on a {@link GCodeParser} to
+ * check programs of any size in constant memory, apart from the subroutine bodies it keeps. Programs are best
+ * analyzed with {@link #analyze(Path)} or {@link #analyze(GCodeProgram)}, which read programs a second time when
+ * subroutines are called before they are defined, as Fanuc subprograms follow the end of the program.
+ * <p>
+ * Every move is timed as accelerating from rest to its feed rate or the rapid rate and decelerating to rest again,
+ * which overestimates programs that the controller blends into continuous motion. Moves are also totaled for each
+ * recipe named in a "recipe:" comment, as written by the drawing generator. Subroutine bodies are run again at every
+ * call with the values passed to the call, but other O-word control flow is not followed and is rejected.
+ */
+public class GCodeAnalyzer implements GCodeVisitor {
+    public static final double DEFAULT_RAPID_RATE_INCH = 200;
+    public static final double DEFAULT_ACCELERATION_INCH = 10;
+
+    private static final String RECIPE_PREFIX = "recipe:";
+
+    // calls nested deeper than this are taken to be recursive
+    private static final int MAX_CALL_DEPTH = 64;
+
+    private static final Pattern CALL_VALUE = Pattern.compile("\\[([^\\]]*)\\]");
+
+    @Data
+    public static class Totals {
+        private double cutLength;
+        private double rapidLength;
+
+        // seconds
+        private double cutTime;
+        private double rapidTime;
+
+        private long moveCount;
+
+        public double getTime() {
+            return cutTime + rapidTime;
+        }
+
+        private void addMove(boolean rapid, double length, double time) {
+            if (rapid) {
+                rapidLength += length;
+                rapidTime += time;
+            } else {
+                cutLength += length;
+                cutTime += time;
+            }
+            ++moveCount;
+        }
+    }
+
+    // parameter, word or end of line in a subroutine body, read again at every call
+    private static class BodyEvent {
+        private final char letter;
+        private final double value;
+        private final GCodeWord word;
+
+        private BodyEvent(char letter, double value, GCodeWord word) {
+            this.letter = letter;
+            this.value = value;
+            this.word = word;
+        }
+    }
+
+    private static final BodyEvent END_LINE = new BodyEvent('\0', 0, null);
+
+    /**
+     * Unit of all lengths, rates and results.
+     */
+    @Getter
+    private final LengthUnit unit;
+
+    /**
+     * Rate of rapid moves in units per minute.
+     */
+    @Getter @Setter
+    private double rapidRate;
+
+    /**
+     * Acceleration and deceleration of every move in units per second squared, or zero to ignore acceleration.
+     */
+    @Getter @Setter
+    private double acceleration;
+
+    @Getter
+    private Totals totals = new Totals();
+
+    // totals of each recipe in the order the recipes appear in the program
+    private final Map<String, Totals> recipeTotals = new LinkedHashMap<>();
+    private Totals recipe;
+
+    @Getter
+    private long lineCount;
+
+    @Getter
+    private long subroutineCallCount;
+
+    /**
+     * Number of calls to subroutines that were not defined when they were called, and could not be followed.
+     */
+    @Getter
+    private long undefinedCallCount;
+
+    // modal state
+    private MotionMode motionMode;
+    private DistanceMode distanceMode = DistanceMode.ABSOLUTE;
+    private ArcDistanceMode arcDistanceMode = ArcDistanceMode.INCREMENTAL;
+    private FeedRateMode feedRateMode = FeedRateMode.UNITS_PER_MIN;
+    private LengthUnitConverter converter;
+    private double feedRate = Double.NaN;
+    private double cycleZ = Double.NaN;
+    private double cycleR = Double.NaN;
+
+    // current position in analyzer units, NaN until an axis has been moved to a known position
+    private double x = Double.NaN;
+    private double y = Double.NaN;
+    private double z = Double.NaN;
+
+    // bounding envelope of all known positions
+    private final double[] min = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+    private final double[] max = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+    // parameters of the current line, indexed by letter with a bit set in paramMask for each parameter present
+    private final double[] params = new double[26];
+    private int paramMask;
+    private int variableMask;
+
+    // lines inside subroutine definitions are kept to be run at every call, lines after the end of the program are
+    // only read for the subroutines they define
+    private final Map<String, List<BodyEvent>> subroutines = new HashMap<>();
+    private List<BodyEvent> definition;
+    private boolean programEnded;
+
+    // values of the numbered variables assigned so far
+    private final Map<Integer, Double> variables = new HashMap<>();
+
+    // subroutine called by the current line, run once the line has moved
+    private String callName;
+    private double[] callValues;
+    private int callRepeat;
+    private int callDepth;
+
+    public GCodeAnalyzer(LengthUnit unit) {
+        this.unit = Preconditions.checkNotNull(unit);
+        LengthUnitConverter fromInch = UnitMode.INCH.getConverterTo(unit.getMode());
+        this.rapidRate = fromInch.convert(DEFAULT_RAPID_RATE_INCH);
+        this.acceleration = fromInch.convert(DEFAULT_ACCELERATION_INCH);
+        this.converter = new LengthUnitConverter(1);
+    }
+
+    public Map<String, Totals> getRecipeTotals() {
+        return Collections.unmodifiableMap(recipeTotals);
+    }
+
+    public boolean hasEnvelope() {
+        return min[0] <= max[0] || min[1] <= max[1] || min[2] <= max[2];
+    }
+
+    public double getMinX() {
+        return min[0];
+    }
+
+    public double getMinY() {
+        return min[1];
+    }
+
+    public double getMinZ() {
+        return min[2];
+    }
+
+    public double getMaxX() {
+        return max[0];
+    }
+
+    public double getMaxY() {
+        return max[1];
+    }
+
+    public double getMaxZ() {
+        return max[2];
+    }
+
+    /**
+     * Analyzes all lines of a program held in memory.
+     *
+     * @param program program to analyze
+     * @return this analyzer
+     */
+    public GCodeAnalyzer analyze(GCodeProgram program) {
+        program.accept(this);
+        if (undefinedCallCount > 0) {
+            reset();
+            program.accept(this);
+        }
+        return this;
+    }
+
+    /**
+     * Analyzes all lines of a program file.
+     *
+     * @param path program file to analyze
+     * @return this analyzer
+     * @throws IOException if the file cannot be read or parsed
+     */
+    public GCodeAnalyzer analyze(Path path) throws IOException {
+        new GCodeParser(this).parse(path);
+        if (undefinedCallCount > 0) {
+            reset();
+            new GCodeParser(this).parse(path);
+        }
+        return this;
+    }
+
+    // forgets everything read so far except the subroutine definitions
+    private void reset() {
+        totals = new Totals();
+        recipeTotals.clear();
+        recipe = null;
+        lineCount = 0;
+        subroutineCallCount = 0;
+        undefinedCallCount = 0;
+        motionMode = null;
+        distanceMode = DistanceMode.ABSOLUTE;
+        arcDistanceMode = ArcDistanceMode.INCREMENTAL;
+        feedRateMode = FeedRateMode.UNITS_PER_MIN;
+        converter = new LengthUnitConverter(1);
+        feedRate = Double.NaN;
+        cycleZ = Double.NaN;
+        cycleR = Double.NaN;
+        x = Double.NaN;
+        y = Double.NaN;
+        z = Double.NaN;
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        paramMask = 0;
+        variableMask = 0;
+        definition = null;
+        programEnded = false;
+        variables.clear();
+        callName = null;
+        callValues = null;
+    }
+
+    @Override
+    public void param(char letter, double value) {
+        if (definition != null) {
+            definition.add(new BodyEvent(letter, value, null));
+        } else if (letter == 'F') {
+            feedRate = value;
+        } else if (letter >= 'A' && letter <= 'Z') {
+            params[letter - 'A'] = value;
+            paramMask |= 1 << (letter - 'A');
+        }
+    }
+
+    @Override
+    public void word(GCodeWord word) {
+        if (word instanceof GCodeSubroutineWord) {
+            subroutineWord((GCodeSubroutineWord)word);
+        } else if (word instanceof GCodeRawText && isOWord(((GCodeRawText)word).getText())) {
+            oWord(word, ((GCodeRawText)word).getText().toLowerCase(Locale.ROOT));
+        } else if (word == ProgramControl.RETURN_FROM_SUBPROGRAM && definition != null) {
+            definition = null;
+        } else if (definition != null) {
+            definition.add(new BodyEvent('\0', 0, word));
+        } else if (!programEnded) {
+            runWord(word);
+        }
+    }
+
+    private void runWord(GCodeWord word) {
+        if (word instanceof MotionMode) {
+            motionMode = (MotionMode)word;
+        } else if (word instanceof DistanceMode) {
+            distanceMode = (DistanceMode)word;
+        } else if (word instanceof ArcDistanceMode) {
+            arcDistanceMode = (ArcDistanceMode)word;
+        } else if (word instanceof FeedRateMode) {
+            feedRateMode = (FeedRateMode)word;
+        } else if (word instanceof UnitMode) {
+            converter = ((UnitMode)word).getConverterTo(unit.getMode());
+        } else if (word instanceof FeedRate) {
+            feedRate = ((FeedRate)word).getRate();
+        } else if (word instanceof GCodeVariableParam) {
+            GCodeVariableParam variableParam = (GCodeVariableParam)word;
+            Double value = variables.get(variableParam.getVariable().getNumber());
+            char letter = variableParam.getLetter();
+            if (value != null) {
+                param(letter, value);
+            } else if (letter >= 'A' && letter <= 'Z') {
+                // value is only known when the program runs
+                variableMask |= 1 << (letter - 'A');
+            }
+        } else if (word instanceof GCodeVariableAssignment) {
+            GCodeVariableAssignment assignment = (GCodeVariableAssignment)word;
+            variables.put(assignment.getVariable().getNumber(), assignment.getValue());
+        } else if (word instanceof GCodeComment) {
+            startRecipe(((GCodeComment)word).getText());
+        } else if (word == ProgramControl.END_PROGRAM) {
+            programEnded = true;
+        } else if (word == ProgramControl.CALL_SUBPROGRAM) {
+            // subprogram number and repeat count follow as P and L
+            setCall("", new double[0]);
+        } else if (word instanceof GCodeCommand && callName != null) {
+            GCodeCommand command = (GCodeCommand)word;
+            if (command.getLetter() == 'P') {
+                callName = String.valueOf((int)command.getNumber());
+            } else if (command.getLetter() == 'L') {
+                callRepeat = (int)command.getNumber();
+            }
+        } else if (word instanceof GCodeRawText) {
+            assignVariable(((GCodeRawText)word).getText());
+        }
+    }
+
+    private void subroutineWord(GCodeSubroutineWord word) {
+        String name = String.valueOf(word.getSubroutine().getNumber());
+        if (word.getKind() == GCodeSubroutineWord.Kind.BEGIN) {
+            beginDefinition(name);
+        } else if (word.getKind() == GCodeSubroutineWord.Kind.END) {
+            definition = null;
+        } else if (definition != null) {
+            definition.add(new BodyEvent('\0', 0, word));
+        } else if (!programEnded) {
+            setCall(name, word.getValues());
+        }
+    }
+
+    private static boolean isOWord(String text) {
+        return text.startsWith("O") || text.startsWith("o");
+    }
+
+    private void oWord(GCodeWord word, String text) {
+        String[] tokens = text.split("\\s+", 3);
+        String name = subroutineName(tokens[0].substring(1));
+        String keyword = (tokens.length > 1) ? tokens[1] : "";
+        if (keyword.equals("sub")) {
+            beginDefinition(name);
+        } else if (keyword.equals("endsub")) {
+            definition = null;
+        } else if (definition != null) {
+            definition.add(new BodyEvent('\0', 0, word));
+        } else if (programEnded) {
+            if (keyword.isEmpty()) {
+                // Fanuc subprogram after the end of the main program
+                beginDefinition(name);
+            }
+        } else if (keyword.equals("call")) {
+            setCall(name, parseCallValues(text));
+        } else if (!keyword.isEmpty() && !keyword.startsWith("(")) {
+            // a bare O-number is only the program number
+            throw new IllegalStateException(String.format("O-word control flow cannot be analyzed: %s", text));
+        }
+    }
+
+    private static String subroutineName(String number) {
+        try {
+            return String.valueOf(Integer.parseInt(number));
+        } catch (NumberFormatException ex) {
+            // LinuxCNC named subroutine
+            return number;
+        }
+    }
+
+    private static double[] parseCallValues(String text) {
+        List<Double> values = new ArrayList<>();
+        Matcher matcher = CALL_VALUE.matcher(text);
+        while (matcher.find()) {
+            values.add(parseNumber(matcher.group(1)));
+        }
+        return values.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    private static double parseNumber(String text) {
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException ex) {
+            // expressions are not evaluated
+            return Double.NaN;
+        }
+    }
+
+    private void assignVariable(String text) {
+        int equals = text.indexOf('=');
+        if (!text.startsWith("#") || equals < 0) {
+            return;
+        }
+        try {
+            int number = Integer.parseInt(text.substring(1, equals).trim());
+            double value = parseNumber(text.substring(equals + 1));
+            if (Double.isNaN(value)) {
+                variables.remove(number);
+            } else {
+                variables.put(number, value);
+            }
+        } catch (NumberFormatException ex) {
+            // named variables are not followed
+        }
+    }
+
+    private void beginDefinition(String name) {
+        definition = new ArrayList<>();
+        subroutines.put(name, definition);
+    }
+
+    private void setCall(String name, double[] values) {
+        callName = name;
+        callValues = values;
+        callRepeat = 1;
+    }
+
+    private void call(String name, double[] values, int repeat) {
+        ++subroutineCallCount;
+        List<BodyEvent> body = subroutines.get(name);
+        if (body == null) {
+            ++undefinedCallCount;
+            return;
+        }
+        Preconditions.checkState(callDepth < MAX_CALL_DEPTH, "subroutine %s is called recursively", name);
+
+        // LinuxCNC passes call values as #1, #2 and so on for the length of the call
+        Double[] saved = new Double[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            saved[i] = variables.put(i + 1, values[i]);
+        }
+        ++callDepth;
+        try {
+            for (int i = 0; i < repeat; ++i) {
+                for (BodyEvent event : body) {
+                    if (event.word != null) {
+                        word(event.word);
+                    } else if (event == END_LINE) {
+                        runLine();
+                    } else {
+                        param(event.letter, event.value);
+                    }
+                }
+            }
+        } finally {
+            --callDepth;
+            for (int i = 0; i < values.length; ++i) {
+                if (saved[i] != null) {
+                    variables.put(i + 1, saved[i]);
+                } else {
+                    variables.remove(i + 1);
+                }
+            }
+        }
+    }
+
+    private void startRecipe(String comment) {
+        int start = comment.indexOf(RECIPE_PREFIX);
+        if (start >= 0) {
+            String name = comment.substring(start + RECIPE_PREFIX.length());
+            int end = name.indexOf(" - ");
+            if (end >= 0) {
+                name = name.substring(0, end);
+            }
+            recipe = recipeTotals.computeIfAbsent(name, key -> new Totals());
+        }
+    }
+
+    @Override
+    public void endLine(long lineNumber) {
+        lineCount = lineNumber;
+        runLine();
+    }
+
+    private void runLine() {
+        if (definition != null) {
+            definition.add(END_LINE);
+            return;
+        }
+        if (!programEnded && motionMode != null && hasAxis()) {
+            move();
+        }
+        paramMask = 0;
+        variableMask = 0;
+        if (callName != null) {
+            String name = callName;
+            callName = null;
+            call(name, callValues, callRepeat);
+        }
+    }
+
+    private boolean has(char letter) {
+        return (paramMask & (1 << (letter - 'A'))) != 0;
+    }
+
+    private boolean hasVariable(char letter) {
+        return (variableMask & (1 << (letter - 'A'))) != 0;
+    }
+
+    private boolean hasAxis() {
+        return has('X') || has('Y') || has('Z') || hasVariable('X') || hasVariable('Y') || hasVariable('Z');
+    }
+
+    private double length(char letter) {
+        return converter.convert(params[letter - 'A']);
+    }
+
+    private double target(char letter, double current) {
+        if (hasVariable(letter)) {
+            return Double.NaN;
+        } else if (!has(letter)) {
+            return current;
+        } else if (distanceMode == DistanceMode.INCREMENTAL) {
+            return current + length(letter);
+        } else {
+            return length(letter);
+        }
+    }
+
+    private static double delta(double from, double to) {
+        return (Double.isNaN(from) || Double.isNaN(to)) ? 0 : to - from;
+    }
+
+    private void include(int axis, double value) {
+        if (!Double.isNaN(value)) {
+            min[axis] = Math.min(min[axis], value);
+            max[axis] = Math.max(max[axis], value);
+        }
+    }
+
+    private void include(double toX, double toY, double toZ) {
+        include(0, toX);
+        include(1, toY);
+        include(2, toZ);
+    }
+
+    private double moveTime(double length, double ratePerMinute) {
+        if (length <= 0 || !(ratePerMinute > 0)) {
+            return 0;
+        }
+        double speed = ratePerMinute / 60;
+        if (acceleration <= 0) {
+            return length / speed;
+        }
+        // accelerate to full speed and decelerate again, or reach the middle of the move first
+        if (length >= speed * speed / acceleration) {
+            return length / speed + speed / acceleration;
+        } else {
+            return 2 * Math.sqrt(length / acceleration);
+        }
+    }
+
+    private void addMove(boolean rapid, double length) {
+        double time;
+        if (rapid) {
+            time = moveTime(length, rapidRate);
+        } else if (feedRateMode == FeedRateMode.INVERSE_TIME) {
+            time = (feedRate > 0) ? 60 / feedRate : 0;
+        } else {
+            time = moveTime(length, converter.convert(feedRate));
+        }
+        totals.addMove(rapid, length, time);
+        if (recipe != null) {
+            recipe.addMove(rapid, length, time);
+        }
+    }
+
+    private void linearMove(boolean rapid, double toX, double toY, double toZ) {
+        double dx = delta(x, toX);
+        double dy = delta(y, toY);
+        double dz = delta(z, toZ);
+        addMove(rapid, Math.sqrt(dx * dx + dy * dy + dz * dz));
+        include(toX, toY, toZ);
+        x = toX;
+        y = toY;
+        z = toZ;
+    }
+
+    private void move() {
+        double toX = target('X', x);
+        double toY = target('Y', y);
+        double toZ = target('Z', z);
+        switch (motionMode) {
+            case RAPID_LINEAR:
+                linearMove(true, toX, toY, toZ);
+                break;
+            case LINEAR:
+                linearMove(false, toX, toY, toZ);
+                break;
+            case CW_ARC:
+            case CCW_ARC:
+                arcMove(motionMode == MotionMode.CW_ARC, toX, toY, toZ);
+                break;
+            case DRILL_CYCLE:
+            case PECK_DRILL_CYCLE:
+                drillCycle(toX, toY);
+                break;
+            case CANCEL_CYCLE:
+                break;
+        }
+    }
+
+    private void arcMove(boolean clockwise, double toX, double toY, double toZ) {
+        if (Double.isNaN(x) || Double.isNaN(y) || Double.isNaN(toX) || Double.isNaN(toY)) {
+            // center can't be found without both end points
+            linearMove(false, toX, toY, toZ);
+            return;
+        }
+
+        double centerX;
+        double centerY;
+        if (has('R')) {
+            double radius = length('R');
+            double chordX = toX - x;
+            double chordY = toY - y;
+            double chord = Math.hypot(chordX, chordY);
+            double offset = Math.sqrt(Math.max(0, radius * radius - chord * chord / 4));
+            // center is left of the chord for counterclockwise arcs up to half a circle
+            double side = ((radius > 0) != clockwise) ? 1 : -1;
+            centerX = x + chordX / 2 - side * offset * chordY / chord;
+            centerY = y + chordY / 2 + side * offset * chordX / chord;
+        } else if (arcDistanceMode == ArcDistanceMode.INCREMENTAL) {
+            centerX = x + (has('I') ? length('I') : 0);
+            centerY = y + (has('J') ? length('J') : 0);
+        } else {
+            centerX = has('I') ? length('I') : 0;
+            centerY = has('J') ? length('J') : 0;
+        }
+
+        double radius = Math.hypot(x - centerX, y - centerY);
+        double startAngle = Math.atan2(y - centerY, x - centerX);
+        double sweep = Math.atan2(toY - centerY, toX - centerX) - startAngle;
+        if (clockwise) {
+            sweep = -sweep;
+        }
+        sweep = Math.IEEEremainder(sweep, 2 * Math.PI);
+        if (sweep <= 0) {
+            // an arc that ends where it starts is a full circle
+            sweep += 2 * Math.PI;
+        }
+
+        double arcLength = radius * sweep;
+        double dz = delta(z, toZ);
+        addMove(false, Math.sqrt(arcLength * arcLength + dz * dz));
+
+        // envelope includes every axis crossing passed by the arc
+        for (int quadrant = 0; quadrant < 4; ++quadrant) {
+            double angle = quadrant * Math.PI / 2;
+            double passed = (clockwise ? startAngle - angle : angle - startAngle);
+            passed -= Math.floor(passed / (2 * Math.PI)) * 2 * Math.PI;
+            if (passed <= sweep) {
+                include(0, centerX + radius * Math.cos(angle));
+                include(1, centerY + radius * Math.sin(angle));
+            }
+        }
+        include(toX, toY, toZ);
+        x = toX;
+        y = toY;
+        z = toZ;
+    }
+
+    private void drillCycle(double toX, double toY) {
+        if (has('Z') || hasVariable('Z')) {
+            cycleZ = hasVariable('Z') ? Double.NaN : length('Z');
+        }
+        if (has('R')) {
+            cycleR = length('R');
+        }
+
+        // rapid over the hole and down to the retract plane, drill, and retract above the retract plane
+        double retractZ = Double.isNaN(z) ? cycleR : Math.max(z, cycleR);
+        linearMove(true, toX, toY, z);
+        linearMove(true, toX, toY, cycleR);
+        double depth = delta(cycleR, cycleZ);
+        addMove(false, Math.abs(depth));
+        include(2, cycleZ);
+
+        double peckRapidLength = 0;
+        if (motionMode == MotionMode.PECK_DRILL_CYCLE && has('Q') && length('Q') > 0) {
+            // every peck but the last retracts to the retract plane and rapids back down
+            int pecks = (int)Math.ceil(Math.abs(depth) / length('Q'));
+            for (int peck = 1; peck < pecks; ++peck) {
+                peckRapidLength += 2 * peck * length('Q');
+            }
+        }
+        if (peckRapidLength > 0) {
+            addMove(true, peckRapidLength);
+        }
+        addMove(true, Math.abs(delta(cycleZ, retractZ)));
+        z = retractZ;
+    }
+
+    private static String formatTime(double seconds) {
+        long total = Math.round(seconds);
+        return String.format("%d:%02d:%02d", total / 3600, (total / 60) % 60, total % 60);
+    }
+
+    /**
+     * Returns a one line summary of the totals, such as "cut 12.3456 inch, rapid 3.2100 inch, time 0:04:12".
+     *
+     * @return summary text
+     * @throws IllegalStateException if the program called subroutines that could not be followed
+     */
+    public String getSummary() {
+        Preconditions.checkState(undefinedCallCount == 0,
+                "%s calls to undefined subroutines cannot be analyzed", undefinedCallCount);
+        return String.format("cut %.4f %s, rapid %.4f %s, time %s",
+                totals.getCutLength(), unit, totals.getRapidLength(), unit, formatTime(totals.getTime()));
+    }
+}
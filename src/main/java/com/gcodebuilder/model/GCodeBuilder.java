@@ -16,13 +16,51 @@
 
 package com.gcodebuilder.model;
 
+import com.google.common.base.Preconditions;
+import lombok.Data;
 import lombok.Getter;
-
+import lombok.Setter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
+/**
+ * Builds a GCode program one line at a time while suppressing modal words that would not change the machine state.
+ * By default lines are collected into a {@link GCodeProgram} returned by {@link #build()}. A builder created with
+ * a {@link Writer} or {@link OutputStream} instead writes each line to the output as soon as it ends, without
+ * creating any {@link GCodeLine} or {@link GCodeParam} objects, so programs of any size can be generated in
+ * constant memory.
+ * <p>
+ * Independent parts of a program can be generated in parallel by giving each part a builder created with
+ * {@link #fork()} and then appending the parts in order with {@link #join(GCodeBuilder)}.
+ * <p>
+ * Repeated blocks of lines can be written once as a {@link GCodeSubroutine} and called with different parameter
+ * values. Subroutines that must follow the end of the program are kept in memory until {@link #endProgram()}.
+ */
 public class GCodeBuilder {
+    // leaves lower numbers free for hand written subroutines
+    private static final int FIRST_SUBROUTINE_NUMBER = 1000;
+
+    @Data
+    private static class ModalState {
+        private final MotionMode motionMode;
+        private final UnitMode unitMode;
+        private final FeedRateMode feedRateMode;
+        private final DistanceMode distanceMode;
+        private final ArcDistanceMode arcDistanceMode;
+        private final FeedRate feedRate;
+    }
+
     @Getter
     private MotionMode motionMode;
 
@@ -41,38 +79,371 @@ public class GCodeBuilder {
     @Getter
     private FeedRate feedRate;
 
-    private List<GCodeLine> lines = new ArrayList<>();
-    private List<GCodeWord> currentLine = new ArrayList<>();
+    /**
+     * Format used to write parameter values in streaming mode. Programs built in memory keep the parameter values
+     * and are formatted when printed.
+     */
+    @Getter
+    @Setter
+    private CoordinateFormat coordinateFormat = CoordinateFormat.DEFAULT;
+
+    private final List<GCodeLine> lines;
+    private final List<GCodeWord> currentLine = new ArrayList<>();
+
+    // only used when streaming lines to out
+    private final Writer out;
+    private final StringBuilder currentLineText = new StringBuilder();
+    private char[] lineBuffer = new char[128];
+    private int currentLineWordCount = 0;
+
+    // modal state of the builder this builder was forked from
+    private ModalState forkedState;
+
+    private int nextSubroutineNumber = FIRST_SUBROUTINE_NUMBER;
+
+    // subroutine currently being defined and the modal state to return to when it ends
+    private GCodeSubroutine currentSubroutine;
+    private ModalState subroutineCallerState;
+
+    // modal state after calling each subroutine defined by this builder
+    private final Map<GCodeSubroutine, ModalState> subroutineEndStates = new IdentityHashMap<>();
+
+    // subroutines defined in a forked builder, which are numbered when joined
+    private final List<GCodeSubroutine> unnumberedSubroutines = new ArrayList<>();
+
+    // subroutines to write after the end of the program
+    private final List<GCodeSubroutine> deferredSubroutines = new ArrayList<>();
+
+    public GCodeBuilder() {
+        this.lines = new ArrayList<>();
+        this.out = null;
+    }
+
+    /**
+     * Creates a builder that writes each line to out as soon as it ends. The caller should wrap out in a
+     * {@link BufferedWriter} if it is not already buffered, and must call {@link #flush()} after the last line.
+     *
+     * @param out writer to receive GCode lines
+     */
+    public GCodeBuilder(Writer out) {
+        this.lines = null;
+        this.out = Objects.requireNonNull(out);
+    }
+
+    /**
+     * Creates a builder that writes each line to a buffered UTF-8 writer wrapping out. The caller must call
+     * {@link #flush()} after the last line.
+     *
+     * @param out stream to receive GCode lines
+     */
+    public GCodeBuilder(OutputStream out) {
+        this(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    public boolean isStreaming() {
+        return out != null;
+    }
+
+    // lines of deferred subroutines are kept in memory even when streaming
+    private boolean isWritingText() {
+        return isStreaming() && !(currentSubroutine != null && currentSubroutine.getDialect().isDeferred());
+    }
+
+    private List<GCodeLine> getTargetLines() {
+        return (currentSubroutine != null && currentSubroutine.getDialect().isDeferred())
+                ? currentSubroutine.deferredLines : lines;
+    }
+
+    private int getCurrentLineWordCount() {
+        return isWritingText() ? currentLineWordCount : currentLine.size();
+    }
+
+    private StringBuilder startWord() {
+        if (currentLineWordCount++ > 0) {
+            currentLineText.append(' ');
+        }
+        return currentLineText;
+    }
+
+    private void writeLine(StringBuilder text) {
+        try {
+            int length = text.length();
+            if (lineBuffer.length < length) {
+                lineBuffer = new char[length * 2];
+            }
+            text.getChars(0, length, lineBuffer, 0);
+            out.write(lineBuffer, 0, length);
+            out.write(System.lineSeparator());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
 
     public GCodeBuilder add(GCodeWord word) {
         if (word != null) {
-            currentLine.add(word);
+            if (isWritingText()) {
+                word.appendGCode(startWord(), coordinateFormat);
+            } else {
+                currentLine.add(word);
+            }
         }
         return this;
     }
 
+    private GCodeBuilder addParam(char letter, double value) {
+        if (isWritingText()) {
+            coordinateFormat.appendParam(startWord(), letter, value);
+            return this;
+        } else {
+            return add(GCodeParam.of(letter, value));
+        }
+    }
+
     public GCodeBuilder endLine() {
-        if (!currentLine.isEmpty()) {
-            lines.add(new GCodeLine(currentLine));
+        if (isWritingText()) {
+            if (currentLineWordCount > 0) {
+                writeLine(currentLineText);
+            }
+            currentLineText.setLength(0);
+            currentLineWordCount = 0;
+        } else {
+            if (!currentLine.isEmpty()) {
+                getTargetLines().add(new GCodeLine(currentLine));
+            }
+            currentLine.clear();
         }
-        currentLine.clear();
         return this;
     }
 
     public GCodeBuilder emptyLine() {
         endLine();
-        lines.add(new GCodeLine());
+        if (isWritingText()) {
+            writeLine(currentLineText);
+        } else {
+            getTargetLines().add(new GCodeLine());
+        }
         return this;
     }
 
-    public GCodeProgram build() {
+    private void appendLines(List<GCodeLine> newLines) {
+        if (isStreaming()) {
+            for (GCodeLine line : newLines) {
+                line.appendGCode(currentLineText, coordinateFormat);
+                writeLine(currentLineText);
+                currentLineText.setLength(0);
+            }
+        } else {
+            lines.addAll(newLines);
+        }
+    }
+
+    /**
+     * Ends the current line and flushes all lines written so far to the output of a streaming builder.
+     *
+     * @return this builder
+     */
+    public GCodeBuilder flush() {
+        endLine();
+        if (isStreaming()) {
+            try {
+                out.flush();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Ends the current line and, if any subroutines have to be written after the end of the program, ends the
+     * program with M30 followed by those subroutines. Programs without such subroutines are not given an explicit
+     * end.
+     *
+     * @return this builder
+     */
+    public GCodeBuilder endProgram() {
+        Preconditions.checkState(currentSubroutine == null, "subroutine was not ended");
         endLine();
+        if (!deferredSubroutines.isEmpty()) {
+            add(ProgramControl.END_PROGRAM).endLine();
+            for (GCodeSubroutine subroutine : deferredSubroutines) {
+                appendLines(subroutine.deferredLines);
+            }
+            deferredSubroutines.clear();
+        }
+        return this;
+    }
+
+    public GCodeProgram build() {
+        if (isStreaming()) {
+            throw new IllegalStateException("streaming builder does not keep lines to build a program");
+        }
+        endProgram();
         return new GCodeProgram(lines);
     }
 
+    private ModalState getModalState() {
+        return new ModalState(motionMode, unitMode, feedRateMode, distanceMode, arcDistanceMode, feedRate);
+    }
+
+    private void setModalState(ModalState state) {
+        this.motionMode = state.getMotionMode();
+        this.unitMode = state.getUnitMode();
+        this.feedRateMode = state.getFeedRateMode();
+        this.distanceMode = state.getDistanceMode();
+        this.arcDistanceMode = state.getArcDistanceMode();
+        this.feedRate = state.getFeedRate();
+    }
+
+    /**
+     * Creates an in-memory builder that starts from the current modal state of this builder. Lines added to the
+     * forked builder are the same lines that would be added to this builder in the same state, so the forked
+     * builder can be filled on another thread and later appended with {@link #join(GCodeBuilder)}.
+     *
+     * @return new builder with the same modal state and coordinate format as this builder
+     */
+    public GCodeBuilder fork() {
+        Preconditions.checkState(currentSubroutine == null, "can't fork a builder while defining a subroutine");
+        GCodeBuilder forked = new GCodeBuilder();
+        forked.coordinateFormat = coordinateFormat;
+        forked.forkedState = getModalState();
+        forked.setModalState(forked.forkedState);
+        return forked;
+    }
+
+    /**
+     * Checks whether the lines of a forked builder can be appended to this builder as they are, which requires this
+     * builder to be in the same modal state the forked builder started from.
+     *
+     * @param forked builder created with {@link #fork()}
+     * @return true if forked can be joined to this builder without adding modal words
+     */
+    public boolean canJoin(GCodeBuilder forked) {
+        return forked.forkedState != null && forked.forkedState.equals(getModalState());
+    }
+
+    /**
+     * Ends the current line, appends all lines of a forked builder, and continues from the modal state the forked
+     * builder ended in. If this builder has left the modal state the forked builder started from, a line of modal
+     * words returning to that state is added first, so the forked lines run the same as they would have on their own.
+     *
+     * @param forked builder created with {@link #fork()}
+     * @return this builder
+     */
+    public GCodeBuilder join(GCodeBuilder forked) {
+        Preconditions.checkArgument(forked.forkedState != null, "builder was not created by fork()");
+        Preconditions.checkState(currentSubroutine == null && forked.currentSubroutine == null,
+                "can't join builders while defining a subroutine");
+        endLine();
+        if (!canJoin(forked)) {
+            changeModalState(forked.forkedState);
+            endLine();
+        }
+        forked.endLine();
+        forked.unnumberedSubroutines.forEach(this::numberSubroutine);
+        deferredSubroutines.addAll(forked.deferredSubroutines);
+        appendLines(forked.lines);
+        setModalState(forked.getModalState());
+        return this;
+    }
+
+    // emits the words needed to continue from the given modal state, leaving modes the state has not set unset, so
+    // lines written from that state emit them before use
+    private void changeModalState(ModalState state) {
+        unitMode = (state.getUnitMode() != null) ? emitOnModeChange(unitMode, state.getUnitMode()) : null;
+        feedRateMode = (state.getFeedRateMode() != null)
+                ? emitOnModeChange(feedRateMode, state.getFeedRateMode()) : null;
+        distanceMode = (state.getDistanceMode() != null)
+                ? emitOnModeChange(distanceMode, state.getDistanceMode()) : null;
+        arcDistanceMode = (state.getArcDistanceMode() != null)
+                ? emitOnModeChange(arcDistanceMode, state.getArcDistanceMode()) : null;
+        if (state.getMotionMode() != null) {
+            motionMode(state.getMotionMode());
+        } else {
+            motionMode = null;
+        }
+        feedRate = (state.getFeedRate() != null) ? emitOnValueChange(feedRate, state.getFeedRate()) : null;
+    }
+
+    private void numberSubroutine(GCodeSubroutine subroutine) {
+        if (forkedState != null) {
+            unnumberedSubroutines.add(subroutine);
+        } else {
+            subroutine.setNumber(nextSubroutineNumber++);
+        }
+    }
+
+    /**
+     * Ends the current line and starts defining a subroutine. Following lines are added to the subroutine until
+     * {@link #endSubroutine()}, starting without a motion mode or feed rate so the subroutine can be called from any
+     * motion mode. Parameters are added to the returned subroutine before the lines that use them.
+     *
+     * @param dialect how the subroutine is written and called
+     * @return new subroutine
+     */
+    public GCodeSubroutine beginSubroutine(SubroutineDialect dialect) {
+        Preconditions.checkState(currentSubroutine == null, "subroutines can't be nested");
+        endLine();
+        GCodeSubroutine subroutine = new GCodeSubroutine(dialect);
+        numberSubroutine(subroutine);
+        subroutineCallerState = getModalState();
+        currentSubroutine = subroutine;
+        if (dialect.isDeferred()) {
+            deferredSubroutines.add(subroutine);
+        }
+        add(GCodeSubroutineWord.begin(subroutine)).endLine();
+        resetMotionMode();
+        feedRate = null;
+        return subroutine;
+    }
+
+    /**
+     * Ends the current subroutine and returns to the modal state the subroutine was started in, since defining a
+     * subroutine does not run it.
+     *
+     * @return this builder
+     */
+    public GCodeBuilder endSubroutine() {
+        Preconditions.checkState(currentSubroutine != null, "no subroutine to end");
+        endLine();
+        add(GCodeSubroutineWord.end(currentSubroutine)).endLine();
+        subroutineEndStates.put(currentSubroutine, getModalState());
+        currentSubroutine = null;
+        setModalState(subroutineCallerState);
+        subroutineCallerState = null;
+        return this;
+    }
+
+    /**
+     * Ends the current line and calls a subroutine defined by this builder, which leaves the machine in the modal
+     * state the subroutine ended in.
+     *
+     * @param subroutine subroutine to call
+     * @param values one value for each parameter of the subroutine
+     * @return this builder
+     */
+    public GCodeBuilder callSubroutine(GCodeSubroutine subroutine, double... values) {
+        ModalState endState = subroutineEndStates.get(subroutine);
+        Preconditions.checkArgument(endState != null, "subroutine was not defined by this builder");
+        List<GCodeVariable> parameters = subroutine.getParameters();
+        Preconditions.checkArgument(values.length == parameters.size(),
+                "expected %s parameter values", parameters.size());
+        endLine();
+        if (subroutine.getDialect().isCallWithValues()) {
+            add(GCodeSubroutineWord.call(subroutine, values.clone())).endLine();
+        } else {
+            for (int i = 0; i < values.length; ++i) {
+                add(new GCodeVariableAssignment(parameters.get(i), values[i])).endLine();
+            }
+            add(GCodeSubroutineWord.call(subroutine)).endLine();
+        }
+        setModalState(endState);
+        return this;
+    }
+
     public GCodeBuilder comment(String text) {
         add(new GCodeComment(text));
-        if (currentLine.size() == 1) {
+        if (getCurrentLineWordCount() == 1) {
             endLine();
         }
         return this;
@@ -135,15 +506,19 @@ public class GCodeBuilder {
     }
 
     public GCodeBuilder X(double value) {
-        return add(GCodeParam.X(value));
+        return addParam('X', value);
     }
 
     public GCodeBuilder Y(double value) {
-        return add(GCodeParam.Y(value));
+        return addParam('Y', value);
     }
 
     public GCodeBuilder Z(double value) {
-        return add(GCodeParam.Z(value));
+        return addParam('Z', value);
+    }
+
+    public GCodeBuilder Z(GCodeVariable variable) {
+        return add(new GCodeVariableParam('Z', variable));
     }
 
     public GCodeBuilder XY(double x, double y) {
@@ -155,15 +530,15 @@ public class GCodeBuilder {
     }
 
     public GCodeBuilder I(double value) {
-        return add(GCodeParam.I(value));
+        return addParam('I', value);
     }
 
     public GCodeBuilder J(double value) {
-        return add(GCodeParam.J(value));
+        return addParam('J', value);
     }
 
     public GCodeBuilder K(double value) {
-        return add(GCodeParam.K(value));
+        return addParam('K', value);
     }
 
     public GCodeBuilder IJ(double i, double j) {
@@ -173,4 +548,12 @@ public class GCodeBuilder {
     public GCodeBuilder IJK(double i, double j, double k) {
         return I(i).J(j).K(k);
     }
+
+    public GCodeBuilder R(double value) {
+        return addParam('R', value);
+    }
+
+    public GCodeBuilder Q(double value) {
+        return addParam('Q', value);
+    }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import lombok.Data;
+
+/**
+ * Code word without a model of its own, such as M3 or G17, written with as few digits as possible.
+ */
+@Data
+public class GCodeCommand implements GCodeWord {
+    private static final CoordinateFormat FORMAT = CoordinateFormat.DEFAULT.withStripTrailingZeros(true);
+
+    private final char letter;
+    private final double number;
+
+    @Override
+    public String toGCode() {
+        StringBuilder out = new StringBuilder();
+        appendGCode(out, FORMAT);
+        return out.toString();
+    }
+
+    @Override
+    public void appendGCode(StringBuilder out, CoordinateFormat format) {
+        FORMAT.appendParam(out, letter, number);
+    }
+}
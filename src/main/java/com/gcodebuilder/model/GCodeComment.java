@@ -28,4 +28,9 @@ public class GCodeComment implements GCodeWord {
     public String toGCode() {
         return String.format("( %s )", text);
     }
+
+    @Override
+    public void appendGCode(StringBuilder out, CoordinateFormat format) {
+        out.append("( ").append(text).append(" )");
+    }
 }
@@ -36,7 +36,18 @@ public class GCodeLine {
         return List.of(words);
     }
 
+    public void appendGCode(StringBuilder out, CoordinateFormat format) {
+        for (int i = 0; i < words.length; ++i) {
+            if (i > 0) {
+                out.append(' ');
+            }
+            words[i].appendGCode(out, format);
+        }
+    }
+
     public String toString() {
-        return String.join(" ", (Iterable<String>)Arrays.stream(words).map(GCodeWord::toGCode)::iterator);
+        StringBuilder out = new StringBuilder();
+        appendGCode(out, CoordinateFormat.DEFAULT);
+        return out.toString();
     }
 }
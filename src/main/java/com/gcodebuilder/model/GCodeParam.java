@@ -31,7 +31,16 @@ public class GCodeParam implements GCodeWord {
 
     @Override
     public String toGCode() {
-        return String.format("%c%.4f", letter, value);
+        return CoordinateFormat.DEFAULT.formatParam(letter, value);
+    }
+
+    @Override
+    public void appendGCode(StringBuilder out, CoordinateFormat format) {
+        format.appendParam(out, letter, value);
+    }
+
+    static GCodeParam of(char letter, double value) {
+        return new GCodeParam(letter, value);
     }
 
     public static GCodeParam X(double value) {
@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Parses GCode text into {@link GCodeVisitor} events in a single pass over the bytes of the program, either read
+ * through a buffer from an {@link InputStream} or memory mapped from a {@link FileChannel}. Numbers are parsed
+ * directly from the bytes and parameter words are passed to the visitor as values, so the parser only creates
+ * objects for comments and other text.
+ * <p>
+ * Known G and M codes are mapped to the modal words of the model, such as {@link MotionMode} and
+ * {@link UnitMode}, and parameters that refer to a variable such as Z#1 become {@link GCodeVariableParam} words.
+ * O-words, variable assignments, expressions and program delimiters are passed on as {@link GCodeRawText} up to the
+ * end of the line.
+ */
+public class GCodeParser {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // lines are parsed from mapped windows of at most this size, so files larger than 2GB can be mapped
+    private static final int MAP_WINDOW_SIZE = 256 * 1024 * 1024;
+
+    // G and M codes with one decimal place, indexed by ten times the code number
+    private static final int MAX_CODE_INDEX = 1000;
+    private static final GCodeWord[] G_CODES = new GCodeWord[MAX_CODE_INDEX];
+    private static final GCodeWord[] M_CODES = new GCodeWord[MAX_CODE_INDEX];
+
+    // decimal values with at most this many digits are parsed exactly without creating a string
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    static {
+        Stream.of(MotionMode.values(), UnitMode.values(), DistanceMode.values(), ArcDistanceMode.values(),
+                FeedRateMode.values(), ProgramControl.values())
+                .flatMap(Stream::of)
+                .forEach(word -> {
+                    String gcode = word.toGCode();
+                    int index = (int)Math.round(Double.parseDouble(gcode.substring(1)) * 10);
+                    (gcode.charAt(0) == 'G' ? G_CODES : M_CODES)[index] = word;
+                });
+    }
+
+    private final GCodeVisitor visitor;
+
+    private ByteBuffer buffer;
+    private long lineNumber;
+    private int lineStart;
+
+    // subprogram numbers and repeat counts of M98 are integers, so they are kept as code words
+    private boolean subprogramCall;
+
+    // end of the number parsed by parseNumber
+    private int numberEnd;
+
+    public GCodeParser(GCodeVisitor visitor) {
+        this.visitor = Preconditions.checkNotNull(visitor);
+    }
+
+    /**
+     * Parses all lines read from in. The stream is read through an internal buffer, so it does not need to be
+     * buffered.
+     *
+     * @param in stream to read GCode text from
+     * @throws IOException if reading fails or the text is not valid GCode
+     */
+    public void parse(InputStream in) throws IOException {
+        lineNumber = 0;
+        byte[] bytes = new byte[BUFFER_SIZE];
+        int length = 0;
+        while (true) {
+            int read = in.read(bytes, length, bytes.length - length);
+            boolean endOfInput = read < 0;
+            if (!endOfInput) {
+                length += read;
+            }
+
+            int parsed = parseLines(ByteBuffer.wrap(bytes, 0, length), endOfInput);
+            if (endOfInput) {
+                return;
+            }
+
+            // keep the incomplete last line, growing the buffer if it holds nothing else
+            length -= parsed;
+            System.arraycopy(bytes, parsed, bytes, 0, length);
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        }
+    }
+
+    /**
+     * Parses all lines of a file channel by mapping it into memory a window at a time.
+     *
+     * @param channel channel to read GCode text from, starting at position zero
+     * @throws IOException if reading fails or the text is not valid GCode
+     */
+    public void parse(FileChannel channel) throws IOException {
+        lineNumber = 0;
+        long size = channel.size();
+        long position = 0;
+        while (position < size) {
+            long windowSize = Math.min(size - position, MAP_WINDOW_SIZE);
+            boolean endOfInput = position + windowSize == size;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+            int parsed = parseLines(window, endOfInput);
+            if (parsed == 0 && !endOfInput) {
+                throw new GCodeParseException(lineNumber + 1, "line is longer than " + MAP_WINDOW_SIZE + " bytes");
+            }
+            position += parsed;
+        }
+    }
+
+    public void parse(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            parse(channel);
+        }
+    }
+
+    // parses every complete line in bytes, and the last line too at the end of the input, returning the number of
+    // bytes parsed
+    private int parseLines(ByteBuffer bytes, boolean endOfInput) throws GCodeParseException {
+        buffer = bytes;
+        int start = bytes.position();
+        int limit = bytes.limit();
+        int lineStart = start;
+        for (int i = start; i < limit; ++i) {
+            if (bytes.get(i) == '\n') {
+                parseLine(lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        if (endOfInput && lineStart < limit) {
+            parseLine(lineStart, limit);
+            lineStart = limit;
+        }
+        buffer = null;
+        return lineStart - start;
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    private static boolean isLetter(byte c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private String text(int start, int end) {
+        while (start < end && isSpace(buffer.get(start))) {
+            ++start;
+        }
+        while (end > start && isSpace(buffer.get(end - 1))) {
+            --end;
+        }
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; ++i) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int skipSpaces(int i, int end) {
+        while (i < end && isSpace(buffer.get(i))) {
+            ++i;
+        }
+        return i;
+    }
+
+    private void parseLine(int start, int end) throws GCodeParseException {
+        ++lineNumber;
+        lineStart = start;
+        subprogramCall = false;
+        int i = start;
+        while ((i = skipSpaces(i, end)) < end) {
+            byte c = buffer.get(i);
+            if (c == '(') {
+                int close = i + 1;
+                while (close < end && buffer.get(close) != ')') {
+                    ++close;
+                }
+                if (close == end) {
+                    throw new GCodeParseException(lineNumber, "comment is not closed");
+                }
+                visitor.word(new GCodeComment(text(i + 1, close)));
+                i = close + 1;
+            } else if (c == ';') {
+                visitor.word(new GCodeComment(text(i + 1, end)));
+                i = end;
+            } else if (isLetter(c) && c != 'O' && c != 'o') {
+                i = parseWord(i, end);
+            } else if (c == 'O' || c == 'o' || c == '#' || c == '%' || c == '/') {
+                visitor.word(new GCodeRawText(text(i, end)));
+                i = end;
+            } else {
+                throw new GCodeParseException(lineNumber,
+                        String.format("unexpected character '%c' in column %d", (char)c, i - lineStart + 1));
+            }
+        }
+        visitor.endLine(lineNumber);
+    }
+
+    private int parseWord(int start, int end) throws GCodeParseException {
+        char letter = Character.toUpperCase((char)buffer.get(start));
+        int i = skipSpaces(start + 1, end);
+        if (i < end && buffer.get(i) == '#') {
+            int variableStart = skipSpaces(i + 1, end);
+            double variable = parseNumber(variableStart, end);
+            if (variable != Math.rint(variable) || variable < 0) {
+                throw new GCodeParseException(lineNumber, "invalid variable number for " + letter);
+            }
+            visitor.word(new GCodeVariableParam(letter, new GCodeVariable((int)variable, letter)));
+            return numberEnd;
+        } else if (i < end && buffer.get(i) == '[') {
+            // expressions are not evaluated
+            visitor.word(new GCodeRawText(text(start, end)));
+            return end;
+        }
+
+        double value = parseNumber(i, end);
+        if (letter == 'G' || letter == 'M' || letter == 'N' || letter == 'T'
+                || (subprogramCall && (letter == 'P' || letter == 'L'))) {
+            GCodeWord code = toCode(letter, value);
+            subprogramCall |= code == ProgramControl.CALL_SUBPROGRAM;
+            visitor.word(code);
+        } else {
+            visitor.param(letter, value);
+        }
+        return numberEnd;
+    }
+
+    private static GCodeWord toCode(char letter, double value) {
+        double index = Math.rint(value * 10);
+        if ((letter == 'G' || letter == 'M') && index >= 0 && index < MAX_CODE_INDEX
+                && Math.abs(index - value * 10) < 1e-6) {
+            GCodeWord word = (letter == 'G' ? G_CODES : M_CODES)[(int)index];
+            if (word != null) {
+                return word;
+            }
+        }
+        return new GCodeCommand(letter, value);
+    }
+
+    private double parseNumber(int start, int end) throws GCodeParseException {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            ++i;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean exact = true;
+        boolean decimalPoint = false;
+        for (; i < end; ++i) {
+            byte c = buffer.get(i);
+            if (isDigit(c)) {
+                if (mantissa < MAX_EXACT_MANTISSA / 10) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (decimalPoint) {
+                        ++scale;
+                    }
+                } else {
+                    exact = false;
+                }
+                ++digits;
+            } else if (c == '.' && !decimalPoint) {
+                decimalPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            throw new GCodeParseException(lineNumber, "missing number in column " + (start - lineStart + 1));
+        }
+        numberEnd = i;
+
+        if (exact && scale < POWERS_OF_TEN.length) {
+            // both operands are exact, so the quotient is correctly rounded
+            double value = mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        } else {
+            // too many digits to parse exactly, which GCode written by programs rarely has
+            return Double.parseDouble(text(start, i));
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.PrintWriter;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -37,24 +38,93 @@ public class GCodeProgram {
         this.lines = lines.toArray(GCodeLine[]::new);
     }
 
+    // for subclasses that store lines in another form
+    protected GCodeProgram() {
+        this.lines = new GCodeLine[0];
+    }
+
     public List<GCodeLine> getLines() {
         return List.of(lines);
     }
 
+    public int getLineCount() {
+        return lines.length;
+    }
+
+    protected void appendLine(int index, StringBuilder out, CoordinateFormat format) {
+        lines[index].appendGCode(out, format);
+    }
+
+    /**
+     * Passes every line of the program to a visitor, in the same form as a {@link GCodeParser} reading the printed
+     * program would, except that words the parser would not create are passed as they are.
+     *
+     * @param visitor visitor to receive the program
+     */
+    public void accept(GCodeVisitor visitor) {
+        for (int i = 0; i < lines.length; ++i) {
+            for (GCodeWord word : lines[i].getWords()) {
+                if (word instanceof GCodeParam) {
+                    GCodeParam param = (GCodeParam)word;
+                    visitor.param(param.getLetter(), param.getValue());
+                } else if (word instanceof FeedRate) {
+                    visitor.param('F', ((FeedRate)word).getRate());
+                } else {
+                    visitor.word(word);
+                }
+            }
+            visitor.endLine(i + 1);
+        }
+    }
+
+    public void print(PrintStream out, CoordinateFormat format) {
+        StringBuilder text = new StringBuilder();
+        int lineCount = getLineCount();
+        for (int i = 0; i < lineCount; ++i) {
+            text.setLength(0);
+            appendLine(i, text, format);
+            out.println(text);
+        }
+    }
+
     public void print(PrintStream out) {
-        for (GCodeLine line : lines) {
-            out.println(line.toString());
+        print(out, CoordinateFormat.DEFAULT);
+    }
+
+    public void print(PrintWriter out, CoordinateFormat format) {
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[0];
+        int lineCount = getLineCount();
+        for (int i = 0; i < lineCount; ++i) {
+            text.setLength(0);
+            appendLine(i, text, format);
+            if (buffer.length < text.length()) {
+                buffer = new char[text.length() * 2];
+            }
+            text.getChars(0, text.length(), buffer, 0);
+            out.write(buffer, 0, text.length());
+            out.println();
         }
     }
 
     public void print(PrintWriter out) {
-        for (GCodeLine line : lines) {
-            out.println(line.toString());
-        }
+        print(out, CoordinateFormat.DEFAULT);
     }
 
+    /**
+     * Reads a program with {@link GCodeParser} into a {@link CompactGCodeProgram}. Use the parser directly with a
+     * {@link GCodeVisitor} to process programs too large to keep in memory.
+     *
+     * @param in stream to read GCode text from
+     * @return program with one line for every line of text
+     * @throws IOException if reading fails or the text is not valid GCode
+     */
     public static GCodeProgram load(InputStream in) throws IOException {
-        throw new UnsupportedOperationException("load gcode not supported");
+        return CompactGCodeProgram.load(in);
+    }
+
+    public static GCodeProgram load(Path path) throws IOException {
+        return CompactGCodeProgram.load(path);
     }
 
     public void save(OutputStream out) throws IOException {
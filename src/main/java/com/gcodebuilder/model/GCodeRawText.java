@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import lombok.Data;
+
+/**
+ * Text kept exactly as it was read because the parser does not interpret it, such as O-words and expressions.
+ */
+@Data
+public class GCodeRawText implements GCodeWord {
+    private final String text;
+
+    @Override
+    public String toGCode() {
+        return text;
+    }
+
+    @Override
+    public void appendGCode(StringBuilder out, CoordinateFormat format) {
+        out.append(text);
+    }
+}
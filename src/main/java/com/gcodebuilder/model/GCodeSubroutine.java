@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import com.google.common.base.Preconditions;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Block of GCode lines that is written once and called any number of times with different parameter values.
+ * Subroutines are defined with {@link GCodeBuilder#beginSubroutine(SubroutineDialect)}, which numbers them in the
+ * order they are defined.
+ */
+public class GCodeSubroutine {
+    @Getter
+    private final SubroutineDialect dialect;
+
+    // assigned by the builder, or when joined for subroutines defined in a forked builder
+    private int number;
+
+    private final List<GCodeVariable> parameters = new ArrayList<>();
+
+    // lines written after the end of the program for dialects that don't allow subroutines in the main program
+    final List<GCodeLine> deferredLines = new ArrayList<>();
+
+    GCodeSubroutine(SubroutineDialect dialect) {
+        this.dialect = Preconditions.checkNotNull(dialect);
+    }
+
+    public int getNumber() {
+        Preconditions.checkState(number > 0, "subroutine has not been numbered yet");
+        return number;
+    }
+
+    void setNumber(int number) {
+        this.number = number;
+    }
+
+    /**
+     * Adds a parameter, which is passed to the subroutine as the next value of each call.
+     *
+     * @param letter parameter letter the value is used with, which determines how the value is formatted
+     * @return variable to use in the subroutine lines
+     */
+    public GCodeVariable addParameter(char letter) {
+        GCodeVariable variable = new GCodeVariable(dialect.getParameterVariable(parameters.size()), letter);
+        parameters.add(variable);
+        return variable;
+    }
+
+    public List<GCodeVariable> getParameters() {
+        return Collections.unmodifiableList(parameters);
+    }
+}
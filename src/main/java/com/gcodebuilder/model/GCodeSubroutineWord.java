@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import lombok.Data;
+
+/**
+ * Word that starts, ends or calls a subroutine. The subroutine number is looked up when the word is written, so the
+ * word can be created before the subroutine is numbered.
+ */
+@Data
+class GCodeSubroutineWord implements GCodeWord {
+    enum Kind {
+        BEGIN,
+        END,
+        CALL
+    }
+
+    private final Kind kind;
+    private final GCodeSubroutine subroutine;
+    private final double[] values;
+
+    static GCodeSubroutineWord begin(GCodeSubroutine subroutine) {
+        return new GCodeSubroutineWord(Kind.BEGIN, subroutine, null);
+    }
+
+    static GCodeSubroutineWord end(GCodeSubroutine subroutine) {
+        return new GCodeSubroutineWord(Kind.END, subroutine, null);
+    }
+
+    static GCodeSubroutineWord call(GCodeSubroutine subroutine, double... values) {
+        return new GCodeSubroutineWord(Kind.CALL, subroutine, values);
+    }
+
+    @Override
+    public String toGCode() {
+        StringBuilder out = new StringBuilder();
+        appendGCode(out, CoordinateFormat.DEFAULT);
+        return out.toString();
+    }
+
+    @Override
+    public void appendGCode(StringBuilder out, CoordinateFormat format) {
+        switch (subroutine.getDialect()) {
+            case LINUXCNC:
+                out.append('O').append(subroutine.getNumber());
+                if (kind == Kind.BEGIN) {
+                    out.append(" sub");
+                } else if (kind == Kind.END) {
+                    out.append(" endsub");
+                } else {
+                    out.append(" call");
+                    for (int i = 0; i < values.length; ++i) {
+                        char letter = subroutine.getParameters().get(i).getLetter();
+                        out.append(" [");
+                        format.appendValue(out, values[i], format.getPrecision(letter));
+                        out.append(']');
+                    }
+                }
+                break;
+            case FANUC:
+                if (kind == Kind.BEGIN) {
+                    out.append('O').append(subroutine.getNumber());
+                } else if (kind == Kind.END) {
+                    out.append(ProgramControl.RETURN_FROM_SUBPROGRAM.toGCode());
+                } else {
+                    out.append(ProgramControl.CALL_SUBPROGRAM.toGCode()).append(" P").append(subroutine.getNumber());
+                }
+                break;
+        }
+    }
+}
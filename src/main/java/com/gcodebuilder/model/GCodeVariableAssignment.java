@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import lombok.Data;
+
+/**
+ * Assigns a value to a variable, for example #100=-0.2500.
+ */
+@Data
+class GCodeVariableAssignment implements GCodeWord {
+    private final GCodeVariable variable;
+    private final double value;
+
+    @Override
+    public String toGCode() {
+        StringBuilder out = new StringBuilder();
+        appendGCode(out, CoordinateFormat.DEFAULT);
+        return out.toString();
+    }
+
+    @Override
+    public void appendGCode(StringBuilder out, CoordinateFormat format) {
+        out.append('#').append(variable.getNumber()).append('=');
+        format.appendValue(out, value, format.getPrecision(variable.getLetter()));
+    }
+}
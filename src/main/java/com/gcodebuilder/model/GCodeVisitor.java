@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+/**
+ * Receives the contents of a GCode program from a {@link GCodeParser} one word at a time, so programs of any size
+ * can be processed without keeping them in memory. Programs in memory are visited with
+ * {@link GCodeProgram#accept(GCodeVisitor)}.
+ */
+public interface GCodeVisitor {
+    /**
+     * Called for every parameter word, including feed rates. Parameters are passed as values so visiting them does
+     * not create any objects.
+     *
+     * @param letter upper case parameter letter
+     * @param value parameter value
+     */
+    default void param(char letter, double value) {
+    }
+
+    /**
+     * Called for every other word: modal codes such as {@link MotionMode}, comments, other G and M codes as
+     * {@link GCodeCommand}, and text the parser does not interpret as {@link GCodeRawText}.
+     *
+     * @param word parsed word
+     */
+    default void word(GCodeWord word) {
+    }
+
+    /**
+     * Called at the end of every line, including empty lines.
+     *
+     * @param lineNumber one-based number of the line that ended
+     */
+    default void endLine(long lineNumber) {
+    }
+}
@@ -18,4 +18,8 @@ package com.gcodebuilder.model;
 
 public interface GCodeWord {
     String toGCode();
+
+    default void appendGCode(StringBuilder out, CoordinateFormat format) {
+        out.append(toGCode());
+    }
 }
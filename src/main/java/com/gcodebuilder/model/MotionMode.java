@@ -23,7 +23,10 @@ public enum MotionMode implements GCodeWord {
     RAPID_LINEAR("G0"),
     LINEAR("G1"),
     CW_ARC("G2"),
-    CCW_ARC("G3");
+    CCW_ARC("G3"),
+    DRILL_CYCLE("G81"),
+    PECK_DRILL_CYCLE("G83"),
+    CANCEL_CYCLE("G80");
 
     private final String gcode;
 
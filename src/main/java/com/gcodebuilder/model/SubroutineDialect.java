@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public enum SubroutineDialect {
+    /**
+     * LinuxCNC O-word subroutines, which are defined before they are called and get parameter values #1, #2, ...
+     * from the call.
+     */
+    LINUXCNC(1, false, true),
+
+    /**
+     * Fanuc style subprograms, which are written after the M30 end of the program and read parameter values from
+     * common variables #100, #101, ... set before calling them with M98.
+     */
+    FANUC(100, true, false);
+
+    private final int firstParameterVariable;
+
+    /**
+     * True if subroutines are written after the end of the program instead of where they are defined.
+     */
+    @Getter
+    private final boolean deferred;
+
+    /**
+     * True if parameter values are passed in the call instead of being assigned to variables before the call.
+     */
+    @Getter
+    private final boolean callWithValues;
+
+    public int getParameterVariable(int index) {
+        return firstParameterVariable + index;
+    }
+}
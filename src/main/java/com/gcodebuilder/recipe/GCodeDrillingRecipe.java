@@ -22,10 +22,20 @@ import com.gcodebuilder.generator.GCodeDrillingRecipeGenerator;
 import com.gcodebuilder.generator.GCodeGenerator;
 import com.gcodebuilder.geometry.Point;
 import com.gcodebuilder.geometry.Shape;
+import com.gcodebuilder.model.DrillCycleMode;
+import com.gcodebuilder.model.DrillOrder;
+import lombok.Getter;
+import lombok.Setter;
 
 import java.util.List;
 
 public abstract class GCodeDrillingRecipe extends GCodeRecipe {
+    @Getter @Setter
+    private DrillCycleMode drillCycleMode = DrillCycleMode.MOVES;
+
+    @Getter @Setter
+    private DrillOrder drillOrder = DrillOrder.SHAPE_ORDER;
+
     public GCodeDrillingRecipe(int id, GCodeRecipeType type) {
         super(id, type);
     }
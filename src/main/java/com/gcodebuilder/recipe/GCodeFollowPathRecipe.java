@@ -16,16 +16,15 @@
 
 package com.gcodebuilder.recipe;
 
-import com.gcodebuilder.generator.GCodeDisplayMode;
-import com.gcodebuilder.generator.toolpath.Toolpath;
 import com.gcodebuilder.generator.toolpath.ToolpathGenerator;
+import com.gcodebuilder.generator.toolpath.ToolpathResult;
 import com.gcodebuilder.model.Direction;
-import javafx.scene.canvas.GraphicsContext;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Arrays;
 import java.util.List;
 
 @Getter
@@ -46,8 +45,12 @@ public class GCodeFollowPathRecipe extends GCodeToolpathRecipe {
     }
 
     @Override
-    public List<Toolpath> computeToolpaths(ToolpathGenerator generator, GraphicsContext ctx,
-                                           GCodeDisplayMode displayMode) {
-        return generator.computeFollowPathToolpaths(getDirection(), ctx, displayMode);
+    public ToolpathResult computeToolpathResult(ToolpathGenerator generator) {
+        return generator.computeFollowPathResult(getDirection());
+    }
+
+    @Override
+    protected List<Object> getToolpathSettings() {
+        return Arrays.asList(getType(), getToolWidth(), getDirection());
     }
 }
@@ -18,14 +18,19 @@ package com.gcodebuilder.recipe;
 
 import com.gcodebuilder.generator.GCodeDisplayMode;
 import com.gcodebuilder.generator.toolpath.Toolpath;
+import com.gcodebuilder.generator.toolpath.ToolpathCache;
 import com.gcodebuilder.generator.toolpath.ToolpathGenerator;
+import com.gcodebuilder.generator.toolpath.ToolpathResult;
+import com.gcodebuilder.geometry.Path;
 import com.gcodebuilder.model.Direction;
+import com.gcodebuilder.model.Side;
 import javafx.scene.canvas.GraphicsContext;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Arrays;
 import java.util.List;
 
 @Getter
@@ -47,9 +52,35 @@ public class GCodePocketRecipe extends GCodeToolpathRecipe {
     }
 
     @Override
-    public List<Toolpath> computeToolpaths(ToolpathGenerator generator, GraphicsContext ctx,
-                                           GCodeDisplayMode displayMode) {
+    public ToolpathResult computeToolpathResult(ToolpathGenerator generator) {
         generator.setStepOver(getStepOver()/100.0);
-        return generator.computePocketToolpaths(getDirection(), ctx, displayMode);
+        return generator.computePocketResult(getDirection());
+    }
+
+    @Override
+    protected List<Object> getToolpathSettings() {
+        return Arrays.asList(getType(), getToolWidth(), getStepOver(), getDirection());
+    }
+
+    // same settings as a profile recipe cutting the inside of a shape, so those toolpaths can be shared
+    private List<Toolpath> getInsideToolpaths(List<Path> paths) {
+        List<Object> settings = Arrays.asList(GCodeRecipeType.PROFILE, getToolWidth(), Side.INSIDE, getDirection());
+        return ToolpathCache.getShared().get(paths, settings,
+                () -> newToolpathGenerator(paths).computeProfileToolpaths(Side.INSIDE, getDirection()));
+    }
+
+    @Override
+    public boolean drawCachedToolpaths(ToolpathGenerator generator, List<Path> paths, GraphicsContext ctx,
+                                       GCodeDisplayMode displayMode) {
+        // pocket toolpaths are drawn over the inside profile toolpaths they are computed from
+        if (displayMode == GCodeDisplayMode.ORIENTED_TOOLPATHS) {
+            generator.drawToolpaths(ctx, getInsideToolpaths(paths));
+            return true;
+        } else if (displayMode == GCodeDisplayMode.CONNECTED_TOOLPATHS) {
+            generator.drawToolpaths(ctx, getInsideToolpaths(paths));
+            generator.drawToolpaths(ctx, getToolpaths(paths));
+            return true;
+        }
+        return false;
     }
 }
@@ -16,17 +16,16 @@
 
 package com.gcodebuilder.recipe;
 
-import com.gcodebuilder.generator.GCodeDisplayMode;
-import com.gcodebuilder.generator.toolpath.Toolpath;
 import com.gcodebuilder.generator.toolpath.ToolpathGenerator;
+import com.gcodebuilder.generator.toolpath.ToolpathResult;
 import com.gcodebuilder.model.Direction;
 import com.gcodebuilder.model.Side;
-import javafx.scene.canvas.GraphicsContext;
 import lombok.Getter;
 import lombok.Setter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Arrays;
 import java.util.List;
 
 @Getter
@@ -48,8 +47,12 @@ public class GCodeProfileRecipe extends GCodeToolpathRecipe {
     }
 
     @Override
-    public List<Toolpath> computeToolpaths(ToolpathGenerator generator, GraphicsContext ctx,
-                                           GCodeDisplayMode displayMode) {
-        return generator.computeProfileToolpaths(getSide(), getDirection(), ctx, displayMode);
+    public ToolpathResult computeToolpathResult(ToolpathGenerator generator) {
+        return generator.computeProfileResult(getSide(), getDirection());
+    }
+
+    @Override
+    protected List<Object> getToolpathSettings() {
+        return Arrays.asList(getType(), getToolWidth(), getSide(), getDirection());
     }
 }
@@ -22,17 +22,39 @@ import com.gcodebuilder.generator.GCodeGenerator;
 import com.gcodebuilder.generator.GCodeToolpathRecipeDrawable;
 import com.gcodebuilder.generator.GCodeToolpathRecipeGenerator;
 import com.gcodebuilder.generator.toolpath.Toolpath;
+import com.gcodebuilder.generator.toolpath.ToolpathCache;
 import com.gcodebuilder.generator.toolpath.ToolpathGenerator;
+import com.gcodebuilder.generator.toolpath.ToolpathResult;
+import com.gcodebuilder.geometry.Path;
 import com.gcodebuilder.geometry.Shape;
+import com.gcodebuilder.model.DepthPassMode;
+import com.gcodebuilder.model.LengthUnit;
+import com.gcodebuilder.model.LengthUnitConverter;
 import javafx.scene.canvas.GraphicsContext;
+import lombok.Getter;
+import lombok.Setter;
 
 import java.util.List;
 
 public abstract class GCodeToolpathRecipe extends GCodeRecipe {
+    @Getter @Setter
+    private DepthPassMode depthPassMode = DepthPassMode.REPEAT_TOOLPATHS;
+
+    // runs of short line segments are replaced by lines and arcs within this distance, or left as is when zero
+    @Getter @Setter
+    private double chordTolerance = 0;
+
     public GCodeToolpathRecipe(int id, GCodeRecipeType type) {
         super(id, type);
     }
 
+    @Override
+    public void convertToUnit(LengthUnit toUnit) {
+        LengthUnitConverter converter = getUnit().getConverterTo(toUnit);
+        super.convertToUnit(toUnit);
+        setChordTolerance(converter.convert(getChordTolerance()));
+    }
+
     @Override
     public GCodeGenerator getGCodeGenerator(Shape<?> shape) {
         return new GCodeToolpathRecipeGenerator(this, shape);
@@ -43,10 +65,88 @@ public abstract class GCodeToolpathRecipe extends GCodeRecipe {
         return new GCodeToolpathRecipeDrawable(this, shape);
     }
 
-    public abstract List<Toolpath> computeToolpaths(ToolpathGenerator generator, GraphicsContext ctx,
-                                                    GCodeDisplayMode displayMode);
+    public abstract ToolpathResult computeToolpathResult(ToolpathGenerator generator);
 
     public List<Toolpath> computeToolpaths(ToolpathGenerator generator) {
-        return computeToolpaths(generator, null, null);
+        return computeToolpathResult(generator).getToolpaths();
+    }
+
+    /**
+     * Returns the recipe settings that affect the toolpaths computed by this recipe, which are combined with the
+     * shape geometry to look up toolpaths in the {@link ToolpathCache}.
+     *
+     * @return list of settings values with well defined equals and hashCode methods
+     */
+    protected List<Object> getToolpathSettings() {
+        return List.of(getType(), getToolWidth());
+    }
+
+    protected ToolpathGenerator newToolpathGenerator(List<Path> paths) {
+        ToolpathGenerator generator = new ToolpathGenerator();
+        generator.setToolRadius(getToolWidth() / 2);
+        generator.addAllPaths(paths);
+        return generator;
+    }
+
+    protected List<Toolpath> getToolpaths(List<Path> paths) {
+        return ToolpathCache.getShared().get(paths, getToolpathSettings(),
+                () -> computeToolpaths(newToolpathGenerator(paths)));
+    }
+
+    /**
+     * Returns the toolpaths for a shape from the shared {@link ToolpathCache}, computing them only if the shape
+     * geometry or the recipe settings have changed since they were last computed.
+     *
+     * @param shape shape to compute toolpaths for
+     * @return unmodifiable list of toolpaths
+     */
+    public List<Toolpath> getToolpaths(Shape<?> shape) {
+        return getToolpaths(shape.convertToPaths());
+    }
+
+    /**
+     * Returns every stage of the toolpath computation for a shape from the shared {@link ToolpathCache}, so
+     * switching between display modes does not compute the toolpaths again.
+     *
+     * @param paths paths the toolpaths are computed from
+     * @return computed toolpaths and the results of each stage of the computation
+     */
+    protected ToolpathResult getToolpathResult(List<Path> paths) {
+        return ToolpathCache.getShared().getResult(paths, getToolpathSettings(),
+                () -> computeToolpathResult(newToolpathGenerator(paths)));
+    }
+
+    /**
+     * Draws the toolpaths shown in a display mode using cached toolpaths. Display modes that show intermediate
+     * results of the toolpath computation are not drawn, so they can be drawn from a {@link ToolpathResult}.
+     *
+     * @param generator generator used to draw toolpaths
+     * @param paths paths the toolpaths are computed from
+     * @param ctx graphics context to draw on
+     * @param displayMode current toolpath display mode
+     * @return true if the toolpaths were drawn
+     */
+    public boolean drawCachedToolpaths(ToolpathGenerator generator, List<Path> paths, GraphicsContext ctx,
+                                       GCodeDisplayMode displayMode) {
+        if (displayMode == null || displayMode.compareTo(GCodeDisplayMode.ORIENTED_TOOLPATHS) < 0) {
+            return false;
+        }
+        generator.drawToolpaths(ctx, getToolpaths(paths));
+        return true;
+    }
+
+    /**
+     * Draws the toolpaths or the stage of the toolpath computation shown in a display mode.
+     *
+     * @param generator generator used to draw toolpaths
+     * @param paths paths the toolpaths are computed from
+     * @param ctx graphics context to draw on
+     * @param displayMode current toolpath display mode
+     */
+    public void drawToolpaths(ToolpathGenerator generator, List<Path> paths, GraphicsContext ctx,
+                              GCodeDisplayMode displayMode) {
+        if (!drawCachedToolpaths(generator, paths, ctx, displayMode)) {
+            generator.drawResult(ctx, getToolpathResult(paths), displayMode);
+        }
     }
 }
@@ -9,4 +9,5 @@ open module com.gcodebuilder.app {
     requires com.google.common;
     requires javafx.controls;
     requires javafx.swing;
+    requires jdk.jfr;
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator;
+
+import com.gcodebuilder.geometry.Circle;
+import com.gcodebuilder.geometry.Drawing;
+import com.gcodebuilder.geometry.Point;
+import com.gcodebuilder.model.DrillOrder;
+import com.gcodebuilder.model.GCodeBuilder;
+import com.gcodebuilder.recipe.GCodeCenterDrillRecipe;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class DrawingGCodeGeneratorTest {
+    private static Circle newCircle(double x, double y, int recipeId) {
+        Circle circle = new Circle(new Point(x, y), 0.5);
+        circle.setRecipeId(recipeId);
+        return circle;
+    }
+
+    private static Drawing newDrawing(DrillOrder drillOrder) {
+        Drawing drawing = new Drawing();
+        for (int recipeId = 1; recipeId <= 2; ++recipeId) {
+            GCodeCenterDrillRecipe recipe = new GCodeCenterDrillRecipe(recipeId);
+            recipe.setName("Drill " + recipeId);
+            recipe.setDrillOrder(drillOrder);
+            drawing.putRecipe(recipe);
+        }
+        drawing.add(newCircle(1, 1, 1));
+        drawing.add(newCircle(2, 2, 2));
+        drawing.add(newCircle(3, 3, 1));
+        drawing.add(newCircle(0, 0, 1));
+        return drawing;
+    }
+
+    private static List<String> generateComments(DrawingGCodeGenerator generator) {
+        GCodeBuilder builder = new GCodeBuilder();
+        generator.generateGCode(builder, GCodeProgressMonitor.NONE);
+        StringWriter programText = new StringWriter();
+        try (PrintWriter out = new PrintWriter(programText)) {
+            builder.build().print(out);
+        }
+        return programText.toString().lines()
+                .filter(line -> line.startsWith("("))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testShapeOrder() {
+        DrawingGCodeGenerator generator = new DrawingGCodeGenerator(newDrawing(DrillOrder.SHAPE_ORDER), false);
+        Assertions.assertNull(generator.getDrillOrderOptimizer());
+        Assertions.assertEquals(List.of(
+                "( shape:Circle recipe:Drill 1 )",
+                "( shape:Circle recipe:Drill 2 )",
+                "( shape:Circle recipe:Drill 1 )",
+                "( shape:Circle recipe:Drill 1 )"),
+                generateComments(generator));
+    }
+
+    @Test
+    public void testOptimizedDrillOrder() {
+        Drawing drawing = newDrawing(DrillOrder.SHAPE_ORDER);
+        ((GCodeCenterDrillRecipe)drawing.getRecipe(1)).setDrillOrder(DrillOrder.OPTIMIZED);
+        List<String> comments = generateComments(new DrawingGCodeGenerator(drawing, false));
+        Assertions.assertEquals(3, comments.size());
+        Assertions.assertEquals("( shapes:3 recipe:Drill 1 )", comments.get(0));
+        Assertions.assertTrue(comments.get(1).startsWith("( drill points:3 "), comments.get(1));
+        Assertions.assertEquals("( shape:Circle recipe:Drill 2 )", comments.get(2));
+    }
+
+    @Test
+    public void testGeneratorDrillOrderOptimizer() {
+        DrawingGCodeGenerator generator = new DrawingGCodeGenerator(newDrawing(DrillOrder.SHAPE_ORDER), false);
+        generator.setDrillOrderOptimizer(new DrillOrderOptimizer());
+        List<String> comments = generateComments(generator);
+        Assertions.assertEquals(3, comments.size());
+        Assertions.assertEquals("( shapes:3 recipe:Drill 1 )", comments.get(0));
+        Assertions.assertEquals("( shape:Circle recipe:Drill 2 )", comments.get(2));
+    }
+}
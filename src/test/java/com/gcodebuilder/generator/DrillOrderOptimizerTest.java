@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator;
+
+import javafx.geometry.Point2D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+public class DrillOrderOptimizerTest {
+    private static final double DELTA = 1e-9;
+
+    private static List<Point2D> randomPoints(long seed, int count) {
+        Random random = new Random(seed);
+        List<Point2D> points = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            points.add(new Point2D(random.nextDouble() * 100, random.nextDouble() * 100));
+        }
+        return points;
+    }
+
+    private static double pathDistance(List<Point2D> points) {
+        double distance = 0;
+        for (int i = 1; i < points.size(); ++i) {
+            distance += points.get(i - 1).distance(points.get(i));
+        }
+        return distance;
+    }
+
+    private static void assertPermutation(List<Point2D> expected, List<Point2D> actual) {
+        Assertions.assertEquals(expected.size(), actual.size());
+        Map<Point2D, Integer> counts = new IdentityHashMap<>();
+        expected.forEach(point -> counts.merge(point, 1, Integer::sum));
+        actual.forEach(point -> counts.merge(point, -1, Integer::sum));
+        counts.values().forEach(count -> Assertions.assertEquals(0, (int)count));
+    }
+
+    @Test
+    public void testOptimizedOrderIsShorterPermutation() {
+        DrillOrderOptimizer optimizer = new DrillOrderOptimizer();
+        for (long seed = 0; seed < 20; ++seed) {
+            List<Point2D> points = randomPoints(seed, 3 + (int)seed * 10);
+            DrillOrderOptimizer.Result<Point2D> result = optimizer.optimize(points, Function.identity());
+
+            assertPermutation(points, result.getPoints());
+            Assertions.assertSame(points.get(0), result.getPoints().get(0));
+            Assertions.assertEquals(pathDistance(points), result.getOriginalDistance(), DELTA);
+            Assertions.assertEquals(pathDistance(result.getPoints()), result.getOptimizedDistance(), DELTA);
+            Assertions.assertTrue(result.getOptimizedDistance() <= result.getOriginalDistance());
+        }
+    }
+
+    @Test
+    public void testGoodOrderIsNotMadeLonger() {
+        // points along a line are already in the shortest order
+        List<Point2D> points = new ArrayList<>();
+        for (int i = 0; i < 50; ++i) {
+            points.add(new Point2D(i, 0));
+        }
+        DrillOrderOptimizer.Result<Point2D> result = new DrillOrderOptimizer().optimize(points, Function.identity());
+        Assertions.assertEquals(points, result.getPoints());
+        Assertions.assertEquals(0, result.getDistanceSaved(), DELTA);
+    }
+
+    @Test
+    public void testShuffledGridIsImproved() {
+        List<Point2D> points = new ArrayList<>();
+        for (int x = 0; x < 10; ++x) {
+            for (int y = 0; y < 10; ++y) {
+                points.add(new Point2D(x, y));
+            }
+        }
+        Collections.shuffle(points, new Random(7));
+        DrillOrderOptimizer.Result<Point2D> result = new DrillOrderOptimizer().optimize(points, Function.identity());
+        assertPermutation(points, result.getPoints());
+        // the shortest path through a 10x10 grid of unit spacing has length 99
+        Assertions.assertTrue(result.getOptimizedDistance() < 99 * 1.2,
+                "optimized distance " + result.getOptimizedDistance());
+    }
+
+    @Test
+    public void testOrderIsDeterministic() {
+        List<Point2D> points = randomPoints(42, 400);
+        DrillOrderOptimizer optimizer = new DrillOrderOptimizer();
+        List<Point2D> expected = optimizer.optimize(points, Function.identity()).getPoints();
+        for (int i = 0; i < 3; ++i) {
+            Assertions.assertEquals(expected, new DrillOrderOptimizer().optimize(points, Function.identity())
+                    .getPoints());
+        }
+    }
+
+    @Test
+    public void testPassLimit() {
+        List<Point2D> points = randomPoints(3, 200);
+        DrillOrderOptimizer optimizer = new DrillOrderOptimizer();
+        optimizer.setMaxPasses(0);
+        DrillOrderOptimizer.Result<Point2D> unimproved = optimizer.optimize(points, Function.identity());
+        optimizer.setMaxPasses(1);
+        DrillOrderOptimizer.Result<Point2D> onePass = optimizer.optimize(points, Function.identity());
+
+        assertPermutation(points, unimproved.getPoints());
+        assertPermutation(points, onePass.getPoints());
+        Assertions.assertTrue(unimproved.getOptimizedDistance() <= unimproved.getOriginalDistance());
+        Assertions.assertTrue(onePass.getOptimizedDistance() <= unimproved.getOptimizedDistance());
+    }
+
+    @Test
+    public void testFewPoints() {
+        DrillOrderOptimizer optimizer = new DrillOrderOptimizer();
+        for (int count = 0; count <= 2; ++count) {
+            List<Point2D> points = randomPoints(count, count);
+            DrillOrderOptimizer.Result<Point2D> result = optimizer.optimize(points, Function.identity());
+            Assertions.assertEquals(points, result.getPoints());
+            Assertions.assertEquals(0, result.getDistanceSaved(), DELTA);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator;
+
+import com.gcodebuilder.geometry.Circle;
+import com.gcodebuilder.geometry.Point;
+import com.gcodebuilder.geometry.Shape;
+import com.gcodebuilder.model.DrillCycleMode;
+import com.gcodebuilder.model.GCodeBuilder;
+import com.gcodebuilder.recipe.GCodeCenterDrillRecipe;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class GCodeDrillingRecipeGeneratorTest {
+    private static final List<Shape<?>> SHAPES = List.of(
+            new Circle(new Point(1, 2), 0.5),
+            new Circle(new Point(3, 4), 0.5));
+
+    private static GCodeCenterDrillRecipe newRecipe(DrillCycleMode drillCycleMode, double stepDown) {
+        GCodeCenterDrillRecipe recipe = new GCodeCenterDrillRecipe(1);
+        recipe.setDrillCycleMode(drillCycleMode);
+        recipe.setDepth(0.25);
+        recipe.setStepDown(stepDown);
+        recipe.setSafetyHeight(0.2);
+        recipe.setPlungeRate(20);
+        return recipe;
+    }
+
+    private static List<String> generateLines(GCodeCenterDrillRecipe recipe) {
+        GCodeBuilder builder = new GCodeBuilder();
+        new GCodeDrillingRecipeGenerator(recipe, SHAPES, null).generateGCode(builder, GCodeProgressMonitor.NONE);
+        StringWriter programText = new StringWriter();
+        try (PrintWriter out = new PrintWriter(programText)) {
+            builder.build().print(out);
+        }
+        return Arrays.asList(programText.toString().split("\\R"));
+    }
+
+    @Test
+    public void testDrillCycle() {
+        // one pass reaches the bottom, so every hole is drilled with G81
+        Assertions.assertEquals(List.of(
+                "G90 G91.1 G94 G0 Z0.2000",
+                "G81 F20 X1.0000 Y2.0000 Z-0.2500 R0.2000",
+                "X3.0000 Y4.0000 Z-0.2500 R0.2000",
+                "G80"),
+                generateLines(newRecipe(DrillCycleMode.CANNED_CYCLE, 0.25)));
+    }
+
+    @Test
+    public void testDrillCycleWithoutStepDown() {
+        Assertions.assertEquals(List.of(
+                "G90 G91.1 G94 G0 Z0.2000",
+                "G81 F20 X1.0000 Y2.0000 Z-0.2500 R0.2000",
+                "X3.0000 Y4.0000 Z-0.2500 R0.2000",
+                "G80"),
+                generateLines(newRecipe(DrillCycleMode.CANNED_CYCLE, 0)));
+    }
+
+    @Test
+    public void testPeckDrillCycle() {
+        Assertions.assertEquals(List.of(
+                "G90 G91.1 G94 G0 Z0.2000",
+                "G83 F20 X1.0000 Y2.0000 Z-0.2500 R0.2000 Q0.1000",
+                "X3.0000 Y4.0000 Z-0.2500 R0.2000 Q0.1000",
+                "G80"),
+                generateLines(newRecipe(DrillCycleMode.CANNED_CYCLE, 0.1)));
+    }
+
+    @Test
+    public void testDrillMoves() {
+        List<String> pecks = List.of(
+                "G1 F20 Z-0.1000",
+                "G0 Z0.2000",
+                "G1 F20 Z-0.2000",
+                "G0 Z0.2000",
+                "G1 F20 Z-0.2500",
+                "G0 Z0.2000");
+        List<String> expected = new ArrayList<>();
+        expected.add("G90 G91.1 G94 G0 Z0.2000");
+        expected.add("X1.0000 Y2.0000");
+        expected.addAll(pecks);
+        expected.add("Z0.2000");
+        expected.add("X3.0000 Y4.0000");
+        expected.addAll(pecks);
+        Assertions.assertEquals(expected, generateLines(newRecipe(DrillCycleMode.MOVES, 0.1)));
+    }
+}
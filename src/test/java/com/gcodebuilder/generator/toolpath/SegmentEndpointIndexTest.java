@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator.toolpath;
+
+import com.gcodebuilder.geometry.LineSegment;
+import javafx.geometry.Point2D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class SegmentEndpointIndexTest {
+    private static final double TOLERANCE = 0.0001;
+
+    private static Toolpath.Segment segment(Toolpath.Connection from, Toolpath.Connection to) {
+        return new Toolpath.Segment(LineSegment.of(from.getConnectionPoint(), to.getConnectionPoint()),
+                1, true, from, to);
+    }
+
+    private static Toolpath.Connection connection(double x, double y) {
+        return new Toolpath.Connection(new Point2D(x, y));
+    }
+
+    private static void assertOriented(Toolpath.Segment expected, boolean flipped, Toolpath.Segment actual) {
+        Assertions.assertNotNull(actual);
+        if (flipped) {
+            Assertions.assertSame(expected.getToConnection(), actual.getFromConnection());
+            Assertions.assertSame(expected.getFromConnection(), actual.getToConnection());
+            Assertions.assertEquals(expected.getTo(), actual.getFrom());
+            Assertions.assertEquals(expected.getFrom(), actual.getTo());
+        } else {
+            Assertions.assertSame(expected, actual);
+        }
+    }
+
+    /**
+     * Linear scan of the remaining segments in order, which the index must match.
+     */
+    private static class LinearScan {
+        private final List<Toolpath.Segment> remaining;
+
+        LinearScan(List<Toolpath.Segment> segments) {
+            this.remaining = new ArrayList<>(segments);
+        }
+
+        boolean isEmpty() {
+            return remaining.isEmpty();
+        }
+
+        Toolpath.Segment pollFirst() {
+            return remaining.isEmpty() ? null : remaining.remove(0);
+        }
+
+        Toolpath.Segment pollConnected(Toolpath.Connection connection) {
+            for (int i = 0; i < remaining.size(); ++i) {
+                Toolpath.Segment segment = remaining.get(i);
+                if (segment.getFromConnection().equals(connection)) {
+                    return remaining.remove(i);
+                } else if (segment.getToConnection().equals(connection)) {
+                    return remaining.remove(i).flip();
+                }
+            }
+            return null;
+        }
+
+        Toolpath.Segment pollNear(Toolpath.Connection connection) {
+            Point2D point = connection.getConnectionPoint();
+            for (int i = 0; i < remaining.size(); ++i) {
+                Toolpath.Segment segment = remaining.get(i);
+                if (ToolpathGenerator.isSamePoint(point, segment.getFromConnection().getConnectionPoint())) {
+                    return remaining.remove(i);
+                } else if (ToolpathGenerator.isSamePoint(point, segment.getToConnection().getConnectionPoint())) {
+                    return remaining.remove(i).flip();
+                }
+            }
+            return null;
+        }
+
+        Toolpath.Segment findLastEndingAt(Toolpath.Connection connection) {
+            for (int i = remaining.size() - 1; i >= 0; --i) {
+                Toolpath.Connection toConnection = remaining.get(i).getToConnection();
+                if (toConnection.equals(connection) || ToolpathGenerator.isSamePoint(
+                        toConnection.getConnectionPoint(), connection.getConnectionPoint())) {
+                    return remaining.get(i);
+                }
+            }
+            return null;
+        }
+    }
+
+    private static void assertSameResult(Toolpath.Segment expected, Toolpath.Segment actual) {
+        if (expected == null) {
+            Assertions.assertNull(actual);
+        } else {
+            Assertions.assertNotNull(actual);
+            Assertions.assertSame(expected.getFromConnection(), actual.getFromConnection());
+            Assertions.assertSame(expected.getToConnection(), actual.getToConnection());
+            Assertions.assertEquals(expected.getFrom(), actual.getFrom());
+            Assertions.assertEquals(expected.getTo(), actual.getTo());
+        }
+    }
+
+    @Test
+    public void testPollNearWithinTolerance() {
+        Toolpath.Segment segment = segment(connection(0, 0), connection(1, 0));
+        SegmentEndpointIndex index = new SegmentEndpointIndex(Arrays.asList(segment), TOLERANCE);
+
+        Assertions.assertNull(index.pollNear(connection(1 + 2 * TOLERANCE, 0)));
+        Assertions.assertNull(index.pollNear(connection(0, -1.5 * TOLERANCE)));
+        Assertions.assertNull(index.pollNear(new Toolpath.Connection(null)));
+        assertOriented(segment, true, index.pollNear(connection(1 + TOLERANCE / 2, TOLERANCE / 2)));
+        Assertions.assertNull(index.pollNear(connection(0, 0)));
+        Assertions.assertNull(index.pollFirst());
+    }
+
+    @Test
+    public void testPollNearReturnsFirstMatch() {
+        Toolpath.Segment first = segment(connection(5, 5), connection(0, 0));
+        Toolpath.Segment second = segment(connection(TOLERANCE / 2, 0), connection(3, 3));
+        Toolpath.Segment third = segment(connection(0, -TOLERANCE / 2), connection(4, 4));
+        SegmentEndpointIndex index = new SegmentEndpointIndex(Arrays.asList(first, second, third), TOLERANCE);
+
+        Toolpath.Connection origin = connection(0, 0);
+        assertOriented(first, true, index.pollNear(origin));
+        assertOriented(second, false, index.pollNear(origin));
+        assertOriented(third, false, index.pollNear(origin));
+        Assertions.assertNull(index.pollNear(origin));
+    }
+
+    @Test
+    public void testPollConnected() {
+        Toolpath.Connection shared = new Toolpath.Connection(null);
+        Toolpath.Segment first = segment(connection(0, 0), connection(1, 0));
+        Toolpath.Segment second = new Toolpath.Segment(LineSegment.of(1, 0, 1, 1), 1, true,
+                connection(1, 0), shared);
+        Toolpath.Segment third = new Toolpath.Segment(LineSegment.of(1, 1, 0, 1), 1, true,
+                shared, connection(0, 1));
+        SegmentEndpointIndex index = new SegmentEndpointIndex(Arrays.asList(first, second, third), TOLERANCE);
+
+        // matching is by identity, so a connection at the same point does not match
+        Assertions.assertNull(index.pollConnected(connection(0, 0)));
+        assertOriented(second, true, index.pollConnected(shared));
+        assertOriented(third, false, index.pollConnected(shared));
+        Assertions.assertNull(index.pollConnected(shared));
+        assertOriented(first, false, index.pollFirst());
+        Assertions.assertNull(index.pollFirst());
+    }
+
+    @Test
+    public void testFindLastEndingAt() {
+        Toolpath.Connection shared = connection(2, 2);
+        Toolpath.Segment first = segment(connection(0, 0), shared);
+        Toolpath.Segment second = segment(connection(1, 0), connection(2 + TOLERANCE / 2, 2));
+        Toolpath.Segment third = segment(shared, connection(3, 0));
+        SegmentEndpointIndex index = new SegmentEndpointIndex(Arrays.asList(first, second, third), TOLERANCE);
+
+        Assertions.assertEquals(1, index.findLastEndingAt(shared));
+        Assertions.assertEquals(1, index.findLastEndingAt(connection(2, 2 - TOLERANCE / 2)));
+        Assertions.assertEquals(-1, index.findLastEndingAt(connection(2, 2 + 2 * TOLERANCE)));
+        Assertions.assertEquals(2, index.findLastEndingAt(connection(3, 0)));
+
+        assertOriented(first, false, index.pollFirst());
+        assertOriented(second, false, index.pollFirst());
+        Assertions.assertEquals(-1, index.findLastEndingAt(shared));
+    }
+
+    @Test
+    public void testMatchesLinearScan() {
+        Random random = new Random(17);
+        List<Toolpath.Connection> connections = new ArrayList<>();
+        for (int trial = 0; trial < 20; ++trial) {
+            // end points on a coarse grid, moved by up to the tolerance so some nearby points are the same and
+            // some are not, and some connections shared between segments
+            List<Toolpath.Segment> segments = new ArrayList<>();
+            for (int i = 0; i < 200; ++i) {
+                Toolpath.Connection from = (!connections.isEmpty() && random.nextInt(4) == 0)
+                        ? connections.get(random.nextInt(connections.size()))
+                        : connection(random.nextInt(8) + TOLERANCE * (2 * random.nextDouble() - 1),
+                        random.nextInt(8) + TOLERANCE * (2 * random.nextDouble() - 1));
+                Toolpath.Connection to = connection(random.nextInt(8) + TOLERANCE * (2 * random.nextDouble() - 1),
+                        random.nextInt(8) + TOLERANCE * (2 * random.nextDouble() - 1));
+                connections.add(to);
+                segments.add(segment(from, to));
+            }
+
+            SegmentEndpointIndex index = new SegmentEndpointIndex(segments, TOLERANCE);
+            LinearScan linearScan = new LinearScan(segments);
+            while (!linearScan.isEmpty()) {
+                Toolpath.Connection connection = connections.get(random.nextInt(connections.size()));
+                if (random.nextBoolean()) {
+                    connection = connection(connection.getConnectionPoint().getX() + TOLERANCE / 2,
+                            connection.getConnectionPoint().getY() - TOLERANCE / 2);
+                }
+                Toolpath.Segment last = linearScan.findLastEndingAt(connection);
+                Assertions.assertEquals(last == null ? -1 : segments.indexOf(last),
+                        index.findLastEndingAt(connection));
+
+                switch (random.nextInt(3)) {
+                    case 0:
+                        assertSameResult(linearScan.pollFirst(), index.pollFirst());
+                        break;
+                    case 1:
+                        assertSameResult(linearScan.pollConnected(connection), index.pollConnected(connection));
+                        break;
+                    default:
+                        assertSameResult(linearScan.pollNear(connection), index.pollNear(connection));
+                        break;
+                }
+            }
+            Assertions.assertNull(index.pollFirst());
+        }
+    }
+}
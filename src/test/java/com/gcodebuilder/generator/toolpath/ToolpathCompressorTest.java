@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator.toolpath;
+
+import com.gcodebuilder.geometry.ArcSegment;
+import com.gcodebuilder.geometry.LineSegment;
+import com.gcodebuilder.geometry.PathSegment;
+import com.gcodebuilder.model.GCodeBuilder;
+import com.gcodebuilder.model.GCodeVisitor;
+import com.gcodebuilder.model.GCodeWord;
+import com.gcodebuilder.model.MotionMode;
+import javafx.geometry.Point2D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ToolpathCompressorTest {
+    private static final double TOLERANCE = 0.01;
+    private static final double DELTA = 1e-6;
+
+    // rebuilds the segments written by a compressor, which writes absolute XY moves with incremental IJ offsets
+    private static class SegmentCollector implements GCodeVisitor {
+        private final List<PathSegment> segments = new ArrayList<>();
+        private Point2D current;
+        private MotionMode motionMode;
+        private Double x;
+        private Double y;
+        private double i;
+        private double j;
+
+        private SegmentCollector(Point2D start) {
+            this.current = start;
+        }
+
+        @Override
+        public void param(char letter, double value) {
+            switch (letter) {
+                case 'X':
+                    x = value;
+                    break;
+                case 'Y':
+                    y = value;
+                    break;
+                case 'I':
+                    i = value;
+                    break;
+                case 'J':
+                    j = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void word(GCodeWord word) {
+            if (word instanceof MotionMode) {
+                motionMode = (MotionMode)word;
+            }
+        }
+
+        @Override
+        public void endLine(long lineNumber) {
+            if (x != null || y != null) {
+                Point2D to = new Point2D(x != null ? x : current.getX(), y != null ? y : current.getY());
+                if (motionMode == MotionMode.LINEAR) {
+                    segments.add(LineSegment.of(current, to));
+                } else {
+                    segments.add(ArcSegment.of(current, current.add(i, j), to, motionMode == MotionMode.CW_ARC));
+                }
+                current = to;
+            }
+            x = null;
+            y = null;
+        }
+    }
+
+    private static List<PathSegment> compress(List<Point2D> points, double tolerance) {
+        GCodeBuilder builder = new GCodeBuilder();
+        ToolpathCompressor compressor = new ToolpathCompressor(builder, 100, tolerance);
+        for (int k = 1; k < points.size(); ++k) {
+            compressor.add(LineSegment.of(points.get(k - 1), points.get(k)));
+        }
+        compressor.flush();
+        Assertions.assertEquals(points.size() - 1, compressor.getInputMoveCount());
+
+        SegmentCollector collector = new SegmentCollector(points.get(0));
+        builder.build().accept(collector);
+        Assertions.assertEquals(compressor.getOutputMoveCount(), collector.segments.size());
+        return collector.segments;
+    }
+
+    private static double distanceToSegments(Point2D point, List<PathSegment> segments) {
+        // sample each segment densely enough that the sampling error is small compared to the tolerance
+        double distance = Double.POSITIVE_INFINITY;
+        for (PathSegment segment : segments) {
+            int sampleCount = (int)Math.ceil(segment.getLength() / (TOLERANCE / 100)) + 1;
+            for (int k = 0; k <= sampleCount; ++k) {
+                Point2D sample = segment.pointOnSegment(segment.getLength() * k / sampleCount);
+                distance = Math.min(distance, sample.distance(point));
+            }
+        }
+        return distance;
+    }
+
+    private static void assertWithinTolerance(List<Point2D> points, List<PathSegment> segments) {
+        for (Point2D point : points) {
+            double distance = distanceToSegments(point, segments);
+            Assertions.assertTrue(distance <= TOLERANCE * 1.01, String.format("%s is %g from output", point, distance));
+        }
+        PathSegment last = segments.get(segments.size() - 1);
+        Assertions.assertEquals(0, segments.get(0).getFrom().distance(points.get(0)), DELTA);
+        Assertions.assertEquals(0, last.getTo().distance(points.get(points.size() - 1)), DELTA);
+        for (int k = 1; k < segments.size(); ++k) {
+            Assertions.assertEquals(0, segments.get(k - 1).getTo().distance(segments.get(k).getFrom()), DELTA);
+        }
+    }
+
+    private static List<Point2D> arcPoints(Point2D center, double radius, double fromDegrees, double toDegrees,
+                                           int segmentCount) {
+        List<Point2D> points = new ArrayList<>();
+        for (int k = 0; k <= segmentCount; ++k) {
+            double angle = Math.toRadians(fromDegrees + (toDegrees - fromDegrees) * k / segmentCount);
+            points.add(center.add(radius * Math.cos(angle), radius * Math.sin(angle)));
+        }
+        return points;
+    }
+
+    private static List<Point2D> linePoints(Point2D from, Point2D to, int segmentCount) {
+        List<Point2D> points = new ArrayList<>();
+        for (int k = 0; k <= segmentCount; ++k) {
+            points.add(from.add(to.subtract(from).multiply((double)k / segmentCount)));
+        }
+        return points;
+    }
+
+    private static void appendPoints(List<Point2D> points, List<Point2D> morePoints) {
+        // the first point of morePoints is the last point of points
+        points.addAll(morePoints.subList(1, morePoints.size()));
+    }
+
+    @Test
+    public void testCollinearRunFitsLine() {
+        List<Point2D> points = linePoints(new Point2D(1, 2), new Point2D(11, 7), 40);
+        List<PathSegment> segments = compress(points, TOLERANCE);
+        Assertions.assertEquals(1, segments.size());
+        Assertions.assertTrue(segments.get(0) instanceof LineSegment);
+        assertWithinTolerance(points, segments);
+    }
+
+    @Test
+    public void testCircularRunFitsArc() {
+        Point2D center = new Point2D(3, -2);
+        List<Point2D> points = arcPoints(center, 5, 10, 120, 50);
+        List<PathSegment> segments = compress(points, TOLERANCE);
+        Assertions.assertEquals(1, segments.size());
+        Assertions.assertTrue(segments.get(0) instanceof ArcSegment);
+        ArcSegment arc = (ArcSegment)segments.get(0);
+        Assertions.assertFalse(arc.isClockwise());
+        Assertions.assertEquals(0, arc.getCenter().distance(center), TOLERANCE);
+        assertWithinTolerance(points, segments);
+
+        List<Point2D> reversed = arcPoints(center, 5, 120, 10, 50);
+        List<PathSegment> reversedSegments = compress(reversed, TOLERANCE);
+        Assertions.assertEquals(1, reversedSegments.size());
+        Assertions.assertTrue(((ArcSegment)reversedSegments.get(0)).isClockwise());
+    }
+
+    @Test
+    public void testNoisyCurveStaysWithinTolerance() {
+        List<Point2D> points = new ArrayList<>();
+        for (int k = 0; k <= 2000; ++k) {
+            double x = k * 0.01;
+            // curvature changes continuously, with a small ripple well below the tolerance
+            points.add(new Point2D(x, 2 * Math.sin(x / 3) + 0.5 * Math.sin(x) + 0.001 * Math.sin(37 * x)));
+        }
+        List<PathSegment> segments = compress(points, TOLERANCE);
+        Assertions.assertTrue(segments.size() < points.size() / 10, "compressed to " + segments.size());
+        assertWithinTolerance(points, segments);
+    }
+
+    @Test
+    public void testSharpCornerSplitsRun() {
+        Point2D corner = new Point2D(5, 0);
+        List<Point2D> points = linePoints(Point2D.ZERO, corner, 10);
+        appendPoints(points, linePoints(corner, new Point2D(5, 5), 10));
+        List<PathSegment> segments = compress(points, TOLERANCE);
+        Assertions.assertEquals(2, segments.size());
+        Assertions.assertTrue(segments.get(0) instanceof LineSegment);
+        Assertions.assertTrue(segments.get(1) instanceof LineSegment);
+        Assertions.assertEquals(0, segments.get(0).getTo().distance(corner), DELTA);
+        assertWithinTolerance(points, segments);
+    }
+
+    @Test
+    public void testReversalSplitsRun() {
+        // doubling back along the same line stays within tolerance of the chord, but must not be merged into it
+        Point2D turn = new Point2D(5, 0);
+        List<Point2D> points = linePoints(Point2D.ZERO, turn, 10);
+        appendPoints(points, linePoints(turn, new Point2D(2, 0), 6));
+        List<PathSegment> segments = compress(points, TOLERANCE);
+        Assertions.assertEquals(2, segments.size());
+        Assertions.assertEquals(0, segments.get(0).getTo().distance(turn), DELTA);
+        assertWithinTolerance(points, segments);
+    }
+
+    @Test
+    public void testTurnDirectionChangeSplitsArc() {
+        // an S curve turns counter-clockwise and then clockwise, so it needs at least one arc in each direction
+        List<Point2D> points = arcPoints(new Point2D(0, 5), 5, 270, 360, 30);
+        appendPoints(points, arcPoints(new Point2D(10, 5), 5, 180, 90, 30));
+        List<PathSegment> segments = compress(points, TOLERANCE);
+        Assertions.assertEquals(2, segments.size());
+        Assertions.assertFalse(((ArcSegment)segments.get(0)).isClockwise());
+        Assertions.assertTrue(((ArcSegment)segments.get(1)).isClockwise());
+        assertWithinTolerance(points, segments);
+    }
+
+    @Test
+    public void testZeroToleranceWritesSegmentsUnchanged() {
+        List<Point2D> points = linePoints(Point2D.ZERO, new Point2D(10, 0), 20);
+        List<PathSegment> segments = compress(points, 0);
+        Assertions.assertEquals(points.size() - 1, segments.size());
+        for (int k = 0; k < segments.size(); ++k) {
+            Assertions.assertTrue(segments.get(k) instanceof LineSegment);
+            Assertions.assertEquals(0, segments.get(k).getFrom().distance(points.get(k)), DELTA);
+            Assertions.assertEquals(0, segments.get(k).getTo().distance(points.get(k + 1)), DELTA);
+        }
+    }
+
+    @Test
+    public void testArcSegmentsWrittenUnchanged() {
+        GCodeBuilder builder = new GCodeBuilder();
+        ToolpathCompressor compressor = new ToolpathCompressor(builder, 100, TOLERANCE);
+        compressor.add(LineSegment.of(0, 0, 1, 0));
+        compressor.add(LineSegment.of(1, 0, 2, 0));
+        compressor.add(ArcSegment.of(new Point2D(2, 0), new Point2D(2, 1), new Point2D(3, 1), false));
+        compressor.add(LineSegment.of(3, 1, 3, 2));
+        compressor.flush();
+        Assertions.assertEquals(4, compressor.getInputMoveCount());
+        Assertions.assertEquals(3, compressor.getOutputMoveCount());
+
+        SegmentCollector collector = new SegmentCollector(Point2D.ZERO);
+        builder.build().accept(collector);
+        Assertions.assertEquals(3, collector.segments.size());
+        Assertions.assertTrue(collector.segments.get(1) instanceof ArcSegment);
+        Assertions.assertEquals(0, collector.segments.get(1).getTo().distance(new Point2D(3, 1)), DELTA);
+    }
+}
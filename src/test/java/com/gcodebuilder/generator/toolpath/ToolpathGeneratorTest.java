@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.generator.toolpath;
+
+import com.gcodebuilder.geometry.LineSegment;
+import com.gcodebuilder.geometry.Path;
+import com.gcodebuilder.geometry.PathSegment;
+import com.gcodebuilder.geometry.Point;
+import com.gcodebuilder.model.Direction;
+import com.gcodebuilder.model.Side;
+import javafx.geometry.Point2D;
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ToolpathGeneratorTest {
+    private static final double DELTA = 1e-6;
+
+    private static Path polygon(double... coords) {
+        Path path = new Path();
+        for (int i = 0; i < coords.length; i += 2) {
+            path.addPoint(coords[i], coords[i + 1]);
+        }
+        path.closePath();
+        return path;
+    }
+
+    private static Point2D polar(Point2D center, double radius, double degrees) {
+        double angle = Math.toRadians(degrees);
+        return center.add(radius * Math.cos(angle), radius * Math.sin(angle));
+    }
+
+    private static Path wedge(double radius, double fromDegrees, double toDegrees) {
+        // closed path following a clockwise arc around the origin, with straight sides back to the origin
+        Path path = new Path();
+        path.addPoint(polar(Point2D.ZERO, radius, fromDegrees));
+        path.addPoint(Point2D.ZERO, Point.Type.CW_CENTER);
+        path.addPoint(polar(Point2D.ZERO, radius, toDegrees));
+        path.addPoint(Point2D.ZERO);
+        path.closePath();
+        return path;
+    }
+
+    private static List<PathSegment> getAllSegments(List<Toolpath> toolpaths) {
+        List<PathSegment> segments = new ArrayList<>();
+        toolpaths.forEach(toolpath -> toolpath.getSegments().forEach(segment -> segments.add(segment.getSegment())));
+        return segments;
+    }
+
+    private static boolean isEndpoint(PathSegment segment, Point2D point) {
+        return segment.getFrom().distance(point) < DELTA || segment.getTo().distance(point) < DELTA;
+    }
+
+    private static void assertNoCrossings(List<Toolpath> toolpaths) {
+        List<PathSegment> segments = getAllSegments(toolpaths);
+        for (int i = 0; i < segments.size(); ++i) {
+            for (int j = i + 1; j < segments.size(); ++j) {
+                PathSegment a = segments.get(i);
+                PathSegment b = segments.get(j);
+                for (PathSegment.IntersectionPoint intersection : a.intersect(b)) {
+                    Point2D point = intersection.getPoint();
+                    Assertions.assertFalse(intersection.isOnSegments()
+                                    && !(isEndpoint(a, point) && isEndpoint(b, point)),
+                            String.format("%s crosses %s at %s", a, b, point));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testProfileSplitsAtArcBulge() {
+        // the arc runs clockwise from 340 to 60 degrees, and the square is close enough to cross its offset only
+        // where the arc extends right of its end point
+        ToolpathGenerator generator = new ToolpathGenerator();
+        generator.setToolRadius(0.1);
+        generator.addPath(wedge(10, 340, 60));
+        generator.addPath(polygon(7.7, -20, 15, -20, 15, -6.5, 7.7, -6.5));
+
+        List<Toolpath> toolpaths = generator.computeProfileToolpaths(Side.OUTSIDE, Direction.CLOCKWISE);
+        Assertions.assertEquals(1, toolpaths.size());
+        assertNoCrossings(toolpaths);
+    }
+
+    @Test
+    public void testPocketConnectionsAvoidArcs() {
+        // the square is next to the part of the wedge arc that extends right of its end points, so connecting
+        // pockets in a straight line would cross the pocket arcs there
+        ToolpathGenerator generator = new ToolpathGenerator();
+        generator.setToolRadius(1);
+        generator.setStepOver(0.5);
+        generator.addPath(wedge(10, 90, 170));
+        Point2D center = polar(Point2D.ZERO, 14, 20);
+        generator.addPath(polygon(center.getX() - 3, center.getY() - 3, center.getX() + 3, center.getY() - 3,
+                center.getX() + 3, center.getY() + 3, center.getX() - 3, center.getY() + 3));
+
+        ToolpathResult result = generator.computePocketResult(Direction.CLOCKWISE);
+        List<PathSegment> pocketSegments = getAllSegments(result.getPocketToolpaths());
+        int connectionCount = 0;
+        for (Toolpath toolpath : result.getToolpaths()) {
+            if (toolpath.hasNext()) {
+                Point2D from = toolpath.getLastSegment().getTo();
+                Point2D to = toolpath.getNext().getFirstSegment().getFrom();
+                LineSegment connection = LineSegment.of(from, to);
+                for (PathSegment segment : pocketSegments) {
+                    for (PathSegment.IntersectionPoint intersection : segment.intersect(connection)) {
+                        Point2D point = intersection.getPoint();
+                        Assertions.assertFalse(intersection.isOnSegments()
+                                        && point.distance(from) > DELTA && point.distance(to) > DELTA,
+                                String.format("%s crosses %s at %s", connection, segment, point));
+                    }
+                }
+                ++connectionCount;
+            }
+        }
+        Assertions.assertTrue(connectionCount > 0);
+    }
+
+    @Test
+    public void testStageEventsOnlyCreatedWhileRecording() {
+        Assertions.assertNull(ToolpathStageEvent.begin("test", ToolpathStageEvent.NO_LAYER, 0));
+        try (Recording recording = new Recording()) {
+            recording.enable(ToolpathStageEvent.class);
+            recording.start();
+            ToolpathStageEvent event = ToolpathStageEvent.begin("test", ToolpathStageEvent.NO_LAYER, 0);
+            Assertions.assertNotNull(event);
+            event.end(0, 0);
+        }
+    }
+}
@@ -16,15 +16,22 @@
 
 package com.gcodebuilder.geometry;
 
+import javafx.geometry.Point2D;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
 
 
 public class DrawingTest {
@@ -70,6 +77,28 @@ public class DrawingTest {
         saveTest(original);
     }
 
+    @Test
+    public void testGetShapesNear() {
+        Drawing drawing = new Drawing();
+        Rectangle rectangle = new Rectangle(0, 0, 2, 2);
+        Circle circle = new Circle(new Point(10, 10), 1);
+        Rectangle largeRectangle = new Rectangle(1, 1, 10, 10);
+        drawing.add(rectangle);
+        drawing.add(circle);
+        drawing.add(0, largeRectangle);
+
+        Point2D point = new Point2D(1, 2);
+        Assertions.assertEquals(List.of(largeRectangle, rectangle), drawing.getShapesNear(point, point, 0.1));
+
+        circle.move(new Point2D(-9, -9));
+        drawing.updateShapeIndex(circle);
+        Assertions.assertEquals(List.of(largeRectangle, rectangle, circle),
+                drawing.getShapesNear(point, point, 0.1));
+
+        drawing.remove(rectangle);
+        Assertions.assertEquals(List.of(largeRectangle, circle), drawing.getShapesNear(point, point, 0.1));
+    }
+
     @Test
     public void testOpenDrawingFromFile() throws IOException {
         try (InputStream in = getClass().getResourceAsStream("test_all_shapes.json")) {
@@ -78,4 +107,112 @@ public class DrawingTest {
             log.info("loaded from file: {}", loaded);
         }
     }
+
+    private static Drawing loadTestDrawing() throws IOException {
+        try (InputStream in = DrawingTest.class.getResourceAsStream("test_all_shapes.json")) {
+            return Drawing.load(in);
+        }
+    }
+
+    private static byte[] saveBinary(Drawing drawing) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        drawing.saveBinary(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testSaveBinaryDrawing() throws IOException {
+        Drawing original = loadTestDrawing();
+        Group group = new Group(List.of(new Rectangle(0.1, 0.2, 0.3, 0.4),
+                new Path(List.of(new Point(1.0 / 3, 0), new Point(0, 2.0 / 3, Point.Type.CCW_CENTER),
+                        new Point(-1.0 / 3, 0)), false)));
+        group.setRecipeId(7);
+        original.add(group);
+
+        Drawing loaded = Drawing.load(new ByteArrayInputStream(saveBinary(original)));
+        Assertions.assertEquals(original.getLengthUnit(), loaded.getLengthUnit());
+        Assertions.assertEquals(original.getRecipes().size(), loaded.getRecipes().size());
+        Assertions.assertEquals(original.getShapes().subList(0, 5), loaded.getShapes().subList(0, 5));
+        Group loadedGroup = (Group)loaded.getShapes().get(5);
+        Assertions.assertEquals(7, loadedGroup.getRecipeId());
+        Assertions.assertEquals(group.getShapes(), loadedGroup.getShapes());
+    }
+
+    @Test
+    public void testReadBinaryShapesLazily() throws IOException {
+        Drawing original = loadTestDrawing();
+        DrawingFile file = DrawingFile.wrap(ByteBuffer.wrap(saveBinary(original)));
+        Assertions.assertEquals(original.getShapes().size(), file.getShapeCount());
+        Shape<?> path = file.readShape(2);
+        Assertions.assertEquals(original.getShapes().get(2), path);
+        Assertions.assertSame(path, file.getShapes().get(2));
+        Assertions.assertEquals(original.getShapes(), file.getShapes());
+    }
+
+    private static java.nio.file.Path createTempFile(String extension) throws IOException {
+        java.nio.file.Path file = Files.createTempFile("drawing", "." + extension);
+        // mapped files cannot be deleted on some platforms until the mapping is garbage collected
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void testOpenBinaryDrawingFile() throws IOException {
+        Drawing original = loadTestDrawing();
+        java.nio.file.Path file = createTempFile(DrawingFile.EXTENSION);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            original.saveBinary(out);
+        }
+
+        DrawingFile drawingFile = DrawingFile.open(file);
+        Assertions.assertEquals(original.getShapes().size(), drawingFile.getShapeCount());
+        Shape<?> path = drawingFile.readShape(2);
+        Assertions.assertEquals(original.getShapes().get(2), path);
+        Assertions.assertSame(path, drawingFile.readShape(2));
+        Assertions.assertEquals(original.getShapes(), drawingFile.getShapes());
+
+        Drawing loaded = Drawing.loadFromFile(file);
+        Assertions.assertEquals(original.getLengthUnit(), loaded.getLengthUnit());
+        Assertions.assertEquals(original.getRecipes().size(), loaded.getRecipes().size());
+        assertEquivalentDrawing(original, loaded);
+    }
+
+    @Test
+    public void testLoadJsonDrawingFromFile() throws IOException {
+        Drawing original = loadTestDrawing();
+        java.nio.file.Path file = createTempFile("json");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            original.save(out);
+        }
+        assertEquivalentDrawing(original, Drawing.loadFromFile(file));
+    }
+
+    @Test
+    public void testOpenInvalidDrawingFile() throws IOException {
+        java.nio.file.Path file = createTempFile(DrawingFile.EXTENSION);
+        Files.write(file, new byte[] {'G', 'C', 'B', 'P', 0, 0, 0});
+        Assertions.assertThrows(IOException.class, () -> DrawingFile.open(file));
+    }
+
+    @Test
+    public void testSaveCopy() throws IOException {
+        Drawing original = new Drawing();
+        Rectangle rectangle = new Rectangle(1, 2, 3, 4);
+        Circle circle = new Circle(new Point(1, 2), 3);
+        original.add(rectangle);
+        original.add(circle);
+        original.setSelectedShapes(circle);
+
+        // edits after saving do not change the copy
+        Drawing.SavedCopy savedCopy = original.saveCopy();
+        rectangle.move(new Point2D(5, 5));
+        original.add(new Circle(new Point(4, 4), 1));
+        original.setSelectedShapes(rectangle);
+
+        Drawing copy = savedCopy.read();
+        Assertions.assertEquals(List.of(new Rectangle(1, 2, 3, 4), new Circle(new Point(1, 2), 3)), copy.getShapes());
+        Assertions.assertFalse(copy.getShapes().get(0).isSelected());
+        Assertions.assertTrue(copy.getShapes().get(1).isSelected());
+        Assertions.assertNotSame(copy.getShapes().get(0), savedCopy.read().getShapes().get(0));
+    }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.geometry;
+
+import javafx.geometry.Point2D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+public class KdTreeTest {
+    private static <T> List<T> toList(Iterator<T> iterator) {
+        List<T> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    @Test
+    public void testNearestOrderMatchesSortedDistance() {
+        Random random = new Random(1);
+        List<Point2D> points = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            // coarse coordinates so many points are at the same distance
+            points.add(new Point2D(random.nextInt(20), random.nextInt(20)));
+        }
+        KdTree<Point2D> tree = new KdTree<>(points, Function.identity());
+        for (int i = 0; i < 20; ++i) {
+            Point2D query = new Point2D(random.nextInt(20), random.nextInt(20));
+            List<Point2D> expected = new ArrayList<>(points);
+            // stable sort keeps points at the same distance in their original order
+            expected.sort(Comparator.comparingDouble(point -> {
+                double dx = point.getX() - query.getX();
+                double dy = point.getY() - query.getY();
+                return dx * dx + dy * dy;
+            }));
+            List<Point2D> actual = toList(tree.nearest(query));
+            Assertions.assertEquals(expected.size(), actual.size());
+            for (int j = 0; j < expected.size(); ++j) {
+                Assertions.assertSame(expected.get(j), actual.get(j));
+            }
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        Point2D a = new Point2D(0, 0);
+        Point2D b = new Point2D(1, 0);
+        Point2D c = new Point2D(2, 0);
+        KdTree<Point2D> tree = new KdTree<>(List.of(a, b, c), Function.identity());
+        Assertions.assertTrue(tree.remove(b));
+        Assertions.assertFalse(tree.remove(b));
+        Assertions.assertFalse(tree.contains(b));
+        Assertions.assertEquals(2, tree.size());
+        Assertions.assertEquals(List.of(c, a), toList(tree.nearest(new Point2D(3, 0))));
+        Assertions.assertTrue(tree.remove(a));
+        Assertions.assertTrue(tree.remove(c));
+        Assertions.assertTrue(tree.isEmpty());
+        Assertions.assertFalse(tree.nearest(a).hasNext());
+    }
+}
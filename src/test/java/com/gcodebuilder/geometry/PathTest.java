@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.geometry;
+
+import javafx.geometry.Point2D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class PathTest {
+    private static final double HANDLE_RADIUS = 0.15;
+
+    private static Point2D polar(double radius, double degrees) {
+        double angle = Math.toRadians(degrees);
+        return new Point2D(radius * Math.cos(angle), radius * Math.sin(angle));
+    }
+
+    private static Path createScallopedPath(int vertexCount) {
+        // polygon with every other side replaced by a half circle, alternating bumps out and in
+        Path path = new Path();
+        for (int i = 0; i < vertexCount; ++i) {
+            Point2D from = polar(4, 360.0 * i / vertexCount);
+            Point2D to = polar(4, 360.0 * (i + 1) / vertexCount);
+            path.addPoint(from);
+            if (i % 2 == 0) {
+                path.addPoint(from.midpoint(to), (i % 4 == 0) ? Point.Type.CW_CENTER : Point.Type.CCW_CENTER);
+            }
+        }
+        path.closePath();
+        return path;
+    }
+
+    private static Path.Handle findHandleLinear(Path path, Point2D mousePoint) {
+        List<Point> points = path.getPoints();
+        for (int pointIndex = 0; pointIndex < points.size(); ++pointIndex) {
+            if (points.get(pointIndex).isSame(mousePoint, HANDLE_RADIUS)) {
+                return path.new Handle(pointIndex);
+            }
+        }
+        List<PathSegment> segments = path.getSegments();
+        for (int segmentIndex = 0, pointIndex = 0; segmentIndex < segments.size(); ++segmentIndex, ++pointIndex) {
+            PathSegment segment = segments.get(segmentIndex);
+            Point2D projectedPoint = segment.project(mousePoint);
+            if (projectedPoint != null && projectedPoint.distance(mousePoint) < HANDLE_RADIUS) {
+                return path.new Handle(pointIndex, projectedPoint);
+            }
+            if (segment instanceof ArcSegment) {
+                ++pointIndex;
+            }
+        }
+        return null;
+    }
+
+    private static int assertSameHandles(Path path) {
+        int handleCount = 0;
+        for (double x = -5; x <= 5; x += 0.05) {
+            for (double y = -5; y <= 5; y += 0.05) {
+                Point2D mousePoint = new Point2D(x, y);
+                Path.Handle expected = findHandleLinear(path, mousePoint);
+                Path.Handle actual = path.getHandle(mousePoint, mousePoint, HANDLE_RADIUS);
+                if (expected == null) {
+                    Assertions.assertNull(actual, mousePoint.toString());
+                } else {
+                    Assertions.assertNotNull(actual, mousePoint.toString());
+                    Assertions.assertEquals(expected.getPointIndex(), actual.getPointIndex(), mousePoint.toString());
+                    Assertions.assertEquals(expected.getHandlePoint(), actual.getHandlePoint(),
+                            mousePoint.toString());
+                    ++handleCount;
+                }
+            }
+        }
+        return handleCount;
+    }
+
+    @Test
+    public void testIndexedHandlesMatchLinearScan() {
+        Path path = createScallopedPath(48);
+        Assertions.assertTrue(path.getPointCount() > 32);
+        Assertions.assertTrue(assertSameHandles(path) > 0);
+    }
+
+    @Test
+    public void testIndexedHandlesAfterEdit() {
+        Path path = createScallopedPath(48);
+        assertSameHandles(path);
+
+        // the index is rebuilt when the segments change
+        path.updatePoint(1, new Point(0, 0));
+        assertSameHandles(path);
+        path.insertPoint(5, new Point(3, -3));
+        assertSameHandles(path);
+        path.removePoint(10);
+        assertSameHandles(path);
+    }
+
+    @Test
+    public void testSmallPathHandles() {
+        Path path = createScallopedPath(8);
+        Assertions.assertTrue(path.getPointCount() < 32);
+        Assertions.assertTrue(assertSameHandles(path) > 0);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.geometry;
+
+import javafx.geometry.Point2D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PreparedPathTest {
+    private static void assertSameAsPointInsidePath(List<PathSegment> path) {
+        PreparedPath preparedPath = new PreparedPath(path);
+        for (double x = -6; x <= 6; x += 0.25) {
+            for (double y = -6; y <= 6; y += 0.25) {
+                Point2D point = new Point2D(x, y);
+                Assertions.assertEquals(PathSegment.isPointInsidePath(path, point), preparedPath.isPointInside(point),
+                        point.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testStarWithLines() {
+        List<PathSegment> path = new ArrayList<>();
+        int vertexCount = 24;
+        for (int i = 0; i < vertexCount; ++i) {
+            double fromRadius = (i % 2 == 0) ? 5 : 2;
+            double toRadius = (i % 2 == 0) ? 2 : 5;
+            double fromAngle = 2 * Math.PI * i / vertexCount;
+            double toAngle = 2 * Math.PI * (i + 1) / vertexCount;
+            path.add(LineSegment.of(
+                    fromRadius * Math.cos(fromAngle), fromRadius * Math.sin(fromAngle),
+                    toRadius * Math.cos(toAngle), toRadius * Math.sin(toAngle)));
+        }
+        assertSameAsPointInsidePath(path);
+    }
+
+    @Test
+    public void testRectangleWithRoundedCorners() {
+        List<PathSegment> path = List.of(
+                LineSegment.of(-3, -4, 3, -4),
+                ArcSegment.of(new Point2D(3, -4), new Point2D(3, -3), new Point2D(4, -3), false),
+                LineSegment.of(4, -3, 4, 3),
+                ArcSegment.of(new Point2D(4, 3), new Point2D(3, 3), new Point2D(3, 4), false),
+                LineSegment.of(3, 4, -3, 4),
+                ArcSegment.of(new Point2D(-3, 4), new Point2D(-3, 3), new Point2D(-4, 3), false),
+                LineSegment.of(-4, 3, -4, -3),
+                ArcSegment.of(new Point2D(-4, -3), new Point2D(-3, -3), new Point2D(-3, -4), false));
+        assertSameAsPointInsidePath(path);
+    }
+
+    @Test
+    public void testEmptyPath() {
+        Assertions.assertFalse(new PreparedPath(List.of()).isPointInside(new Point2D(0, 0)));
+    }
+}
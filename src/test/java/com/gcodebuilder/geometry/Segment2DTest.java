@@ -66,4 +66,45 @@ public class Segment2DTest {
                 projectPointTestArgs(1, 1, 3, 3, 2, 1, 1.5, 1.5)
         );
     }
+
+    @ParameterizedTest
+    @MethodSource("arcBoundsTestArgs")
+    public void testArcBounds(double fromAngle, double toAngle, boolean clockwise) {
+        Point2D center = new Point2D(10, 0);
+        Point2D from = center.add(Math.cos(Math.toRadians(fromAngle)), Math.sin(Math.toRadians(fromAngle)));
+        Point2D to = center.add(Math.cos(Math.toRadians(toAngle)), Math.sin(Math.toRadians(toAngle)));
+        ArcSegment arc = ArcSegment.of(from, center, to, clockwise);
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        int sampleCount = 720;
+        for (int i = 0; i <= sampleCount; ++i) {
+            Point2D point = arc.pointOnSegment(arc.getLength() * i / sampleCount);
+            minX = Math.min(minX, point.getX());
+            minY = Math.min(minY, point.getY());
+            maxX = Math.max(maxX, point.getX());
+            maxY = Math.max(maxY, point.getY());
+        }
+
+        // the bounds may be larger than the arc, but every point on the arc must be inside them
+        Assertions.assertTrue(arc.getMinX() <= minX + DELTA, "minX");
+        Assertions.assertTrue(arc.getMinY() <= minY + DELTA, "minY");
+        Assertions.assertTrue(arc.getMaxX() >= maxX - DELTA, "maxX");
+        Assertions.assertTrue(arc.getMaxY() >= maxY - DELTA, "maxY");
+    }
+
+    public static Stream<Arguments> arcBoundsTestArgs() {
+        Stream.Builder<Arguments> args = Stream.builder();
+        for (double fromAngle = 0; fromAngle < 360; fromAngle += 20) {
+            for (double toAngle = 10; toAngle < 360; toAngle += 20) {
+                args.add(Arguments.of(fromAngle, toAngle, true));
+                args.add(Arguments.of(fromAngle, toAngle, false));
+            }
+        }
+        args.add(Arguments.of(340.0, 60.0, true));
+        args.add(Arguments.of(300.0, 60.0, false));
+        return args.build();
+    }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.geometry;
+
+import javafx.geometry.Rectangle2D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class SpatialGridTest {
+    private static class Item {
+        private final double minX;
+        private final double minY;
+        private final double maxX;
+        private final double maxY;
+
+        private Item(double minX, double minY, double maxX, double maxY) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        private boolean overlaps(double minX, double minY, double maxX, double maxY) {
+            return this.minX <= maxX && minX <= this.maxX && this.minY <= maxY && minY <= this.maxY;
+        }
+    }
+
+    private static List<Item> linearQuery(List<Item> items, double minX, double minY, double maxX, double maxY) {
+        List<Item> found = new ArrayList<>();
+        for (Item item : items) {
+            if (item.overlaps(minX, minY, maxX, maxY)) {
+                found.add(item);
+            }
+        }
+        return found;
+    }
+
+    @Test
+    public void testQueryMatchesLinearSearch() {
+        Random random = new Random(42);
+        List<Item> items = new ArrayList<>();
+        SpatialGrid<Item> grid = new SpatialGrid<>(5);
+        for (int i = 0; i < 500; ++i) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            // a few items are much larger than a cell, so they are kept out of the cells
+            double size = (i % 50 == 0) ? 80 : random.nextDouble() * 8;
+            Item item = new Item(x, y, x + size, y + random.nextDouble() * size);
+            items.add(item);
+            grid.insert(item, item.minX, item.minY, item.maxX, item.maxY);
+        }
+        Assertions.assertEquals(items.size(), grid.size());
+
+        for (int i = 0; i < 200; ++i) {
+            double x = random.nextDouble() * 110 - 5;
+            double y = random.nextDouble() * 110 - 5;
+            double size = (i % 20 == 0) ? 90 : random.nextDouble() * 15;
+            Assertions.assertEquals(linearQuery(items, x, y, x + size, y + size),
+                    grid.query(x, y, x + size, y + size));
+        }
+    }
+
+    @Test
+    public void testQueryReturnsInsertionOrder() {
+        SpatialGrid<Item> grid = new SpatialGrid<>(1);
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            items.add(new Item(9 - i, 0, 10 + i, 1));
+        }
+        // items are inserted in a different order than the cells are visited
+        List<Item> insertOrder = new ArrayList<>(items);
+        Collections.reverse(insertOrder);
+        insertOrder.forEach(item -> grid.insert(item, item.minX, item.minY, item.maxX, item.maxY));
+
+        Assertions.assertEquals(insertOrder, grid.query(0, 0, 20, 1));
+    }
+
+    @Test
+    public void testPadding() {
+        SpatialGrid<Item> grid = new SpatialGrid<>(1, 0.5);
+        Item item = new Item(0, 0, 1, 1);
+        grid.insert(item, item.minX, item.minY, item.maxX, item.maxY);
+
+        Assertions.assertEquals(Collections.singletonList(item), grid.query(1.4, 1.4, 2, 2));
+        Assertions.assertEquals(Collections.singletonList(item), grid.query(-2, -2, -0.4, -0.4));
+        Assertions.assertTrue(grid.query(1.6, 0, 2, 1).isEmpty());
+        Assertions.assertTrue(grid.query(new Rectangle2D(-2, 0, 1.4, 1)).isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        SpatialGrid<Item> grid = new SpatialGrid<>(2);
+        Item small = new Item(0, 0, 1, 1);
+        Item large = new Item(-500, -500, 500, 500);
+        grid.insert(small, small.minX, small.minY, small.maxX, small.maxY);
+        grid.insert(large, large.minX, large.minY, large.maxX, large.maxY);
+        Assertions.assertEquals(Arrays.asList(small, large), grid.query(0, 0, 1, 1));
+
+        Assertions.assertTrue(grid.remove(small));
+        Assertions.assertFalse(grid.remove(small));
+        Assertions.assertFalse(grid.contains(small));
+        Assertions.assertEquals(Collections.singletonList(large), grid.query(0, 0, 1, 1));
+
+        Assertions.assertTrue(grid.remove(large));
+        Assertions.assertTrue(grid.isEmpty());
+        Assertions.assertTrue(grid.query(-1000, -1000, 1000, 1000).isEmpty());
+    }
+
+    @Test
+    public void testUpdateKeepsOrder() {
+        SpatialGrid<Item> grid = new SpatialGrid<>(1);
+        Item first = new Item(0, 0, 1, 1);
+        Item second = new Item(5, 5, 6, 6);
+        grid.insert(first, first.minX, first.minY, first.maxX, first.maxY);
+        grid.insert(second, second.minX, second.minY, second.maxX, second.maxY);
+
+        // moving the first item next to the second keeps it ahead of the second in query results
+        grid.insert(first, 5, 5, 6, 6);
+        Assertions.assertEquals(2, grid.size());
+        Assertions.assertTrue(grid.query(0, 0, 1, 1).isEmpty());
+        Assertions.assertEquals(Arrays.asList(first, second), grid.query(5, 5, 6, 6));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompactGCodeProgramTest {
+
+    private static String print(GCodeProgram program) {
+        StringWriter text = new StringWriter();
+        try (PrintWriter out = new PrintWriter(text)) {
+            program.print(out);
+        }
+        return text.toString();
+    }
+
+    private static GCodeProgram buildProgram() {
+        GCodeBuilder builder = new GCodeBuilder();
+        builder.unitMode(UnitMode.INCH).distanceMode(DistanceMode.ABSOLUTE);
+        builder.emptyLine();
+        builder.comment("shape:Rectangle recipe:pocket");
+        builder.motionMode(MotionMode.RAPID_LINEAR).Z(0.5).endLine();
+        builder.motionMode(MotionMode.LINEAR).feedRate(30).XYZ(1, 2, -0.125).endLine();
+        builder.motionMode(MotionMode.CW_ARC).XY(3, 4).IJ(1, 1).endLine();
+        GCodeSubroutine subroutine = builder.beginSubroutine(SubroutineDialect.LINUXCNC);
+        GCodeVariable depth = subroutine.addParameter('Z');
+        builder.motionMode(MotionMode.LINEAR).Z(depth).endLine();
+        builder.endSubroutine();
+        builder.callSubroutine(subroutine, -0.25);
+        return builder.build();
+    }
+
+    @Test
+    public void testMatchesLines() {
+        GCodeProgram program = buildProgram();
+        CompactGCodeProgram compact = CompactGCodeProgram.of(program);
+        assertEquals(print(program), print(compact));
+        assertEquals(program.getLineCount(), compact.getLineCount());
+
+        List<GCodeLine> lines = program.getLines();
+        List<GCodeLine> compactLines = compact.getLines();
+        assertEquals(lines.size(), compactLines.size());
+        for (int i = 0; i < lines.size(); ++i) {
+            assertEquals(lines.get(i).toString(), compactLines.get(i).toString());
+        }
+        assertSame(MotionMode.CW_ARC, compactLines.get(5).getWords().get(0));
+        assertSame(compact, CompactGCodeProgram.of(compact));
+    }
+
+    @Test
+    public void testParamMask() {
+        CompactGCodeProgram compact = CompactGCodeProgram.of(buildProgram());
+        assertEquals(0, compact.getParamMask(2));
+        assertEquals(1 << ('Z' - 'A'), compact.getParamMask(3));
+        assertEquals((1 << ('X' - 'A')) | (1 << ('Y' - 'A')) | (1 << ('Z' - 'A')), compact.getParamMask(4));
+        assertEquals((1 << ('X' - 'A')) | (1 << ('Y' - 'A')) | (1 << ('I' - 'A')) | (1 << ('J' - 'A')),
+                compact.getParamMask(5));
+    }
+
+    @Test
+    public void testAcceptMatchesLines() {
+        GCodeProgram program = buildProgram();
+        List<String> expected = new ArrayList<>();
+        List<String> actual = new ArrayList<>();
+        program.accept(new EventRecorder(expected));
+        CompactGCodeProgram.of(program).accept(new EventRecorder(actual));
+        assertEquals(expected, actual);
+    }
+
+    private static class EventRecorder implements GCodeVisitor {
+        private final List<String> events;
+
+        private EventRecorder(List<String> events) {
+            this.events = events;
+        }
+
+        @Override
+        public void param(char letter, double value) {
+            events.add(letter + "=" + value);
+        }
+
+        @Override
+        public void word(GCodeWord word) {
+            events.add(word.toGCode());
+        }
+
+        @Override
+        public void endLine(long lineNumber) {
+            events.add("end " + lineNumber);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+public class CoordinateFormatTest {
+
+    private static String format(CoordinateFormat format, double value, int precision) {
+        StringBuilder out = new StringBuilder();
+        format.appendValue(out, value, precision);
+        return out.toString();
+    }
+
+    private static void assertSameAsStringFormat(double value, int precision) {
+        String expected = String.format(Locale.ROOT, "%." + precision + "f", value);
+        assertEquals(expected, format(CoordinateFormat.DEFAULT, value, precision),
+                String.format("value=%s precision=%d", value, precision));
+    }
+
+    @Test
+    public void testRoundingMatchesStringFormat() {
+        double[] values = {
+                0, -0.0, 1, -1, 0.5, 0.00005, -0.00005, 0.00004999, 2.00005, 1.00005, 0.12345, 0.99995, 9.99995,
+                -2.5e-5, 123456789.123456789, 1e20, -1e20, Double.NaN, Double.POSITIVE_INFINITY
+        };
+        for (double value : values) {
+            for (int precision = 0; precision <= CoordinateFormat.MAX_PRECISION; ++precision) {
+                assertSameAsStringFormat(value, precision);
+            }
+        }
+    }
+
+    @Test
+    public void testRandomValuesMatchStringFormat() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; ++i) {
+            double magnitude = Math.pow(10, random.nextInt(12) - 4);
+            double value = (random.nextDouble() - 0.5) * magnitude;
+            assertSameAsStringFormat(value, CoordinateFormat.DEFAULT_PRECISION);
+            // values with a 5 right after the last digit are the hardest to round
+            assertSameAsStringFormat(Math.round(value * 1e5) / 1e5, CoordinateFormat.DEFAULT_PRECISION);
+        }
+    }
+
+    @Test
+    public void testStripTrailingZeros() {
+        CoordinateFormat format = CoordinateFormat.DEFAULT.withStripTrailingZeros(true);
+        assertEquals("1", format(format, 1.0, 4));
+        assertEquals("1.5", format(format, 1.5, 4));
+        assertEquals("-0.0625", format(format, -0.0625, 4));
+        assertEquals("0", format(format, -0.00001, 4));
+        assertEquals("0.0001", format(format, 0.00005, 4));
+    }
+
+    @Test
+    public void testPrecisionPerAxis() {
+        CoordinateFormat format = CoordinateFormat.DEFAULT.withPrecision('z', 2);
+        assertEquals(2, format.getPrecision('Z'));
+        assertEquals("X1.2346", format.formatParam('X', 1.23456));
+        assertEquals("Z1.23", format.formatParam('Z', 1.23456));
+        assertEquals("X1.2346", CoordinateFormat.DEFAULT.formatParam('X', 1.23456));
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+public class GCodeAnalyzerTest {
+    private static final double DELTA = 1e-9;
+
+    private static GCodeAnalyzer analyze(GCodeAnalyzer analyzer, String text) throws IOException {
+        new GCodeParser(analyzer).parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        return analyzer;
+    }
+
+    @Test
+    public void testLengthsAndRecipes() throws IOException {
+        GCodeAnalyzer analyzer = new GCodeAnalyzer(LengthUnit.INCH);
+        analyzer.setAcceleration(0);
+        analyze(analyzer, String.join("\n",
+                "G20 G90 G91.1 G94",
+                "(shape:Circle recipe:first)",
+                "G0 Z1",
+                "X0 Y0",
+                "G1 F60 Z0",
+                "X3 Y4",
+                "(shape:Circle recipe:second - no generator available)",
+                "G2 X3 Y4 I-3 J-4",
+                "G0 Z1",
+                "M30",
+                "G0 X100",
+                ""));
+
+        GCodeAnalyzer.Totals totals = analyzer.getTotals();
+        assertEquals(6 + 10 * Math.PI, totals.getCutLength(), DELTA);
+        assertEquals(1, totals.getRapidLength(), DELTA);
+        assertEquals(6 + 10 * Math.PI, totals.getCutTime(), DELTA);
+        assertEquals(60.0 / 200, totals.getRapidTime(), DELTA);
+
+        assertEquals(-5, analyzer.getMinX(), DELTA);
+        assertEquals(5, analyzer.getMaxX(), DELTA);
+        assertEquals(-5, analyzer.getMinY(), DELTA);
+        assertEquals(5, analyzer.getMaxY(), DELTA);
+        assertEquals(0, analyzer.getMinZ(), DELTA);
+        assertEquals(1, analyzer.getMaxZ(), DELTA);
+
+        Map<String, GCodeAnalyzer.Totals> recipes = analyzer.getRecipeTotals();
+        assertEquals(2, recipes.size());
+        assertEquals(6, recipes.get("first").getCutLength(), DELTA);
+        assertEquals(10 * Math.PI, recipes.get("second").getCutLength(), DELTA);
+        assertEquals(1, recipes.get("second").getRapidLength(), DELTA);
+    }
+
+    @Test
+    public void testRadiusArcAndDrillCycle() throws IOException {
+        GCodeAnalyzer analyzer = analyze(new GCodeAnalyzer(LengthUnit.MM), String.join("\n",
+                "G21 G90 G94",
+                "G0 X0 Y0 Z0",
+                "G1 F600 X10",
+                "G3 X-10 Y0 R10",
+                "G0 Z5",
+                "G81 X0 Y0 Z-2 R1",
+                "G80",
+                ""));
+
+        GCodeAnalyzer.Totals totals = analyzer.getTotals();
+        assertEquals(13 + 10 * Math.PI, totals.getCutLength(), DELTA);
+        assertEquals(5 + 10 + 4 + 7, totals.getRapidLength(), DELTA);
+        assertEquals(10, analyzer.getMaxY(), DELTA);
+        assertEquals(0, analyzer.getMinY(), DELTA);
+        assertEquals(-2, analyzer.getMinZ(), DELTA);
+
+        // 10mm at 10mm/s accelerating at 254mm/s^2
+        double acceleration = 25.4 * GCodeAnalyzer.DEFAULT_ACCELERATION_INCH;
+        assertEquals(acceleration, analyzer.getAcceleration(), DELTA);
+        assertTrue(totals.getCutTime() > 1 + 10 / acceleration);
+    }
+
+    // cuts a 10mm square at two depths, in subroutine calls unless the dialect is null
+    private static GCodeProgram buildDepthPasses(SubroutineDialect dialect) {
+        GCodeBuilder builder = new GCodeBuilder();
+        builder.unitMode(UnitMode.MM).distanceMode(DistanceMode.ABSOLUTE).feedRateMode(FeedRateMode.UNITS_PER_MIN);
+        builder.comment("recipe:square");
+        GCodeSubroutine subroutine = null;
+        GCodeVariable depth = null;
+        if (dialect != null) {
+            subroutine = builder.beginSubroutine(dialect);
+            depth = subroutine.addParameter('Z');
+            addSquare(builder, depth, 0);
+            builder.endSubroutine();
+        }
+        for (double cutDepth = -1; cutDepth >= -2; --cutDepth) {
+            if (subroutine != null) {
+                builder.callSubroutine(subroutine, cutDepth);
+            } else {
+                addSquare(builder, null, cutDepth);
+            }
+        }
+        builder.motionMode(MotionMode.RAPID_LINEAR).Z(5).endLine();
+        return builder.endProgram().build();
+    }
+
+    private static void addSquare(GCodeBuilder builder, GCodeVariable depth, double cutDepth) {
+        builder.motionMode(MotionMode.RAPID_LINEAR).Z(5).endLine()
+                .XY(0, 0).endLine();
+        builder.motionMode(MotionMode.LINEAR).feedRate(200);
+        if (depth != null) {
+            builder.Z(depth).endLine();
+        } else {
+            builder.Z(cutDepth).endLine();
+        }
+        builder.feedRate(600).XY(10, 0).endLine()
+                .XY(10, 10).endLine()
+                .XY(0, 10).endLine()
+                .XY(0, 0).endLine();
+    }
+
+    private static GCodeProgram reload(GCodeProgram program) throws IOException {
+        StringWriter text = new StringWriter();
+        try (PrintWriter out = new PrintWriter(text)) {
+            program.print(out);
+        }
+        return GCodeProgram.load(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void assertSameTotals(GCodeAnalyzer expected, GCodeAnalyzer actual) {
+        assertEquals(expected.getTotals().getCutLength(), actual.getTotals().getCutLength(), DELTA);
+        assertEquals(expected.getTotals().getRapidLength(), actual.getTotals().getRapidLength(), DELTA);
+        assertEquals(expected.getTotals().getTime(), actual.getTotals().getTime(), DELTA);
+        assertEquals(expected.getTotals().getMoveCount(), actual.getTotals().getMoveCount());
+        assertEquals(expected.getRecipeTotals().get("square").getCutLength(),
+                actual.getRecipeTotals().get("square").getCutLength(), DELTA);
+        assertEquals(expected.getMinZ(), actual.getMinZ(), DELTA);
+        assertEquals(expected.getMaxZ(), actual.getMaxZ(), DELTA);
+        assertEquals(expected.getSummary(), actual.getSummary());
+    }
+
+    @Test
+    public void testSubroutineDepthPasses() throws IOException {
+        GCodeAnalyzer repeated = new GCodeAnalyzer(LengthUnit.MM).analyze(buildDepthPasses(null));
+        assertEquals(2 * 40 + 6 + 7, repeated.getTotals().getCutLength(), DELTA);
+        assertEquals(-2, repeated.getMinZ(), DELTA);
+
+        for (SubroutineDialect dialect : SubroutineDialect.values()) {
+            GCodeProgram program = buildDepthPasses(dialect);
+            GCodeAnalyzer inMemory = new GCodeAnalyzer(LengthUnit.MM).analyze(program);
+            assertSameTotals(repeated, inMemory);
+            assertEquals(2, inMemory.getSubroutineCallCount());
+            assertSameTotals(repeated, new GCodeAnalyzer(LengthUnit.MM).analyze(reload(program)));
+        }
+    }
+
+    @Test
+    public void testStreamedSubroutineCalls() throws IOException {
+        GCodeAnalyzer analyzer = analyze(new GCodeAnalyzer(LengthUnit.MM), String.join("\n",
+                "G21 G90 G94",
+                "G0 X0 Y0 Z0",
+                "O100 sub",
+                "G1 F600 X#1",
+                "G0 X0",
+                "O100 endsub",
+                "O100 call [10]",
+                "O100 call [20]",
+                "#100=5",
+                "G1 Y#100",
+                ""));
+        assertEquals(2, analyzer.getSubroutineCallCount());
+        assertEquals(35, analyzer.getTotals().getCutLength(), DELTA);
+        assertEquals(30, analyzer.getTotals().getRapidLength(), DELTA);
+        assertEquals(20, analyzer.getMaxX(), DELTA);
+    }
+
+    @Test
+    public void testUnfollowedProgramsAreRejected() throws IOException {
+        GCodeAnalyzer undefined = analyze(new GCodeAnalyzer(LengthUnit.MM), String.join("\n",
+                "G21 G90 G94",
+                "M98 P2000",
+                "M30",
+                ""));
+        assertEquals(1, undefined.getUndefinedCallCount());
+        assertThrows(IllegalStateException.class, undefined::getSummary);
+
+        assertThrows(IllegalStateException.class, () -> analyze(new GCodeAnalyzer(LengthUnit.MM),
+                String.join("\n",
+                        "G21 G90 G94",
+                        "O100 while [#1 LT 3]",
+                        "G1 X#1",
+                        "O100 endwhile",
+                        "")));
+    }
+}
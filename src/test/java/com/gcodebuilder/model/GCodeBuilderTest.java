@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+public class GCodeBuilderTest {
+
+    private static void addTestLines(GCodeBuilder builder) {
+        builder.unitMode(UnitMode.INCH)
+                .distanceMode(DistanceMode.ABSOLUTE)
+                .feedRateMode(FeedRateMode.UNITS_PER_MIN);
+        builder.emptyLine();
+        builder.comment("test program");
+        builder.motionMode(MotionMode.RAPID_LINEAR).Z(0.5).endLine()
+                .XY(1, 2).endLine();
+        builder.motionMode(MotionMode.LINEAR).feedRate(30).Z(-0.1).endLine();
+        builder.motionMode(MotionMode.LINEAR).feedRate(30).XY(3, 4).endLine();
+        builder.motionMode(MotionMode.CW_ARC).feedRate(60).XY(5, 6).IJ(-1, 0.25).endLine();
+        builder.unitMode(UnitMode.INCH).distanceMode(DistanceMode.ABSOLUTE);
+        builder.motionMode(MotionMode.RAPID_LINEAR).Z(0.5);
+    }
+
+    @Test
+    public void testStreamingMatchesProgram() {
+        GCodeBuilder programBuilder = new GCodeBuilder();
+        addTestLines(programBuilder);
+        StringWriter programText = new StringWriter();
+        try (PrintWriter out = new PrintWriter(programText)) {
+            programBuilder.build().print(out);
+        }
+
+        StringWriter streamedText = new StringWriter();
+        GCodeBuilder streamingBuilder = new GCodeBuilder(streamedText);
+        addTestLines(streamingBuilder);
+        streamingBuilder.flush();
+
+        assertEquals(programText.toString(), streamedText.toString());
+    }
+
+    private static void addHeader(GCodeBuilder builder) {
+        builder.unitMode(UnitMode.MM)
+                .distanceMode(DistanceMode.ABSOLUTE)
+                .feedRateMode(FeedRateMode.UNITS_PER_MIN);
+    }
+
+    private static void addPart(GCodeBuilder builder, double x, double y) {
+        builder.emptyLine();
+        builder.resetMotionMode();
+        builder.comment(String.format("part at %.1f,%.1f", x, y));
+        builder.motionMode(MotionMode.RAPID_LINEAR).Z(5).endLine()
+                .XY(x, y).endLine();
+        builder.motionMode(MotionMode.LINEAR).feedRate(200).Z(-1).endLine();
+        builder.motionMode(MotionMode.LINEAR).feedRate(600).XY(x + 10, y).endLine();
+        builder.motionMode(MotionMode.LINEAR).feedRate(600).XY(x + 10, y + 10);
+    }
+
+    private static String printProgram(GCodeBuilder builder) {
+        StringWriter programText = new StringWriter();
+        try (PrintWriter out = new PrintWriter(programText)) {
+            builder.build().print(out);
+        }
+        return programText.toString();
+    }
+
+    @Test
+    public void testJoinMatchesSequential() {
+        GCodeBuilder sequentialBuilder = new GCodeBuilder();
+        addHeader(sequentialBuilder);
+        addPart(sequentialBuilder, 0, 0);
+        addPart(sequentialBuilder, 20, 0);
+
+        GCodeBuilder joinedBuilder = new GCodeBuilder();
+        addHeader(joinedBuilder);
+        GCodeBuilder firstPart = joinedBuilder.fork();
+        GCodeBuilder secondPart = joinedBuilder.fork();
+        addPart(secondPart, 20, 0);
+        addPart(firstPart, 0, 0);
+        joinedBuilder.join(firstPart).resetMotionMode().join(secondPart);
+
+        assertEquals(printProgram(sequentialBuilder), printProgram(joinedBuilder));
+
+        StringWriter streamedText = new StringWriter();
+        GCodeBuilder streamingBuilder = new GCodeBuilder(streamedText);
+        addHeader(streamingBuilder);
+        firstPart = streamingBuilder.fork();
+        secondPart = streamingBuilder.fork();
+        addPart(firstPart, 0, 0);
+        addPart(secondPart, 20, 0);
+        streamingBuilder.join(firstPart).resetMotionMode().join(secondPart).flush();
+
+        assertEquals(printProgram(sequentialBuilder), streamedText.toString());
+    }
+
+    @Test
+    public void testJoinRestoresForkedState() {
+        GCodeBuilder builder = new GCodeBuilder();
+        addHeader(builder);
+        builder.endLine();
+        GCodeBuilder forked = builder.fork();
+        forked.motionMode(MotionMode.LINEAR).feedRate(100).X(1).endLine();
+        builder.unitMode(UnitMode.INCH).distanceMode(DistanceMode.INCREMENTAL).endLine();
+        builder.motionMode(MotionMode.RAPID_LINEAR).X(2).endLine();
+        assertFalse(builder.canJoin(forked));
+        builder.join(forked);
+
+        String expected = String.join(System.lineSeparator(),
+                "G21 G90 G94",
+                "G20 G91",
+                "G0 X2.0000",
+                "G21 G90",
+                "G1 F100 X1.0000",
+                "");
+        assertEquals(expected, printProgram(builder));
+        assertEquals(MotionMode.LINEAR, builder.getMotionMode());
+
+        assertFalse(builder.canJoin(new GCodeBuilder()));
+        assertThrows(IllegalArgumentException.class, () -> builder.join(new GCodeBuilder()));
+    }
+
+    private static void addDepthPasses(GCodeBuilder builder, SubroutineDialect dialect) {
+        builder.emptyLine();
+        builder.resetMotionMode();
+        GCodeSubroutine subroutine = builder.beginSubroutine(dialect);
+        GCodeVariable depth = subroutine.addParameter('Z');
+        builder.motionMode(MotionMode.RAPID_LINEAR).Z(5).endLine()
+                .XY(0, 0).endLine();
+        builder.motionMode(MotionMode.LINEAR).feedRate(200).Z(depth).endLine();
+        builder.motionMode(MotionMode.LINEAR).feedRate(600).XY(10, 0).endLine();
+        builder.endSubroutine();
+        builder.callSubroutine(subroutine, -1);
+        builder.callSubroutine(subroutine, -2);
+        builder.motionMode(MotionMode.RAPID_LINEAR).Z(5).endLine();
+    }
+
+    @Test
+    public void testLinuxCncSubroutine() {
+        GCodeBuilder builder = new GCodeBuilder();
+        addHeader(builder);
+        addDepthPasses(builder, SubroutineDialect.LINUXCNC);
+        String expected = String.join(System.lineSeparator(),
+                "G21 G90 G94",
+                "",
+                "O1000 sub",
+                "G0 Z5.0000",
+                "X0.0000 Y0.0000",
+                "G1 F200 Z#1",
+                "F600 X10.0000 Y0.0000",
+                "O1000 endsub",
+                "O1000 call [-1.0000]",
+                "O1000 call [-2.0000]",
+                "G0 Z5.0000",
+                "");
+        assertEquals(expected, printProgram(builder));
+    }
+
+    @Test
+    public void testFanucSubroutineFollowsProgramEnd() {
+        GCodeBuilder builder = new GCodeBuilder();
+        addHeader(builder);
+        addDepthPasses(builder, SubroutineDialect.FANUC);
+        String expected = String.join(System.lineSeparator(),
+                "G21 G90 G94",
+                "",
+                "#100=-1.0000",
+                "M98 P1000",
+                "#100=-2.0000",
+                "M98 P1000",
+                "G0 Z5.0000",
+                "M30",
+                "O1000",
+                "G0 Z5.0000",
+                "X0.0000 Y0.0000",
+                "G1 F200 Z#100",
+                "F600 X10.0000 Y0.0000",
+                "M99",
+                "");
+        String program = printProgram(builder);
+        assertEquals(expected, program);
+
+        StringWriter streamedText = new StringWriter();
+        GCodeBuilder streamingBuilder = new GCodeBuilder(streamedText);
+        addHeader(streamingBuilder);
+        addDepthPasses(streamingBuilder, SubroutineDialect.FANUC);
+        streamingBuilder.endProgram().flush();
+        assertEquals(program, streamedText.toString());
+    }
+
+    @Test
+    public void testJoinNumbersSubroutines() {
+        GCodeBuilder sequentialBuilder = new GCodeBuilder();
+        addHeader(sequentialBuilder);
+        addDepthPasses(sequentialBuilder, SubroutineDialect.FANUC);
+        sequentialBuilder.resetMotionMode();
+        addDepthPasses(sequentialBuilder, SubroutineDialect.FANUC);
+
+        GCodeBuilder joinedBuilder = new GCodeBuilder();
+        addHeader(joinedBuilder);
+        GCodeBuilder firstPart = joinedBuilder.fork();
+        GCodeBuilder secondPart = joinedBuilder.fork();
+        addDepthPasses(secondPart, SubroutineDialect.FANUC);
+        addDepthPasses(firstPart, SubroutineDialect.FANUC);
+        joinedBuilder.join(firstPart).resetMotionMode().join(secondPart);
+
+        String program = printProgram(sequentialBuilder);
+        assertEquals(program, printProgram(joinedBuilder));
+        assertTrue(program.contains("M98 P1001"));
+    }
+
+    @Test
+    public void testStreamingBuilderCannotBuild() {
+        GCodeBuilder streamingBuilder = new GCodeBuilder(new StringWriter());
+        assertThrows(IllegalStateException.class, streamingBuilder::build);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GCodeParserTest {
+
+    private static String print(GCodeProgram program) {
+        StringWriter text = new StringWriter();
+        try (PrintWriter out = new PrintWriter(text)) {
+            program.print(out);
+        }
+        return text.toString();
+    }
+
+    private static GCodeProgram load(String text) throws IOException {
+        return GCodeProgram.load(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static GCodeProgram buildProgram() {
+        GCodeBuilder builder = new GCodeBuilder();
+        builder.unitMode(UnitMode.MM)
+                .distanceMode(DistanceMode.ABSOLUTE)
+                .arcDistanceMode(ArcDistanceMode.INCREMENTAL)
+                .feedRateMode(FeedRateMode.UNITS_PER_MIN);
+        builder.emptyLine();
+        builder.comment("shape:Circle recipe:profile");
+        builder.motionMode(MotionMode.RAPID_LINEAR).Z(5).endLine()
+                .XY(-1.25, 2).endLine();
+        builder.motionMode(MotionMode.LINEAR).feedRate(200).Z(-0.5).endLine();
+        builder.motionMode(MotionMode.CCW_ARC).feedRate(600).XY(1.25, 2).IJ(1.25, 0).endLine();
+        GCodeSubroutine subroutine = builder.beginSubroutine(SubroutineDialect.FANUC);
+        GCodeVariable depth = subroutine.addParameter('Z');
+        builder.motionMode(MotionMode.LINEAR).feedRate(200).Z(depth).endLine();
+        builder.endSubroutine();
+        builder.callSubroutine(subroutine, -1);
+        builder.motionMode(MotionMode.DRILL_CYCLE).XY(3, 4).Z(-1).R(5).endLine();
+        return builder.build();
+    }
+
+    @Test
+    public void testLoadPrintedProgram() throws IOException {
+        String text = print(buildProgram());
+        GCodeProgram loaded = load(text);
+        assertEquals(text, print(loaded));
+
+        List<GCodeWord> header = loaded.getLines().get(0).getWords();
+        assertSame(UnitMode.MM, header.get(0));
+        assertSame(ArcDistanceMode.INCREMENTAL, header.get(2));
+    }
+
+    @Test
+    public void testLoadMappedFile() throws IOException {
+        String text = print(buildProgram());
+        Path file = Files.createTempFile("program", ".nc");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            assertEquals(text, print(GCodeProgram.load(file)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testParseNumbersAndWords() throws IOException {
+        List<String> events = new ArrayList<>();
+        String text = "n10 g1 x-.5 Y +2. Z0.0001 F 30.5 ; feed\r\nM3 S12000 G38.2\nG0X1Y2";
+        new GCodeParser(new GCodeVisitor() {
+            @Override
+            public void param(char letter, double value) {
+                events.add(letter + "=" + value);
+            }
+
+            @Override
+            public void word(GCodeWord word) {
+                events.add(word.toGCode());
+            }
+
+            @Override
+            public void endLine(long lineNumber) {
+                events.add("end " + lineNumber);
+            }
+        }).parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(List.of("N10", "G1", "X=-0.5", "Y=2.0", "Z=1.0E-4", "F=30.5", "( feed )", "end 1",
+                "M3", "S=12000.0", "G38.2", "end 2",
+                "G0", "X=1.0", "Y=2.0", "end 3"), events);
+    }
+
+    @Test
+    public void testParseErrors() {
+        GCodeParseException ex = assertThrows(GCodeParseException.class, () -> load("G0 X1\nG1 X$"));
+        assertEquals(2, ex.getLineNumber());
+        assertThrows(GCodeParseException.class, () -> load("G1 X"));
+        assertThrows(GCodeParseException.class, () -> load("( open comment"));
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2021 Stephen Saville
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gcodebuilder.recipe;
+
+import com.gcodebuilder.model.LengthUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class GCodeToolpathRecipeTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testConvertChordTolerance() {
+        GCodeProfileRecipe recipe = new GCodeProfileRecipe(1);
+        recipe.setUnit(LengthUnit.INCH);
+        recipe.setChordTolerance(0.01);
+
+        GCodeToolpathRecipe mmRecipe = (GCodeToolpathRecipe)recipe.getRecipeForUnit(LengthUnit.MM);
+        Assertions.assertEquals(0.254, mmRecipe.getChordTolerance(), DELTA);
+        Assertions.assertEquals(0.01, recipe.getChordTolerance(), DELTA);
+
+        mmRecipe.convertToUnit(LengthUnit.INCH);
+        Assertions.assertEquals(0.01, mmRecipe.getChordTolerance(), DELTA);
+    }
+
+    @Test
+    public void testZeroChordToleranceStaysDisabled() {
+        GCodeProfileRecipe recipe = new GCodeProfileRecipe(1);
+        recipe.setUnit(LengthUnit.INCH);
+        recipe.convertToUnit(LengthUnit.MM);
+        Assertions.assertEquals(0, recipe.getChordTolerance(), DELTA);
+    }
+}